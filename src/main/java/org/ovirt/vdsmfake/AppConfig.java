@@ -16,6 +16,7 @@
 package org.ovirt.vdsmfake;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.enterprise.inject.Alternative;
@@ -26,21 +27,45 @@ public class AppConfig {
     private long constantDelay;
     private long randomDelay;
     private long delayMinimum;
+    private boolean deferredResponses;
+    private long vmStatsRefreshInterval;
+    private long vmEventsPushInterval;
     private List<String> storageDelay;
     private List<String> networkLoad;
     private List<String> cpuLoad;
     private List<String> memLoad;
+    // load ranges parsed once when the lists are set
+    private LoadRange networkLoadRange;
+    private LoadRange cpuLoadRange;
+    private LoadRange memLoadRange;
     private String networkBridgeName;
     private String cacheDir;
+    private long persistInterval;
+    private boolean compactPersistence;
+    private String persistenceBackend;
+    private long journalSegmentSize;
+    private long journalCompactInterval;
+    private boolean warmUp;
+    private int warmUpParallelism;
     private String forwardVdsmServer;
     private String vmConfAndStatsConstants;
     private String vmConfAndStatsUpdateIntervals;
-    private List<String> eventSupportedMethods;
     private String targetServerUrl;
     private String architectureType;
+    private int hostMemSize;
+    private int hostOnlineCpus;
+    private int hostNumaNodes;
+    private List<String> hostNics;
+    private List<String> hostProfiles;
+    // parsed on first use, the host settings they default to may be set after them
+    private volatile List<HostProfileConfig> hostProfileConfigs;
     private boolean jsonEvents;
     private int eventsThreadPoolSize;
+    private long eventsFlushInterval;
+    private int eventsMaxBatchSize;
     private int jsonThreadPoolSize;
+    private String jsonExecutionMode;
+    private int jsonDispatchLanes;
     private String certspath;
     private List<String> notLoggedMethods;
     private int jsonListenPort;
@@ -133,6 +158,11 @@ public class AppConfig {
 
     public void setNetworkLoad(List<String> networkLoad) {
         this.networkLoad = networkLoad;
+        this.networkLoadRange = LoadRange.of(networkLoad);
+    }
+
+    public LoadRange getNetworkLoadRange() {
+        return networkLoadRange;
     }
 
     public List<String> getCpuLoad() {
@@ -141,6 +171,11 @@ public class AppConfig {
 
     public void setCpuLoad(List<String> cpuLoad) {
         this.cpuLoad = cpuLoad;
+        this.cpuLoadRange = LoadRange.of(cpuLoad);
+    }
+
+    public LoadRange getCpuLoadRange() {
+        return cpuLoadRange;
     }
 
     public List<String> getMemLoad() {
@@ -149,6 +184,11 @@ public class AppConfig {
 
     public void setMemLoad(List<String> memLoad) {
         this.memLoad = memLoad;
+        this.memLoadRange = LoadRange.of(memLoad);
+    }
+
+    public LoadRange getMemLoadRange() {
+        return memLoadRange;
     }
 
     public String getNetworkBridgeName() {
@@ -167,14 +207,6 @@ public class AppConfig {
         this.cacheDir = cacheDir;
     }
 
-    public List<String> getEventSupportedMethods() {
-        return eventSupportedMethods;
-    }
-
-    public void setEventSupportedMethods(List<String> eventSupportedMethods) {
-        this.eventSupportedMethods = eventSupportedMethods;
-    }
-
     public String getArchitectureType() {
         return architectureType;
     }
@@ -246,4 +278,181 @@ public class AppConfig {
     public void setJsonHost(String jsonHost) {
         this.jsonHost = jsonHost;
     }
+
+    public boolean isDeferredResponses() {
+        return deferredResponses;
+    }
+
+    public void setDeferredResponses(boolean deferredResponses) {
+        this.deferredResponses = deferredResponses;
+    }
+
+    public String getJsonExecutionMode() {
+        return jsonExecutionMode;
+    }
+
+    public void setJsonExecutionMode(String jsonExecutionMode) {
+        this.jsonExecutionMode = jsonExecutionMode;
+    }
+
+    public int getJsonDispatchLanes() {
+        return jsonDispatchLanes;
+    }
+
+    public void setJsonDispatchLanes(int jsonDispatchLanes) {
+        this.jsonDispatchLanes = jsonDispatchLanes;
+    }
+
+    public long getVmStatsRefreshInterval() {
+        return vmStatsRefreshInterval;
+    }
+
+    public void setVmStatsRefreshInterval(long vmStatsRefreshInterval) {
+        this.vmStatsRefreshInterval = vmStatsRefreshInterval;
+    }
+
+    public long getEventsFlushInterval() {
+        return eventsFlushInterval;
+    }
+
+    public void setEventsFlushInterval(long eventsFlushInterval) {
+        this.eventsFlushInterval = eventsFlushInterval;
+    }
+
+    public int getEventsMaxBatchSize() {
+        return eventsMaxBatchSize;
+    }
+
+    public void setEventsMaxBatchSize(int eventsMaxBatchSize) {
+        this.eventsMaxBatchSize = eventsMaxBatchSize;
+    }
+
+    public long getVmEventsPushInterval() {
+        return vmEventsPushInterval;
+    }
+
+    public void setVmEventsPushInterval(long vmEventsPushInterval) {
+        this.vmEventsPushInterval = vmEventsPushInterval;
+    }
+
+    public long getPersistInterval() {
+        return persistInterval;
+    }
+
+    public void setPersistInterval(long persistInterval) {
+        this.persistInterval = persistInterval;
+    }
+
+    public boolean isCompactPersistence() {
+        return compactPersistence;
+    }
+
+    public void setCompactPersistence(boolean compactPersistence) {
+        this.compactPersistence = compactPersistence;
+    }
+
+    public String getPersistenceBackend() {
+        return persistenceBackend;
+    }
+
+    public void setPersistenceBackend(String persistenceBackend) {
+        this.persistenceBackend = persistenceBackend;
+    }
+
+    public long getJournalSegmentSize() {
+        return journalSegmentSize;
+    }
+
+    public void setJournalSegmentSize(long journalSegmentSize) {
+        this.journalSegmentSize = journalSegmentSize;
+    }
+
+    public long getJournalCompactInterval() {
+        return journalCompactInterval;
+    }
+
+    public void setJournalCompactInterval(long journalCompactInterval) {
+        this.journalCompactInterval = journalCompactInterval;
+    }
+
+    public boolean isWarmUp() {
+        return warmUp;
+    }
+
+    public void setWarmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    public int getWarmUpParallelism() {
+        return warmUpParallelism;
+    }
+
+    public void setWarmUpParallelism(int warmUpParallelism) {
+        this.warmUpParallelism = warmUpParallelism;
+    }
+
+    public int getHostMemSize() {
+        return hostMemSize;
+    }
+
+    public void setHostMemSize(int hostMemSize) {
+        this.hostMemSize = hostMemSize;
+    }
+
+    public int getHostOnlineCpus() {
+        return hostOnlineCpus;
+    }
+
+    public void setHostOnlineCpus(int hostOnlineCpus) {
+        this.hostOnlineCpus = hostOnlineCpus;
+    }
+
+    public int getHostNumaNodes() {
+        return hostNumaNodes;
+    }
+
+    public void setHostNumaNodes(int hostNumaNodes) {
+        this.hostNumaNodes = hostNumaNodes;
+    }
+
+    public List<String> getHostNics() {
+        return hostNics;
+    }
+
+    public void setHostNics(List<String> hostNics) {
+        this.hostNics = hostNics;
+    }
+
+    public List<String> getHostProfiles() {
+        return hostProfiles;
+    }
+
+    public void setHostProfiles(List<String> hostProfiles) {
+        this.hostProfiles = hostProfiles;
+        this.hostProfileConfigs = null;
+    }
+
+    /**
+     * @return the profile of the host, the first one of hostProfiles matching its name or the default one
+     */
+    public HostProfileConfig getHostProfile(String hostName) {
+        List<HostProfileConfig> profiles = hostProfileConfigs;
+        if (profiles == null) {
+            HostProfileConfig defaults = HostProfileConfig.defaults(this);
+            profiles = new ArrayList<>();
+            if (hostProfiles != null) {
+                for (String entry : hostProfiles) {
+                    profiles.add(HostProfileConfig.parse(entry, defaults));
+                }
+            }
+            profiles.add(defaults);
+            hostProfileConfigs = profiles;
+        }
+        for (HostProfileConfig profile : profiles) {
+            if (profile.matches(hostName)) {
+                return profile;
+            }
+        }
+        return profiles.get(profiles.size() - 1);
+    }
 }
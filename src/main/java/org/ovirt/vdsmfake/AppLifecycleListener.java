@@ -23,10 +23,15 @@ import javax.inject.Inject;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
+import org.ovirt.vdsmfake.domain.DomainCodec;
+import org.ovirt.vdsmfake.domain.StoreWarmUp;
+import org.ovirt.vdsmfake.domain.WriteBehindStore;
 import org.ovirt.vdsmfake.rpc.json.CommandExecutor;
 import org.ovirt.vdsmfake.rpc.json.DefaultExecutor;
+import org.ovirt.vdsmfake.rpc.json.DeferredResponseScheduler;
 import org.ovirt.vdsmfake.rpc.json.Hystrix;
 import org.ovirt.vdsmfake.rpc.json.JsonRpcServer;
+import org.ovirt.vdsmfake.service.VmEventPublisher;
 import org.ovirt.vdsmfake.task.TaskProcessor;
 
 /**
@@ -38,6 +43,14 @@ public class AppLifecycleListener implements ServletContextListener {
     private AppConfig appConfig;
     @Inject
     private Instance<JsonRpcServer> jsonRpcServerInstance;
+    @Inject
+    private VmEventPublisher vmEventPublisher;
+    @Inject
+    private WriteBehindStore writeBehindStore;
+    @Inject
+    private PersistUtils persistUtils;
+    @Inject
+    private StoreWarmUp storeWarmUp;
 
     public static class DefaultLiteral extends AnnotationLiteral<Default> implements Default {
         public static final DefaultLiteral INSTANCE = new DefaultLiteral();
@@ -49,14 +62,26 @@ public class AppLifecycleListener implements ServletContextListener {
 
         final TaskProcessor taskProcessor = TaskProcessor.getInstance();
         taskProcessor.destroy();
+        DeferredResponseScheduler.getInstance().destroy();
+        vmEventPublisher.destroy();
+        jsonRpcServerInstance.get().shutdown();
+        // last, entities changed by the components stopped above are stored too
+        writeBehindStore.destroy();
+        persistUtils.close();
     }
 
     @Override
     public void contextInitialized(ServletContextEvent event) {
         System.out.println("Application initialized.");
 
+        DomainCodec.setEnabled(appConfig.isCompactPersistence());
+
         final TaskProcessor taskProcessor = TaskProcessor.getInstance();
+        writeBehindStore.start();
+        // before the json server starts, the engine reconnects to restored hosts only
+        storeWarmUp.run();
         taskProcessor.init();
+        vmEventPublisher.start();
         jsonRpcServerInstance.get().initMonitoring();
         jsonRpcServerInstance.get().start();
     }
@@ -0,0 +1,33 @@
+package org.ovirt.vdsmfake;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.ovirt.vdsmfake.domain.BaseObject;
+
+/**
+ * The backend {@link PersistUtils} keeps the entities in, selected with persistenceBackend.
+ */
+public interface EntityStore {
+
+    /**
+     * @return the number of bytes stored, -1 when the backend does not know it
+     */
+    long put(String key, BaseObject entity);
+
+    /**
+     * @return the entity or null
+     */
+    BaseObject get(String key);
+
+    void remove(String key);
+
+    /**
+     * @return a copy of the keys of the stored entities
+     */
+    Collection<String> keys();
+
+    Map<String, Object> getStats();
+
+    void close();
+}
@@ -0,0 +1,122 @@
+package org.ovirt.vdsmfake;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The host settings of a named host profile, one entry of hostProfiles, e.g.
+ * "name=large hosts=big-.* hostMemSize=65536 hostOnlineCpus=64 hostNumaNodes=4 hostNics=em1,em2,em3,em4".
+ * A host uses the first profile whose hosts pattern matches its name. The settings left out of an entry, and the
+ * hosts matched by none, take the top level host settings of the default profile.
+ */
+public final class HostProfileConfig {
+
+    public static final String DEFAULT = "default";
+
+    private final String name;
+    private final Pattern hosts;
+    private final String architectureType;
+    private final int memSize;
+    private final int onlineCpus;
+    private final int numaNodes;
+    private final List<String> nics;
+
+    private HostProfileConfig(String name, Pattern hosts, String architectureType, int memSize, int onlineCpus,
+            int numaNodes, List<String> nics) {
+        this.name = name;
+        this.hosts = hosts;
+        this.architectureType = architectureType;
+        this.memSize = memSize;
+        this.onlineCpus = onlineCpus;
+        this.numaNodes = numaNodes;
+        this.nics = Collections.unmodifiableList(nics);
+    }
+
+    /**
+     * @return the default profile of the top level settings, it matches no host by itself
+     */
+    static HostProfileConfig defaults(AppConfig appConfig) {
+        return new HostProfileConfig(DEFAULT, null, appConfig.getArchitectureType(), appConfig.getHostMemSize(),
+                appConfig.getHostOnlineCpus(), appConfig.getHostNumaNodes(), appConfig.getHostNics());
+    }
+
+    /**
+     * @param entry whitespace separated key=value pairs, name and hosts are required
+     */
+    static HostProfileConfig parse(String entry, HostProfileConfig defaults) {
+        String name = null;
+        Pattern hosts = null;
+        String architectureType = defaults.architectureType;
+        int memSize = defaults.memSize;
+        int onlineCpus = defaults.onlineCpus;
+        int numaNodes = defaults.numaNodes;
+        List<String> nics = defaults.nics;
+        for (String pair : entry.trim().split("\\s+")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Not a key=value pair in host profile '" + entry + "': " + pair);
+            }
+            String value = pair.substring(eq + 1);
+            switch (pair.substring(0, eq)) {
+            case "name":
+                name = value;
+                break;
+            case "hosts":
+                hosts = Pattern.compile(value);
+                break;
+            case "architectureType":
+                architectureType = value;
+                break;
+            case "hostMemSize":
+                memSize = Integer.parseInt(value);
+                break;
+            case "hostOnlineCpus":
+                onlineCpus = Integer.parseInt(value);
+                break;
+            case "hostNumaNodes":
+                numaNodes = Integer.parseInt(value);
+                break;
+            case "hostNics":
+                nics = value.isEmpty() ? Collections.emptyList() : Arrays.asList(value.split(","));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown setting in host profile '" + entry + "': " + pair);
+            }
+        }
+        if (name == null || DEFAULT.equals(name) || hosts == null) {
+            throw new IllegalArgumentException("Host profile '" + entry + "' needs a name other than " + DEFAULT
+                    + " and a hosts pattern");
+        }
+        return new HostProfileConfig(name, hosts, architectureType, memSize, onlineCpus, numaNodes, nics);
+    }
+
+    boolean matches(String hostName) {
+        return hosts != null && hostName != null && hosts.matcher(hostName).matches();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getArchitectureType() {
+        return architectureType;
+    }
+
+    public int getMemSize() {
+        return memSize;
+    }
+
+    public int getOnlineCpus() {
+        return onlineCpus;
+    }
+
+    public int getNumaNodes() {
+        return numaNodes;
+    }
+
+    public List<String> getNics() {
+        return nics;
+    }
+}
@@ -0,0 +1,79 @@
+package org.ovirt.vdsmfake;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.infinispan.Cache;
+import org.ovirt.vdsmfake.domain.BaseObject;
+import org.ovirt.vdsmfake.domain.CompactForm;
+
+/**
+ * Keeps the entities in the Infinispan cache configured by {@link CacheConfig}, a single file store under objectStore.
+ * With compactPersistence an entity is encoded once when it is put and its {@link CompactForm} is kept, the file store
+ * writes that record as it is and the size of every write is known. The cache holds the records rather than the live
+ * entities then, a snapshot the file store may write later while the entity changes meanwhile.
+ */
+public class InfinispanEntityStore implements EntityStore {
+
+    private final Cache<String, Object> cache;
+
+    public InfinispanEntityStore(Cache<String, Object> cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public long put(String key, BaseObject entity) {
+        final CompactForm compactForm;
+        try {
+            compactForm = CompactForm.of(entity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode " + entity.getId(), e);
+        }
+        if (compactForm == null) {
+            cache.put(key, entity);
+            return -1;
+        }
+        cache.put(key, compactForm);
+        return compactForm.size();
+    }
+
+    @Override
+    public BaseObject get(String key) {
+        Object value = cache.get(key);
+        if (value instanceof CompactForm) {
+            try {
+                return ((CompactForm) value).resolve();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to decode " + key, e);
+            }
+        }
+        // read back from the file store the record resolves to the entity already
+        return (BaseObject) value;
+    }
+
+    @Override
+    public void remove(String key) {
+        cache.remove(key);
+    }
+
+    @Override
+    public Collection<String> keys() {
+        return new ArrayList<>(cache.keySet());
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("backend", "infinispan");
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        // the cache is stopped with its container
+    }
+}
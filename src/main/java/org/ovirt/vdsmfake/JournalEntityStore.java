@@ -0,0 +1,495 @@
+package org.ovirt.vdsmfake;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.ovirt.vdsmfake.domain.BaseObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the entities in an append-only journal of puts and removes. The journal is written through a memory mapping,
+ * journalSegmentSize bytes at a time. Only the location of the latest serialized form of every entity is kept in
+ * memory, the bytes are read from the mapped journals and snapshot on get. Compaction writes the live entities into a
+ * snapshot, maps it and carries on in a new journal file, on startup the snapshot and the journals written after it
+ * are mapped and replayed. Mapped writes survive a crash of the process, they are forced to disk when a mapping is
+ * full, on compaction and on close.
+ * <p>
+ * A deleted journal or a replaced snapshot keeps its disk space until its last mapping is collected, and the files
+ * must not be truncated by anything else while the store is open.
+ */
+public class JournalEntityStore implements EntityStore {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalEntityStore.class);
+
+    private static final int MAGIC = 0x564a524e;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final String SNAPSHOT = "snapshot";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    // a journal shorter than that is not worth compacting
+    private static final long MIN_COMPACT_BYTES = 1 << 20;
+
+    private final Path dir;
+    private final int segmentSize;
+
+    // key -> where the serialized entity as last written is mapped
+    private final ConcurrentHashMap<String, Location> entries = new ConcurrentHashMap<>();
+    private final Object compactLock = new Object();
+    private final ScheduledExecutorService compactor;
+
+    // guarded by this
+    private long journalSeq;
+    private FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long journalBytes;
+    private long liveBytes;
+    private long appends;
+    private long replayed;
+    private long compactions;
+    private long lastCompactionMillis;
+
+    /**
+     * The serialized form of an entity within a mapping, compared by identity.
+     */
+    private static final class Location {
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int length;
+
+        Location(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        byte[] read() {
+            byte[] value = new byte[length];
+            // a view of its own, the journal mapping is appended to meanwhile
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            view.get(value);
+            return value;
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordConsumer {
+        /**
+         * @param body the mapping holding the record, the body starts at offset
+         */
+        void accept(ByteBuffer body, int offset, int length) throws IOException;
+    }
+
+    public JournalEntityStore(Path dir, long segmentSize, long compactInterval) {
+        this.dir = dir;
+        this.segmentSize = (int) Math.min(Math.max(segmentSize, 4096), Integer.MAX_VALUE);
+        try {
+            Files.createDirectories(dir);
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the journal in " + dir, e);
+        }
+        if (compactInterval > 0) {
+            compactor = Executors.newSingleThreadScheduledExecutor(
+                    new BasicThreadFactory.Builder()
+                            .namingPattern("journal-compactor-%d")
+                            .daemon(true)
+                            .build());
+            compactor.scheduleWithFixedDelay(this::compactIfWorthIt, compactInterval, compactInterval,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            compactor = null;
+        }
+    }
+
+    /**
+     * Replays the snapshot and the journals after it, compacts them into a new snapshot when there were any and starts
+     * a new journal.
+     */
+    private void open() throws IOException {
+        long start = System.currentTimeMillis();
+        long nextSeq = 0;
+        Path snapshot = dir.resolve(SNAPSHOT);
+        if (Files.exists(snapshot)) {
+            nextSeq = scan(snapshot, this::apply);
+        }
+        boolean journals = false;
+        for (long seq : journalSeqs()) {
+            if (seq < nextSeq) {
+                // already in the snapshot, left behind by a stop during compaction
+                Files.deleteIfExists(journal(seq));
+            } else {
+                scan(journal(seq), this::apply);
+                nextSeq = seq + 1;
+                journals = true;
+            }
+        }
+        if (journals) {
+            Map<String, Location> live = new HashMap<>(entries);
+            writeSnapshot(live, nextSeq);
+            relocate(live);
+        }
+        synchronized (this) {
+            openJournal(nextSeq);
+        }
+        log.info("Replayed {} journal records of {} entities in {} ms", replayed, entries.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public long put(String key, BaseObject entity) {
+        byte[] value = serialize(entity);
+        byte[] body = body(PUT, key, value);
+        synchronized (this) {
+            Location location = append(body, value.length);
+            Location previous = entries.put(key, location);
+            liveBytes += value.length - (previous == null ? 0 : previous.length);
+        }
+        return 8 + body.length;
+    }
+
+    @Override
+    public BaseObject get(String key) {
+        Location location = entries.get(key);
+        return location == null ? null : deserialize(location.read());
+    }
+
+    @Override
+    public void remove(String key) {
+        byte[] body = body(REMOVE, key, new byte[0]);
+        synchronized (this) {
+            Location previous = entries.remove(key);
+            if (previous != null) {
+                append(body, 0);
+                liveBytes -= previous.length;
+            }
+        }
+    }
+
+    @Override
+    public Collection<String> keys() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * @return where the last valueLength bytes of the body are mapped
+     */
+    private synchronized Location append(byte[] body, int valueLength) {
+        int size = 8 + body.length;
+        if (region.remaining() < size) {
+            // the next mapping starts where the records end, the unused tail of the last one is overwritten
+            regionStart += region.position();
+            region.force();
+            try {
+                region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, Math.max(segmentSize, size));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map the journal", e);
+            }
+        }
+        int offset = region.position() + size - valueLength;
+        region.putInt(body.length).putInt(crc(body)).put(body);
+        journalBytes += size;
+        appends++;
+        return new Location(region, offset, valueLength);
+    }
+
+    private void compactIfWorthIt() {
+        boolean worthIt;
+        synchronized (this) {
+            worthIt = journalBytes >= MIN_COMPACT_BYTES && journalBytes >= liveBytes;
+        }
+        if (worthIt) {
+            try {
+                compact();
+            } catch (Exception e) {
+                log.error("Failed to compact the journal", e);
+            }
+        }
+    }
+
+    /**
+     * Writes the live entities into a new snapshot. Writes carry on in a new journal meanwhile, the journals before it
+     * are deleted once the snapshot is in place and the entities not written since are read from the snapshot.
+     */
+    public void compact() throws IOException {
+        synchronized (compactLock) {
+            long start = System.currentTimeMillis();
+            Map<String, Location> live;
+            long nextSeq;
+            synchronized (this) {
+                nextSeq = journalSeq + 1;
+                closeJournal();
+                openJournal(nextSeq);
+                live = new HashMap<>(entries);
+            }
+            writeSnapshot(live, nextSeq);
+            relocate(live);
+            long took = System.currentTimeMillis() - start;
+            synchronized (this) {
+                compactions++;
+                lastCompactionMillis = took;
+            }
+            log.debug("Compacted the journal into {} entities in {} ms", live.size(), took);
+        }
+    }
+
+    private void writeSnapshot(Map<String, Location> live, long nextSeq) throws IOException {
+        Path tmp = dir.resolve(SNAPSHOT + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(nextSeq);
+            for (Map.Entry<String, Location> entry : live.entrySet()) {
+                byte[] body = body(PUT, entry.getKey(), entry.getValue().read());
+                out.writeInt(body.length);
+                out.writeInt(crc(body));
+                out.write(body);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(tmp, dir.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (long seq : journalSeqs()) {
+            if (seq < nextSeq) {
+                Files.deleteIfExists(journal(seq));
+            }
+        }
+    }
+
+    /**
+     * Points the entities still at the locations written to the snapshot to their copy in it, which lets the mappings
+     * of the journals before it go.
+     */
+    private void relocate(Map<String, Location> written) throws IOException {
+        scan(dir.resolve(SNAPSHOT), (buffer, offset, length) -> {
+            String key = key(buffer, offset);
+            Location previous = written.get(key);
+            if (previous != null) {
+                entries.replace(key, previous, new Location(buffer, offset + length - previous.length,
+                        previous.length));
+            }
+        });
+    }
+
+    /**
+     * Maps a snapshot or a journal read-only and hands its records to the consumer up to the end of the records or
+     * the first torn one. The file is mapped segmentSize bytes at a time, a mapping starts at a record, so a record is
+     * always within one mapping.
+     *
+     * @return the sequence number in the header, the first journal not in a snapshot
+     */
+    private long scan(Path file, RecordConsumer consumer) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("Truncated journal header: " + file);
+            }
+            long windowStart = 0;
+            MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(segmentSize, size));
+            if (window.getInt(0) != MAGIC || window.getInt(4) != VERSION) {
+                throw new IOException("Unknown journal format: " + file);
+            }
+            long seq = window.getLong(8);
+            long position = HEADER_SIZE;
+            while (position + 8 <= size) {
+                if (position + 8 > windowStart + window.capacity()) {
+                    windowStart = position;
+                    window = in.map(FileChannel.MapMode.READ_ONLY, position, Math.min(segmentSize, size - position));
+                }
+                // mapped journals end with zeros
+                int length = window.getInt((int) (position - windowStart));
+                if (length <= 0 || position + 8 + length > size) {
+                    break;
+                }
+                if (position + 8 + length > windowStart + window.capacity()) {
+                    windowStart = position;
+                    window = in.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(Math.max(segmentSize, 8 + length), size - position));
+                }
+                int at = (int) (position - windowStart);
+                if (window.getInt(at + 4) != crc(window, at + 8, length)) {
+                    log.warn("Ignoring the torn end of {} at {}", file, position);
+                    break;
+                }
+                consumer.accept(window, at + 8, length);
+                position += 8 + length;
+            }
+            return seq;
+        }
+    }
+
+    private void apply(ByteBuffer buffer, int offset, int length) throws IOException {
+        String key = key(buffer, offset);
+        if (buffer.get(offset) == PUT) {
+            int keyLength = 3 + (buffer.getShort(offset + 1) & 0xffff);
+            Location location = new Location(buffer, offset + keyLength, length - keyLength);
+            Location previous = entries.put(key, location);
+            liveBytes += location.length - (previous == null ? 0 : previous.length);
+        } else {
+            Location previous = entries.remove(key);
+            liveBytes -= previous == null ? 0 : previous.length;
+        }
+        replayed++;
+    }
+
+    /**
+     * @return the key of the record body at the offset, written after the operation by writeUTF
+     */
+    private static String key(ByteBuffer buffer, int offset) throws IOException {
+        byte[] utf = new byte[2 + (buffer.getShort(offset + 1) & 0xffff)];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 1);
+        view.get(utf);
+        return new DataInputStream(new ByteArrayInputStream(utf)).readUTF();
+    }
+
+    private void openJournal(long seq) throws IOException {
+        channel = FileChannel.open(journal(seq),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        regionStart = 0;
+        region = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        region.putInt(MAGIC).putInt(VERSION).putLong(seq);
+        journalSeq = seq;
+        journalBytes = 0;
+    }
+
+    /**
+     * The mapping itself is released when collected, there is no portable way to unmap it.
+     */
+    private void closeJournal() throws IOException {
+        region.force();
+        channel.close();
+    }
+
+    private Path journal(long seq) {
+        return dir.resolve(JOURNAL_PREFIX + seq + JOURNAL_SUFFIX);
+    }
+
+    private List<Long> journalSeqs() throws IOException {
+        List<Long> seqs = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, JOURNAL_PREFIX + "*" + JOURNAL_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    seqs.add(Long.parseLong(
+                            name.substring(JOURNAL_PREFIX.length(), name.length() - JOURNAL_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring {}", file);
+                }
+            }
+        }
+        Collections.sort(seqs);
+        return seqs;
+    }
+
+    private static byte[] body(byte op, String key, byte[] value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length + key.length() + 8);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(op);
+            out.writeUTF(key);
+            out.write(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int crc(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        CRC32 crc = new CRC32();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] serialize(BaseObject entity) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(entity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize " + entity.getId(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static BaseObject deserialize(byte[] value) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(value))) {
+            return (BaseObject) in.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("backend", "journal");
+        stats.put("entries", entries.size());
+        stats.put("liveBytes", liveBytes);
+        stats.put("journalBytes", journalBytes);
+        stats.put("appends", appends);
+        stats.put("replayed", replayed);
+        stats.put("compactions", compactions);
+        stats.put("lastCompactionMillis", lastCompactionMillis);
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        if (compactor != null) {
+            compactor.shutdown();
+        }
+        synchronized (compactLock) {
+            synchronized (this) {
+                try {
+                    closeJournal();
+                } catch (IOException e) {
+                    log.error("Failed to close the journal", e);
+                }
+            }
+        }
+    }
+}
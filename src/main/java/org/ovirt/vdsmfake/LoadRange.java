@@ -0,0 +1,29 @@
+package org.ovirt.vdsmfake;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A simulated load range from the configuration, e.g. cpuLoad = [ 10, 20 ], parsed once.
+ */
+public final class LoadRange {
+
+    private final int min;
+    private final int max;
+
+    private LoadRange(int min, int max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    public static LoadRange of(List<String> values) {
+        return new LoadRange(Integer.parseInt(values.get(0)), Integer.parseInt(values.get(1)));
+    }
+
+    /**
+     * @return a random value from min (inclusive) to max (exclusive)
+     */
+    public int next() {
+        return max > min ? ThreadLocalRandom.current().nextInt(min, max) : min;
+    }
+}
@@ -15,32 +15,154 @@
 */
 package org.ovirt.vdsmfake;
 
+import java.io.ObjectStreamException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.infinispan.Cache;
 import org.ovirt.vdsmfake.domain.BaseObject;
 import org.ovirt.vdsmfake.domain.DataCenter;
+import org.ovirt.vdsmfake.domain.VM;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Stores every entity under a key of its own, a host, pool or storage domain keeps only the ids of the VMs, tasks,
+ * domains and volumes it holds. A VM is keyed by its host too, as a migrating VM runs on two hosts. The entities are
+ * kept in the Infinispan cache or in a journal under cacheDir, see persistenceBackend.
+ */
 @Singleton
 public class PersistUtils {
 
+    private static final Logger log = LoggerFactory.getLogger(PersistUtils.class);
+
+    @Inject
+    private AppConfig appConfig;
+
     @Inject
-    private Cache<String, BaseObject> cache;
+    private Instance<Cache<String, Object>> cacheInstance;
+
+    private EntityStore store;
+
+    private final Set<Class<?>> discarded = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void init() {
+        if ("journal".equalsIgnoreCase(appConfig.getPersistenceBackend())) {
+            store = new JournalEntityStore(Paths.get(appConfig.getCacheDir(), "journal"),
+                    appConfig.getJournalSegmentSize(), appConfig.getJournalCompactInterval());
+        } else {
+            // only looked up when used, the cache opens its file store on creation
+            store = new InfinispanEntityStore(cacheInstance.get());
+        }
+        log.info("Storing entities in the {} backend", appConfig.getPersistenceBackend());
+    }
+
+    public static String key(Class<?> clazz, String id) {
+        return clazz.getSimpleName() + id;
+    }
+
+    public static String vmKey(String hostId, String vmId) {
+        return key(VM.class, hostId + "/" + vmId);
+    }
+
+    public static String keyOf(BaseObject baseObject) {
+        if (baseObject instanceof VM) {
+            return vmKey(((VM) baseObject).getHost().getId(), baseObject.getId());
+        }
+        return key(baseObject.getClass(), baseObject.getId());
+    }
 
     public void store(BaseObject baseObject) {
+        store(keyOf(baseObject), baseObject);
+    }
+
+    /**
+     * @return the number of bytes stored, -1 when the backend does not know it
+     */
+    public long store(String key, BaseObject baseObject) {
         if (baseObject instanceof DataCenter && baseObject.getName().contains("?")){
             baseObject.setName(baseObject.getId());
         }
-        cache.put(baseObject.getClass().getSimpleName() + baseObject.getId(), baseObject);
+        return store.put(key, baseObject);
     }
 
     public Object load(Class<?> clazz, String id) {
-        return cache.get(clazz.getSimpleName() + id);
+        return loadKey(clazz, key(clazz, id));
+    }
+
+    public Object loadVm(String hostId, String vmId) {
+        return loadKey(VM.class, vmKey(hostId, vmId));
+    }
+
+    /**
+     * @return the entity or null, also when it was stored by an older version in a format which can not be read
+     *         anymore, it is stored again in the current one on its next change
+     */
+    private Object loadKey(Class<?> clazz, String key) {
+        try {
+            return store.get(key);
+        } catch (RuntimeException e) {
+            if (!isUnreadable(e)) {
+                throw e;
+            }
+            if (discarded.add(clazz)) {
+                log.warn("Discarding the {} entities stored in an old format, first one {}: {}",
+                        clazz.getSimpleName(), key, e.toString());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the stored bytes failed to deserialize, the stores wrap the cause in their own exceptions
+     */
+    private static boolean isUnreadable(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ObjectStreamException || cause instanceof ClassNotFoundException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the ids of the stored entities of the class
+     */
+    public List<String> ids(Class<?> clazz) {
+        String prefix = key(clazz, "");
+        List<String> ids = new ArrayList<>();
+        for (String key : store.keys()) {
+            if (key.startsWith(prefix)) {
+                ids.add(key.substring(prefix.length()));
+            }
+        }
+        return ids;
     }
 
     public void remove(BaseObject baseObject) {
-        cache.remove(baseObject.getClass().getSimpleName() + baseObject.getId());
+        remove(keyOf(baseObject));
+    }
+
+    public void remove(String key) {
+        store.remove(key);
+    }
+
+    public Map<String, Object> getStats() {
+        return store.getStats();
+    }
+
+    public void close() {
+        store.close();
     }
 
 }
@@ -0,0 +1,41 @@
+package org.ovirt.vdsmfake;
+
+import org.ovirt.vdsmfake.domain.Host;
+
+/**
+ * What a json-rpc request is served for: the fake host the engine talks to, resolved once when the message arrives,
+ * and the verb. Passed explicitly from the command executor through the commands to the services, so it stays with
+ * the request on whatever thread serves or answers it.
+ */
+public final class RequestContext {
+
+    private final String serverName;
+    private final Host host;
+    private final String method;
+
+    public RequestContext(String serverName, Host host, String method) {
+        this.serverName = serverName;
+        this.host = host;
+        this.method = method;
+    }
+
+    public String getServerName() {
+        return serverName;
+    }
+
+    public Host getHost() {
+        return host;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestContext{" +
+                "serverName='" + serverName + '\'' +
+                ", method='" + method + '\'' +
+                '}';
+    }
+}
@@ -17,7 +17,6 @@ package org.ovirt.vdsmfake;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.List;
 import java.util.Random;
 import java.util.TimeZone;
 import java.util.UUID;
@@ -42,6 +41,7 @@ public class Utils {
     private static Long appConfigDelay;
     private static int appConfigDelay_asInit;
     private static int minimum = 100;
+    private static Boolean deferredResponses;
 
     private static final Logger log = LoggerFactory.getLogger(Utils.class);
 
@@ -77,12 +77,6 @@ public class Utils {
         return b.toString();
     }
 
-    public static String rangeParser(List<String> values){
-        return String.valueOf(
-                RND.nextInt(Integer.parseInt(values.get(1)) - Integer.parseInt(values.get(0)))
-                        + Integer.parseInt(values.get(0)));
-    }
-
     public static String getCpuIdle(String idle){
         return Integer.toString(100 - Integer.parseInt(idle));
     }
@@ -100,15 +94,21 @@ public class Utils {
     }
 
     //Default
-    public static void getLatency(){
+    public static long getLatency(){
         try{
-            getLatency((long) minimum);
+            return getLatency((long) minimum);
         }catch (Exception e){
             log.error("failed to get latency error is: {}", e);
+            return 0;
         }
     }
 
-    public static void getLatency(Long latency) {
+    /**
+     * Runs the latency, or with deferred responses returns it for the executor to delay the send by.
+     *
+     * @return delay (ms) the response should be sent after, 0 when it goes out at once
+     */
+    public static long getLatency(Long latency) {
         //run latency
         Long innerLatency;
         if (latency != (long) minimum) {
@@ -117,14 +117,28 @@ public class Utils {
         else {
             innerLatency = getDelayFromXml();
         }
+        if (isDeferredResponses()) {
+            // the response is sent later by the executor, do not hold the request thread
+            return innerLatency;
+        }
         try {
             TimeUnit.MILLISECONDS.sleep(innerLatency);
         }catch (InterruptedException e){
             log.error("failed to to run getLatency error is:{}", e);
         }
+        return 0;
     }
 
 
+    private static boolean isDeferredResponses() {
+        if (deferredResponses == null) {
+            AppConfig config =
+                    CDI.current().select(AppConfig.class, AppLifecycleListener.DefaultLiteral.INSTANCE).get();
+            deferredResponses = config.isDeferredResponses();
+        }
+        return deferredResponses;
+    }
+
     public static long getDelayFromXml() {
         //getting delay from web.xml file
         long delay = (long) minimum;
@@ -9,7 +9,17 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 
+import org.ovirt.vdsmfake.PersistUtils;
+import org.ovirt.vdsmfake.domain.StoreWarmUp;
 import org.ovirt.vdsmfake.domain.VdsmManager;
+import org.ovirt.vdsmfake.domain.VmLifecycle;
+import org.ovirt.vdsmfake.domain.WriteBehindStore;
+import org.ovirt.vdsmfake.rpc.json.ConnectionRegistry;
+import org.ovirt.vdsmfake.rpc.json.HostResponseCache;
+import org.ovirt.vdsmfake.rpc.json.JsonRpcNotification;
+import org.ovirt.vdsmfake.rpc.json.JsonRpcServer;
+import org.ovirt.vdsmfake.service.VmEventPublisher;
+import org.ovirt.vdsmfake.task.TaskProcessor;
 
 @Path("")
 public class VdsmFakeResource {
@@ -17,6 +27,27 @@ public class VdsmFakeResource {
     @Inject
     private VdsmManager vdsmManager;
 
+    @Inject
+    private JsonRpcServer jsonRpcServer;
+
+    @Inject
+    private JsonRpcNotification jsonRpcNotification;
+
+    @Inject
+    private VmEventPublisher vmEventPublisher;
+
+    @Inject
+    private ConnectionRegistry connectionRegistry;
+
+    @Inject
+    private WriteBehindStore writeBehindStore;
+
+    @Inject
+    private PersistUtils persistUtils;
+
+    @Inject
+    private StoreWarmUp storeWarmUp;
+
     @GET
     @Path("stats")
     @Produces(MediaType.APPLICATION_JSON)
@@ -24,7 +55,18 @@ public class VdsmFakeResource {
         Map<String, Object> map = new HashMap<>();
         map.put("hostsCount", vdsmManager.getHostCount());
         map.put("vmsCount", vdsmManager.getRunningVmsCount());
+        map.put("vms", vdsmManager.getVmStats());
+        map.put("vmLifecycle", VmLifecycle.getInstance().getStats());
         map.put("dataCenters", vdsmManager.getAllStoragePools());
+        map.put("messageExecution", jsonRpcServer.getExecutionStats());
+        map.put("hostResponseCache", HostResponseCache.getInstance().getStats());
+        map.put("tasks", TaskProcessor.getInstance().getStats());
+        map.put("events", jsonRpcNotification.getStats());
+        map.put("vmEventsPush", vmEventPublisher.getStats());
+        map.put("connections", connectionRegistry.getStats());
+        map.put("persistence", writeBehindStore.getStats());
+        map.put("store", persistUtils.getStats());
+        map.put("warmUp", storeWarmUp.getStats());
         return map;
     }
 
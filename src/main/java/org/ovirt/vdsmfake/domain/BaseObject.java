@@ -15,6 +15,9 @@
 */
 package org.ovirt.vdsmfake.domain;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 
 public class BaseObject implements Serializable {
@@ -25,6 +28,18 @@ public class BaseObject implements Serializable {
     String name;
     transient long lastUpdate;
 
+    /**
+     * Stored entities are written in their compact form when compactPersistence is on, see {@link DomainCodec}.
+     */
+    protected Object writeReplace() throws ObjectStreamException {
+        try {
+            CompactForm compactForm = CompactForm.of(this);
+            return compactForm != null ? compactForm : this;
+        } catch (IOException e) {
+            throw new InvalidObjectException(e.getMessage());
+        }
+    }
+
     public String getId() {
         return id;
     }
@@ -0,0 +1,68 @@
+package org.ovirt.vdsmfake.domain;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+
+/**
+ * Serialized stand-in of an entity holding its {@link DomainCodec} record, resolved back to the entity when read.
+ */
+public final class CompactForm implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
+
+    private byte[] record;
+
+    public CompactForm() {
+    }
+
+    CompactForm(BaseObject entity) throws IOException {
+        record = DomainCodec.encode(entity);
+    }
+
+    /**
+     * @return the compact form of the entity, or null when it is stored as it is
+     */
+    public static CompactForm of(BaseObject entity) throws IOException {
+        return DomainCodec.isEnabled() && DomainCodec.supports(entity) ? new CompactForm(entity) : null;
+    }
+
+    /**
+     * @return the length of the record
+     */
+    public int size() {
+        return record.length;
+    }
+
+    /**
+     * @return a new entity decoded from the record
+     */
+    public BaseObject resolve() throws IOException {
+        return DomainCodec.decode(record);
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(record.length);
+        out.write(record);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        record = new byte[in.readInt()];
+        in.readFully(record);
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        try {
+            return resolve();
+        } catch (IOException e) {
+            InvalidObjectException invalid = new InvalidObjectException(e.getMessage());
+            invalid.initCause(e);
+            throw invalid;
+        }
+    }
+}
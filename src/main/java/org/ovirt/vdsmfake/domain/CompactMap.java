@@ -0,0 +1,186 @@
+package org.ovirt.vdsmfake.domain;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable form of a raw map the engine sends, the parameters of a VM device or the custom properties of a VM, for
+ * keeping many VMs in memory. Keys and short values are interned, UUIDs are kept as {@link UUID}, two longs, and
+ * nested maps and lists are compacted too. {@link #render()} returns the raw form again.
+ */
+final class CompactMap implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final CompactMap EMPTY = new CompactMap(new String[0], new Object[0]);
+
+    // values up to that length repeat across VMs, e.g. the bus and slot of a device address
+    private static final int MAX_INTERNED_LENGTH = 24;
+    private static final int MAX_INTERNED = 1 << 16;
+    private static final Map<String, String> interned = new ConcurrentHashMap<>();
+
+    private final String[] keys;
+    private final Object[] values;
+
+    private CompactMap(String[] keys, Object[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    static CompactMap of(Map<?, ?> raw) {
+        if (raw == null || raw.isEmpty()) {
+            return EMPTY;
+        }
+        String[] keys = new String[raw.size()];
+        Object[] values = new Object[raw.size()];
+        int i = 0;
+        for (Map.Entry<?, ?> entry : raw.entrySet()) {
+            keys[i] = intern(String.valueOf(entry.getKey()));
+            values[i] = compact(entry.getValue());
+            i++;
+        }
+        return new CompactMap(keys, values);
+    }
+
+    /**
+     * @return the raw value of the key or null
+     */
+    Object get(String key) {
+        int i = indexOf(key);
+        return i < 0 ? null : render(values[i]);
+    }
+
+    String getString(String key) {
+        Object value = get(key);
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * @return a copy with the raw value set, or removed when null
+     */
+    CompactMap with(String key, Object value) {
+        int i = indexOf(key);
+        if (value == null) {
+            if (i < 0) {
+                return this;
+            }
+            String[] newKeys = new String[keys.length - 1];
+            Object[] newValues = new Object[values.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+            System.arraycopy(values, 0, newValues, 0, i);
+            System.arraycopy(values, i + 1, newValues, i, values.length - i - 1);
+            return new CompactMap(newKeys, newValues);
+        }
+        if (i < 0) {
+            String[] newKeys = Arrays.copyOf(keys, keys.length + 1);
+            Object[] newValues = Arrays.copyOf(values, values.length + 1);
+            newKeys[keys.length] = intern(key);
+            newValues[values.length] = compact(value);
+            return new CompactMap(newKeys, newValues);
+        }
+        Object[] newValues = values.clone();
+        newValues[i] = compact(value);
+        return new CompactMap(keys, newValues);
+    }
+
+    boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * @return a new map with the raw keys and values, in the order they were sent
+     */
+    Map<String, Object> render() {
+        Map<String, Object> map = new LinkedHashMap<>(keys.length * 2);
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], render(values[i]));
+        }
+        return map;
+    }
+
+    private int indexOf(String key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Object compact(Object value) {
+        if (value instanceof String) {
+            String string = (String) value;
+            UUID uuid = toUuid(string);
+            return uuid != null ? uuid : intern(string);
+        } else if (value instanceof Map) {
+            return of((Map<?, ?>) value);
+        } else if (value instanceof List || value instanceof Object[]) {
+            Object[] items = value instanceof List ? ((List<?>) value).toArray() : ((Object[]) value).clone();
+            for (int i = 0; i < items.length; i++) {
+                items[i] = compact(items[i]);
+            }
+            return items;
+        }
+        return value;
+    }
+
+    private static Object render(Object value) {
+        if (value instanceof UUID) {
+            return value.toString();
+        } else if (value instanceof CompactMap) {
+            return ((CompactMap) value).render();
+        } else if (value instanceof Object[]) {
+            Object[] items = (Object[]) value;
+            List<Object> list = new ArrayList<>(items.length);
+            for (Object item : items) {
+                list.add(render(item));
+            }
+            return list;
+        }
+        return value;
+    }
+
+    /**
+     * @return the UUID when the string is one in its canonical form, which renders back the same
+     */
+    private static UUID toUuid(String value) {
+        if (value.length() != 36 || value.charAt(8) != '-' || value.charAt(13) != '-' || value.charAt(18) != '-'
+                || value.charAt(23) != '-') {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(value);
+            return uuid.toString().equals(value) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String intern(String value) {
+        if (value.length() > MAX_INTERNED_LENGTH) {
+            return value;
+        }
+        String known = interned.get(value);
+        if (known != null) {
+            return known;
+        }
+        // the pool is bounded, unique values beyond it are kept as they are
+        if (interned.size() >= MAX_INTERNED) {
+            return value;
+        }
+        known = interned.putIfAbsent(value, value);
+        return known == null ? value : known;
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        return of(render());
+    }
+}
@@ -15,6 +15,12 @@
 */
 package org.ovirt.vdsmfake.domain;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -27,19 +33,44 @@ public class DataCenter extends BaseObject {
     /**
      *
      */
-    private static final long serialVersionUID = -5241720601365197280L;
+    private static final long serialVersionUID = 2953019127462466418L;
 
     String masterStorageDomainId;
     Integer masterVersion = 0;
     String poolStatus = "connected";
     StorageType storageType = StorageType.NFS;
 
-    private Map<String, StorageDomain> storageDomains = new ConcurrentHashMap<>();
+    // bumped on every change of the pool, its domains or their volumes
+    transient volatile long version;
+
+    // domains are stored as entries of their own, only their ids are serialized with the pool
+    private transient Map<String, StorageDomain> storageDomains = new ConcurrentHashMap<>();
+    transient List<String> storedDomainIds = Collections.emptyList();
 
     public DataCenter(String id) {
         this.id = id;
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(new ArrayList<>(storageDomains.keySet()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        storageDomains = new ConcurrentHashMap<>();
+        storedDomainIds = (List<String>) in.readObject();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public synchronized void bumpVersion() {
+        version++;
+    }
+
     public String getMasterStorageDomainId() {
         return masterStorageDomainId == null ? id : masterStorageDomainId;
     }
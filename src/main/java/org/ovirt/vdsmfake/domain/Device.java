@@ -15,20 +15,23 @@
 */
 package org.ovirt.vdsmfake.domain;
 
+import java.io.Serializable;
+import java.util.Map;
 
 /**
- *
- *
+ * A VM device, kept as the compact form of the parameters the engine sent for it. The raw parameters are rendered
+ * again only for the full VM list, the fields below are read from them. Not an entity of its own, it is stored with
+ * its VM, so it carries no fields besides the parameters.
  */
-public class Device extends BaseObject {
+public class Device implements Serializable {
 
-    // id filled with 'deviceId'
-    // name filled with 'device'
+    // id is 'deviceId'
+    // name is 'device'
 
     /**
      *
      */
-    private static final long serialVersionUID = 8669012341724331785L;
+    private static final long serialVersionUID = 6185709127533062214L;
 
     public enum DeviceType {
         DISK("disk"),
@@ -65,19 +68,41 @@ public class Device extends BaseObject {
     }
 
     DeviceType deviceType = DeviceType.GENERAL; // 'type'
+    CompactMap params = CompactMap.EMPTY;
 
-    String macAddr;
-    String iface;
-    String path;
-    String volumeID;
-    String imageID;
-    String domainID;
-    String poolID;
-    String format;
-    String readonly;
-    String nicModel;
-    String filter;
-    String network; // ovirtmgmt, rhevm
+    /**
+     * @return the device of the raw parameters
+     */
+    public static Device of(Map deviceMap) {
+        Device device = new Device();
+        device.params = CompactMap.of(deviceMap);
+        device.deviceType = DeviceType.getByName(device.params.getString("type"));
+        return device;
+    }
+
+    /**
+     * @return a new map of the raw parameters
+     */
+    public Map<String, Object> toMap() {
+        return params.render();
+    }
+
+    public String getId() {
+        return params.getString("deviceId");
+    }
+
+    public void setId(String id) {
+        params = params.with("deviceId", id);
+    }
+
+    public String getName() {
+        String name = params.getString("device");
+        return name == null ? VM.NONE_STRING : name;
+    }
+
+    public void setName(String name) {
+        params = params.with("device", name);
+    }
 
     public DeviceType getDeviceType() {
         return deviceType;
@@ -85,41 +110,51 @@ public class Device extends BaseObject {
 
     public void setDeviceType(DeviceType deviceType) {
         this.deviceType = deviceType;
+        params = params.with("type", deviceType == null ? null : deviceType.getName());
+    }
+
+    public Map getAddress() {
+        return (Map) params.get("address");
+    }
+
+    public void setAddress(Map address) {
+        params = params.with("address", address);
     }
 
     public String getMacAddr() {
-        return macAddr;
+        return params.getString("macAddr");
     }
 
     public void setMacAddr(String macAddr) {
-        this.macAddr = macAddr;
+        params = params.with("macAddr", macAddr);
     }
 
     public String getIface() {
-        return iface;
+        return params.getString("iface");
     }
 
     public void setIface(String iface) {
-        this.iface = iface;
+        params = params.with("iface", iface);
     }
 
     public String getPath() {
-        return path;
+        return params.getString("path");
     }
 
     public void setPath(String path) {
-        this.path = path;
+        params = params.with("path", path);
     }
 
     public String getVolumeID() {
-        return volumeID;
+        return params.getString("volumeID");
     }
 
     public void setVolumeID(String volumeID) {
-        this.volumeID = volumeID;
+        params = params.with("volumeID", volumeID);
     }
 
     public String getImageID() {
+        String imageID = params.getString("imageID");
         if( imageID == null || imageID.isEmpty() ) {
             return "00000000-0000-0000-0000-000000000000";
         }
@@ -127,63 +162,80 @@ public class Device extends BaseObject {
     }
 
     public void setImageID(String imageID) {
-        this.imageID = imageID;
+        params = params.with("imageID", imageID);
     }
 
     public String getDomainID() {
-        return domainID;
+        return params.getString("domainID");
     }
 
     public void setDomainID(String domainID) {
-        this.domainID = domainID;
+        params = params.with("domainID", domainID);
     }
 
     public String getPoolID() {
-        return poolID;
+        return params.getString("poolID");
     }
 
     public void setPoolID(String poolID) {
-        this.poolID = poolID;
+        params = params.with("poolID", poolID);
     }
 
     public String getFormat() {
-        return format;
+        return params.getString("format");
     }
 
     public void setFormat(String format) {
-        this.format = format;
+        params = params.with("format", format);
     }
 
     public String getReadonly() {
-        return readonly;
+        return params.getString("readonly");
     }
 
     public void setReadonly(String readonly) {
-        this.readonly = readonly;
+        params = params.with("readonly", readonly);
     }
 
     public String getNicModel() {
-        return nicModel;
+        return params.getString("nicModel");
     }
 
     public void setNicModel(String nicModel) {
-        this.nicModel = nicModel;
+        params = params.with("nicModel", nicModel);
     }
 
     public String getFilter() {
-        return filter;
+        return params.getString("filter");
     }
 
     public void setFilter(String filter) {
-        this.filter = filter;
+        params = params.with("filter", filter);
     }
 
     public String getNetwork() {
-        return network;
+        return params.getString("network");
     }
 
     public void setNetwork(String network) {
-        this.network = network;
+        params = params.with("network", network);
+    }
+
+    @Override
+    public int hashCode() {
+        String id = getId();
+        return 31 + (id == null ? 0 : id.hashCode());
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        String id = getId();
+        return id == null ? ((Device) obj).getId() == null : id.equals(((Device) obj).getId());
+    }
 }
@@ -0,0 +1,481 @@
+package org.ovirt.vdsmfake.domain;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of the stored entities, written instead of the default serialization when compactPersistence
+ * is on. A record starts with the schema version and the entity type followed by the fields in a fixed order, there
+ * are no class descriptors. Strings repeated within a record, the keys of the raw VM devices mostly, are written
+ * once and referenced by their index afterwards.
+ * <p>
+ * A change of the fields or of an enum order needs a new version, records of another version are rejected.
+ */
+public final class DomainCodec {
+
+    static final int VERSION = 1;
+
+    private static final int TYPE_HOST = 1;
+    private static final int TYPE_VM = 2;
+    private static final int TYPE_TASK = 3;
+    private static final int TYPE_DATA_CENTER = 4;
+    private static final int TYPE_STORAGE_DOMAIN = 5;
+    private static final int TYPE_VOLUME = 6;
+
+    // tags of the values of raw maps and lists
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int INT = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int TRUE = 5;
+    private static final int FALSE = 6;
+    private static final int MAP = 7;
+    private static final int LIST = 8;
+    private static final int SERIALIZED = 9;
+
+    private static volatile boolean enabled;
+
+    private DomainCodec() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        DomainCodec.enabled = enabled;
+    }
+
+    static boolean supports(BaseObject entity) {
+        return typeOf(entity) != 0;
+    }
+
+    private static int typeOf(BaseObject entity) {
+        if (entity instanceof Host) {
+            return TYPE_HOST;
+        } else if (entity instanceof VM) {
+            return TYPE_VM;
+        } else if (entity instanceof Task) {
+            return TYPE_TASK;
+        } else if (entity instanceof DataCenter) {
+            return TYPE_DATA_CENTER;
+        } else if (entity instanceof StorageDomain) {
+            return TYPE_STORAGE_DOMAIN;
+        } else if (entity instanceof Volume) {
+            return TYPE_VOLUME;
+        }
+        return 0;
+    }
+
+    public static byte[] encode(BaseObject entity) throws IOException {
+        final Writer out = new Writer();
+        final int type = typeOf(entity);
+        out.varInt(VERSION);
+        out.varInt(type);
+        out.string(entity.id);
+        out.string(entity.name);
+        switch (type) {
+        case TYPE_HOST:
+            writeHost(out, (Host) entity);
+            break;
+        case TYPE_VM:
+            writeVm(out, (VM) entity);
+            break;
+        case TYPE_TASK:
+            out.bool(((Task) entity).finished);
+            break;
+        case TYPE_DATA_CENTER:
+            writeDataCenter(out, (DataCenter) entity);
+            break;
+        case TYPE_STORAGE_DOMAIN:
+            writeStorageDomain(out, (StorageDomain) entity);
+            break;
+        case TYPE_VOLUME:
+            writeVolume(out, (Volume) entity);
+            break;
+        default:
+            throw new InvalidObjectException("No compact form of " + entity.getClass().getName());
+        }
+        return out.toByteArray();
+    }
+
+    public static BaseObject decode(byte[] data) throws IOException {
+        final Reader in = new Reader(data);
+        final int version = in.varInt();
+        if (version != VERSION) {
+            throw new InvalidObjectException("Unknown compact schema version " + version);
+        }
+        final int type = in.varInt();
+        final BaseObject entity;
+        switch (type) {
+        case TYPE_HOST:
+            entity = new Host();
+            break;
+        case TYPE_VM:
+            entity = new VM();
+            break;
+        case TYPE_TASK:
+            entity = new Task();
+            break;
+        case TYPE_DATA_CENTER:
+            entity = new DataCenter(null);
+            break;
+        case TYPE_STORAGE_DOMAIN:
+            entity = new StorageDomain();
+            break;
+        case TYPE_VOLUME:
+            entity = new Volume();
+            break;
+        default:
+            throw new InvalidObjectException("Unknown compact entity type " + type);
+        }
+        entity.id = in.string();
+        entity.name = in.string();
+        switch (type) {
+        case TYPE_HOST:
+            readHost(in, (Host) entity);
+            break;
+        case TYPE_VM:
+            readVm(in, (VM) entity);
+            break;
+        case TYPE_TASK:
+            ((Task) entity).finished = in.bool();
+            break;
+        case TYPE_DATA_CENTER:
+            readDataCenter(in, (DataCenter) entity);
+            break;
+        case TYPE_STORAGE_DOMAIN:
+            readStorageDomain(in, (StorageDomain) entity);
+            break;
+        default:
+            readVolume(in, (Volume) entity);
+            break;
+        }
+        return entity;
+    }
+
+    private static void writeHost(Writer out, Host host) throws IOException {
+        out.varLong(host.timeCreated);
+        out.string(host.storagePoolId);
+        out.value(host.getStorageConnections());
+        out.varInt(host.spmId);
+        out.enumValue(host.spmStatus);
+        out.varInt(host.spmLver);
+        out.value(host.propsMap);
+        out.strings(host.runningVMsMap.keySet());
+        out.strings(host.runningTasks.keySet());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void readHost(Reader in, Host host) throws IOException {
+        host.timeCreated = in.varLong();
+        host.storagePoolId = in.string();
+        host.getStorageConnections().putAll((Map<String, String>) in.value());
+        host.spmId = in.varInt();
+        host.spmStatus = in.enumValue(Host.SpmStatus.values());
+        host.spmLver = in.varInt();
+        host.propsMap.putAll((Map<String, String>) in.value());
+        host.storedVmIds = in.strings();
+        host.storedTaskIds = in.strings();
+    }
+
+    private static void writeVm(Writer out, VM vm) throws IOException {
+        out.string(vm.getIp());
+        out.varLong(vm.timeCreated);
+        out.varInt(vm.memSize);
+        out.string(vm.cpuType);
+        out.enumValue(vm.getStatus());
+        out.value(vm.getDeviceList());
+        out.value(vm.getCustomMap());
+        out.bool(vm.isForDelete());
+    }
+
+    private static void readVm(Reader in, VM vm) throws IOException {
+        vm.setIp(in.string());
+        vm.timeCreated = in.varLong();
+        vm.memSize = in.varInt();
+        vm.cpuType = in.string();
+        final VM.VMStatus status = in.enumValue(VM.VMStatus.values());
+        vm.setDeviceList((List) in.value());
+        vm.setCustomMap((Map) in.value());
+        vm.restore(status, in.bool());
+    }
+
+    private static void writeDataCenter(Writer out, DataCenter pool) throws IOException {
+        out.string(pool.masterStorageDomainId);
+        out.value(pool.masterVersion);
+        out.string(pool.poolStatus);
+        out.enumValue(pool.storageType);
+        out.strings(pool.getStorageDomains().keySet());
+    }
+
+    private static void readDataCenter(Reader in, DataCenter pool) throws IOException {
+        pool.masterStorageDomainId = in.string();
+        pool.masterVersion = (Integer) in.value();
+        pool.poolStatus = in.string();
+        pool.storageType = in.enumValue(StorageDomain.StorageType.values());
+        pool.storedDomainIds = in.strings();
+    }
+
+    private static void writeStorageDomain(Writer out, StorageDomain storageDomain) throws IOException {
+        out.string(storageDomain.connection);
+        out.enumValue(storageDomain.domainClass);
+        out.string(storageDomain.domainVersion);
+        out.enumValue(storageDomain.domainStatus);
+        out.enumValue(storageDomain.storageType);
+        out.enumValue(storageDomain.domainRole);
+        out.bool(storageDomain.dataCenter != null);
+        out.strings(storageDomain.volumes.keySet());
+    }
+
+    private static void readStorageDomain(Reader in, StorageDomain storageDomain) throws IOException {
+        storageDomain.connection = in.string();
+        storageDomain.domainClass = in.enumValue(StorageDomain.DomainClass.values());
+        storageDomain.domainVersion = in.string();
+        storageDomain.domainStatus = in.enumValue(StorageDomain.DomainStatus.values());
+        storageDomain.storageType = in.enumValue(StorageDomain.StorageType.values());
+        storageDomain.domainRole = in.enumValue(StorageDomain.DomainRole.values());
+        storageDomain.storedAttached = in.bool();
+        storageDomain.storedVolumeIds = in.strings();
+    }
+
+    private static void writeVolume(Writer out, Volume volume) throws IOException {
+        out.string(volume.imgUUID);
+        out.string(volume.size);
+        out.value(volume.volFormat);
+        out.value(volume.preallocate);
+        out.value(volume.diskType);
+        out.string(volume.desc);
+        out.string(volume.srcImgUUID);
+        out.string(volume.srcVolUUID);
+    }
+
+    private static void readVolume(Reader in, Volume volume) throws IOException {
+        volume.imgUUID = in.string();
+        volume.size = in.string();
+        volume.volFormat = (Integer) in.value();
+        volume.preallocate = (Integer) in.value();
+        volume.diskType = (Integer) in.value();
+        volume.desc = in.string();
+        volume.srcImgUUID = in.string();
+        volume.srcVolUUID = in.string();
+    }
+
+    private static final class Writer {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> seen = new HashMap<>();
+
+        void varInt(int value) throws IOException {
+            varLong(value);
+        }
+
+        // zig-zag encoded, so -1 of the unset spm fields takes a single byte too
+        void varLong(long value) throws IOException {
+            long v = (value << 1) ^ (value >> 63);
+            while ((v & ~0x7FL) != 0) {
+                out.writeByte((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            out.writeByte((int) v);
+        }
+
+        void bool(boolean value) throws IOException {
+            out.writeBoolean(value);
+        }
+
+        /**
+         * 0 is null, an odd header references a string written before, an even one is followed by new bytes.
+         */
+        void string(String value) throws IOException {
+            if (value == null) {
+                varInt(0);
+                return;
+            }
+            Integer index = seen.get(value);
+            if (index != null) {
+                varInt((index << 1) | 1);
+                return;
+            }
+            seen.put(value, seen.size());
+            byte[] utf = value.getBytes(StandardCharsets.UTF_8);
+            varInt((utf.length + 1) << 1);
+            out.write(utf);
+        }
+
+        void strings(Collection<String> values) throws IOException {
+            varInt(values.size());
+            for (String value : values) {
+                string(value);
+            }
+        }
+
+        void enumValue(Enum<?> value) throws IOException {
+            varInt(value == null ? 0 : value.ordinal() + 1);
+        }
+
+        void value(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof String) {
+                out.writeByte(STRING);
+                string((String) value);
+            } else if (value instanceof Integer) {
+                out.writeByte(INT);
+                varInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                varLong((Long) value);
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Map) {
+                out.writeByte(MAP);
+                Map<?, ?> map = (Map<?, ?>) value;
+                varInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    value(entry.getKey());
+                    value(entry.getValue());
+                }
+            } else if (value instanceof List) {
+                out.writeByte(LIST);
+                List<?> list = (List<?>) value;
+                varInt(list.size());
+                for (Object item : list) {
+                    value(item);
+                }
+            } else {
+                out.writeByte(SERIALIZED);
+                ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+                try (ObjectOutputStream objectOut = new ObjectOutputStream(serialized)) {
+                    objectOut.writeObject(value);
+                }
+                varInt(serialized.size());
+                serialized.writeTo(out);
+            }
+        }
+
+        byte[] toByteArray() throws IOException {
+            out.flush();
+            return bytes.toByteArray();
+        }
+    }
+
+    private static final class Reader {
+        private final DataInputStream in;
+        private final List<String> seen = new ArrayList<>();
+
+        Reader(byte[] data) {
+            in = new DataInputStream(new ByteArrayInputStream(data));
+        }
+
+        int varInt() throws IOException {
+            return (int) varLong();
+        }
+
+        long varLong() throws IOException {
+            long v = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = in.readUnsignedByte();
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        boolean bool() throws IOException {
+            return in.readBoolean();
+        }
+
+        String string() throws IOException {
+            int header = varInt();
+            if (header == 0) {
+                return null;
+            }
+            if ((header & 1) != 0) {
+                return seen.get(header >>> 1);
+            }
+            byte[] utf = new byte[(header >>> 1) - 1];
+            in.readFully(utf);
+            String value = new String(utf, StandardCharsets.UTF_8);
+            seen.add(value);
+            return value;
+        }
+
+        List<String> strings() throws IOException {
+            int size = varInt();
+            List<String> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(string());
+            }
+            return values;
+        }
+
+        <E extends Enum<E>> E enumValue(E[] values) throws IOException {
+            int ordinal = varInt();
+            return ordinal == 0 ? null : values[ordinal - 1];
+        }
+
+        Object value() throws IOException {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return string();
+            case INT:
+                return varInt();
+            case LONG:
+                return varLong();
+            case DOUBLE:
+                return in.readDouble();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case MAP:
+                int entries = varInt();
+                Map<Object, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < entries; i++) {
+                    map.put(value(), value());
+                }
+                return map;
+            case LIST:
+                int size = varInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(value());
+                }
+                return list;
+            case SERIALIZED:
+                byte[] serialized = new byte[varInt()];
+                in.readFully(serialized);
+                try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+                    return objectIn.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new InvalidObjectException(e.getMessage());
+                }
+            default:
+                throw new InvalidObjectException("Unknown compact value tag " + tag);
+            }
+        }
+    }
+}
@@ -15,14 +15,22 @@
 */
 package org.ovirt.vdsmfake.domain;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.ovirt.vdsmfake.HostProfileConfig;
 import org.ovirt.vdsmfake.Utils;
 
 public class Host extends BaseObject {
 
-    private static final long serialVersionUID = -5570247376407615153L;
+    private static final long serialVersionUID = 4260867812431470302L;
 
     long timeCreated;
     String storagePoolId = "";
@@ -52,14 +60,76 @@ public class Host extends BaseObject {
     SpmStatus spmStatus = SpmStatus.FREE;
     int spmLver = -1;
 
-    final Map<String, VM> runningVMsMap = new ConcurrentHashMap<>();
+    // bumped on every change of the host seen by the cached responses, see HostResponseCache
+    transient volatile long version;
+    // the entries of HostResponseCache, kept with the host so they go away with it
+    transient Map<String, Object> cachedResponses = new ConcurrentHashMap<>();
+
+    // the profile matching the name, resolved when the host is created or restored
+    transient volatile HostProfileConfig profile;
+
     final Map<String, String> propsMap = new ConcurrentHashMap<>();
-    final Map<String, Task> runningTasks = new ConcurrentHashMap<>();
+
+    // VMs and tasks are stored as entries of their own, only their ids are serialized with the host
+    transient Map<String, VM> runningVMsMap = new ConcurrentHashMap<>();
+    transient Map<String, Task> runningTasks = new ConcurrentHashMap<>();
+    transient List<String> storedVmIds = Collections.emptyList();
+    transient List<String> storedTaskIds = Collections.emptyList();
+    // counts of the VMs on the host, the manager links them to the global ones
+    transient VmCounters vmCounters = new VmCounters(null);
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(new ArrayList<>(runningVMsMap.keySet()));
+        out.writeObject(new ArrayList<>(runningTasks.keySet()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        runningVMsMap = new ConcurrentHashMap<>();
+        runningTasks = new ConcurrentHashMap<>();
+        cachedResponses = new ConcurrentHashMap<>();
+        vmCounters = new VmCounters(null);
+        storedVmIds = (List<String>) in.readObject();
+        storedTaskIds = (List<String>) in.readObject();
+    }
+
+    public HostProfileConfig getProfile() {
+        return profile;
+    }
+
+    public void setProfile(HostProfileConfig profile) {
+        this.profile = profile;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public synchronized void bumpVersion() {
+        version++;
+    }
+
+    public Map<String, Object> getCachedResponses() {
+        return cachedResponses;
+    }
 
     public Map<String, VM> getRunningVMs() {
         return runningVMsMap;
     }
 
+    /**
+     * @return the number of VMs on the host, without the ones left behind by a migration
+     */
+    public int getVmCount() {
+        return vmCounters.total() - vmCounters.forDelete();
+    }
+
+    public int getVmCount(VM.VMStatus status) {
+        return vmCounters.count(status);
+    }
+
     public Map<String, String> getPropsMap() {
         return propsMap;
     }
@@ -129,17 +199,25 @@ public class Host extends BaseObject {
     }
 
     public void initializeHost() {
+        initializeHost(Arrays.asList("em1", "em2"));
+    }
+
+    /**
+     * Generates what only this host has, its ids, IPs and MACs, the rest of the capabilities comes from the shared
+     * host profile.
+     */
+    public void initializeHost(List<String> nics) {
         propsMap.put("UUID", Utils.getUuid());
-        propsMap.put("UUID_EM1", Utils.getUuid());
-        propsMap.put("UUID_EM2", Utils.getUuid());
         propsMap.put("UUID_GENERATION_ID", Utils.getUuid());
 
         propsMap.put("IP", Utils.ipGenerator());
         propsMap.put("IP_GATEWAY", Utils.ipGenerator());
 
         propsMap.put("MAC", Utils.getMacAddress());
-        propsMap.put("MAC_EM1", Utils.getMacAddress());
-        propsMap.put("MAC_EM2", Utils.getMacAddress());
+        for (String nic : nics) {
+            propsMap.put("UUID_" + nic.toUpperCase(), Utils.getUuid());
+            propsMap.put("MAC_" + nic.toUpperCase(), Utils.getMacAddress());
+        }
     }
 
     public String getElapsedTimeInSeconds() {
@@ -15,6 +15,12 @@
 */
 package org.ovirt.vdsmfake.domain;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -27,7 +33,7 @@ public class StorageDomain extends BaseObject {
     /**
      *
      */
-    private static final long serialVersionUID = 1911526590448636424L;
+    private static final long serialVersionUID = -8253301867392950585L;
 
     String connection;
 
@@ -162,10 +168,27 @@ public class StorageDomain extends BaseObject {
 
     DomainRole domainRole = DomainRole.REGULAR;
 
-    // set if attached
-    DataCenter dataCenter;
+    // set if attached, restored together with the pool
+    transient DataCenter dataCenter;
 
-    final ConcurrentMap<String, Volume> volumes = new ConcurrentHashMap<>();
+    // volumes are stored as entries of their own, only their ids are serialized with the domain
+    transient ConcurrentMap<String, Volume> volumes = new ConcurrentHashMap<>();
+    transient List<String> storedVolumeIds = Collections.emptyList();
+    transient boolean storedAttached;
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeBoolean(dataCenter != null);
+        out.writeObject(new ArrayList<>(volumes.keySet()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        volumes = new ConcurrentHashMap<>();
+        storedAttached = in.readBoolean();
+        storedVolumeIds = (List<String>) in.readObject();
+    }
 
     public String getConnection() {
         return connection;
@@ -0,0 +1,128 @@
+package org.ovirt.vdsmfake.domain;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.ovirt.vdsmfake.AppConfig;
+import org.ovirt.vdsmfake.PersistUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Restores every stored host with its VMs and tasks and every stored pool with its domains on startup, in parallel,
+ * instead of one at a time on the first request of each host. Runs before the json server accepts connections, an
+ * entity which can not be restored is left to be loaded lazily as before.
+ */
+@Singleton
+public class StoreWarmUp {
+
+    private static final Logger log = LoggerFactory.getLogger(StoreWarmUp.class);
+
+    @Inject
+    private AppConfig appConfig;
+
+    @Inject
+    private PersistUtils persistUtils;
+
+    @Inject
+    private VdsmManager vdsmManager;
+
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger done = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private volatile boolean ready;
+    private volatile long millis;
+
+    public void run() {
+        if (!appConfig.isWarmUp()) {
+            ready = true;
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        final int parallelism = appConfig.getWarmUpParallelism() > 0
+                ? appConfig.getWarmUpParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<String> hostIds = persistUtils.ids(Host.class);
+            List<String> poolIds = persistUtils.ids(DataCenter.class);
+            total.set(hostIds.size() + poolIds.size());
+            log.info("Warming up {} hosts and {} storage pools on {} threads", hostIds.size(), poolIds.size(),
+                    parallelism);
+
+            final int step = Math.max(1, total.get() / 10);
+            List<Callable<Void>> restores = new ArrayList<>(total.get());
+            for (String id : hostIds) {
+                restores.add(() -> restore(id, step, () -> restoreHost(id)));
+            }
+            for (String id : poolIds) {
+                restores.add(() -> restore(id, step, () -> restoreStoragePool(id)));
+            }
+            pool.invokeAll(restores);
+
+            // the SPM of every pool, its host is restored by now
+            for (Host host : vdsmManager.hostMap.values()) {
+                if (host.getSpmStatus() != Host.SpmStatus.FREE && host.getSpUUID() != null
+                        && !host.getSpUUID().isEmpty()) {
+                    vdsmManager.spmMap.putIfAbsent(host.getSpUUID(), host);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Warm-up failed, the remaining entities are loaded on first use", e);
+        } finally {
+            pool.shutdown();
+            millis = System.currentTimeMillis() - start;
+            ready = true;
+        }
+        log.info("Warm-up restored {} of {} entities in {} ms, {} failed", done.get() - failed.get(), total.get(),
+                millis, failed.get());
+    }
+
+    private Void restore(String id, int step, BooleanSupplier restore) {
+        try {
+            if (!restore.getAsBoolean()) {
+                // missing by now or unreadable, PersistUtils logs the latter
+                failed.incrementAndGet();
+                log.warn("Failed to restore {}: nothing readable is stored", id);
+            }
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            log.warn("Failed to restore {}: {}", id, e.getMessage());
+        }
+        int count = done.incrementAndGet();
+        if (count % step == 0) {
+            log.info("Warm-up at {}/{} entities", count, total.get());
+        }
+        return null;
+    }
+
+    /**
+     * @return false when the host could not be loaded
+     */
+    private boolean restoreHost(String id) {
+        return vdsmManager.hostMap.computeIfAbsent(id, vdsmManager::restoreHost) != null;
+    }
+
+    private boolean restoreStoragePool(String id) {
+        return vdsmManager.storagePools.computeIfAbsent(id, vdsmManager::restoreStoragePool) != null;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("ready", ready);
+        stats.put("total", total.get());
+        stats.put("restored", done.get() - failed.get());
+        stats.put("failed", failed.get());
+        stats.put("millis", millis);
+        return stats;
+    }
+}
@@ -24,7 +24,7 @@ public class Task extends BaseObject {
     /**
      *
      */
-    private static final long serialVersionUID = 1503894853056375202L;
+    private static final long serialVersionUID = -6919435071391493027L;
 
     public Task() {
     }
@@ -34,7 +34,8 @@ public class Task extends BaseObject {
     }
 
     boolean finished = false;
-    Object target;
+    // the object the pending task request works on, pending requests do not survive a restart
+    transient Object target;
 
     public boolean isFinished() {
         return finished;
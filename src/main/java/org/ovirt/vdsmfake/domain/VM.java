@@ -15,12 +15,15 @@
  */
 package org.ovirt.vdsmfake.domain;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 import org.ovirt.vdsmfake.Utils;
 import org.ovirt.vdsmfake.domain.Device.DeviceType;
@@ -28,28 +31,15 @@ import org.ovirt.vdsmfake.domain.Device.DeviceType;
 public class VM extends BaseObject {
 
     public static final String NONE_STRING = "?";
-    private Map<String, String> randomNumberStore;
-    private Map<String, Long> lastRandomNumberUpdate;
     private String ip = NONE_STRING;
 
     long timeCreated;
 
-    private static final long serialVersionUID = 931258755382405882L;
+    private static final long serialVersionUID = -1904305947209874931L;
 
-    Host host;
+    // stored with the VM key, set again when the host is restored
+    transient Host host;
 
-    public VM() {
-        randomNumberStore = new HashMap<String, String>();
-        lastRandomNumberUpdate = new HashMap<String, Long>();
-    }
-
-    public Map<String, String> getRandomNumberStore() {
-        return randomNumberStore;
-    }
-
-    public Map<String, Long> getLastRandomNumberUpdate() {
-        return lastRandomNumberUpdate;
-    }
 
     public enum VMStatus {
         Unassigned(-1),
@@ -80,22 +70,150 @@ public class VM extends BaseObject {
     int memSize;
     String cpuType;
 
-    VMStatus status = VMStatus.WaitForLaunch;
-    // from create method - raw
-    List deviceList = new ArrayList();
-    Map customMap = new HashMap();
+    // the status, whether it is on a host and marked for delete, and the generation, changed by compare-and-set only
+    private volatile long state = VMStatus.WaitForLaunch.ordinal();
+    // from create method, kept compact, see Device
+    CompactMap customMap = CompactMap.EMPTY;
 
     final List<Device> devices = new ArrayList<Device>();
 
+    transient volatile VmStatsSnapshot statsSnapshot;
+    // slot of the VM in the metric store, 0 when none is assigned
+    transient volatile int metricSlot;
+    // the counters of its host while the VM is on it, see VdsmManager.addVm
+    transient volatile VmCounters counters;
+
+    private static final AtomicLongFieldUpdater<VM> STATE = AtomicLongFieldUpdater.newUpdater(VM.class, "state");
+    private static final VMStatus[] STATUSES = VMStatus.values();
+    private static final long STATUS_MASK = 0xff;
+    private static final long ATTACHED = 1 << 8;
     // after the migration is done, set this VM to be deleted not to be in statistics
-    boolean forDelete = false;
+    private static final long FOR_DELETE = 1 << 9;
+    private static final int GENERATION_SHIFT = 16;
 
     public VMStatus getStatus() {
-        return status;
+        return STATUSES[(int) (state & STATUS_MASK)];
+    }
+
+    /**
+     * @return the number of status changes requested by a verb so far, a transition planned for later carries it
+     */
+    public long getGeneration() {
+        return state >>> GENERATION_SHIFT;
+    }
+
+    /**
+     * Changes the status on behalf of a verb, which starts a new generation, the transitions planned before are
+     * dropped.
+     *
+     * @return false when the lifecycle does not allow it, the status is left as it was
+     */
+    public boolean setStatus(VMStatus status) {
+        return change(-1, status);
+    }
+
+    /**
+     * Changes the status as planned at the given generation.
+     *
+     * @return false when a verb changed the status since, or the lifecycle does not allow it
+     */
+    public boolean transition(long generation, VMStatus status) {
+        return change(generation, status);
+    }
+
+    private boolean change(long generation, VMStatus status) {
+        final VmLifecycle lifecycle = VmLifecycle.getInstance();
+        long current;
+        long next;
+        do {
+            current = state;
+            if (generation >= 0 && current >>> GENERATION_SHIFT != generation) {
+                lifecycle.stale();
+                return false;
+            }
+            VMStatus from = STATUSES[(int) (current & STATUS_MASK)];
+            if (!lifecycle.allows(from, status)) {
+                lifecycle.rejected();
+                return false;
+            }
+            next = current & ~STATUS_MASK | status.ordinal();
+            if (generation < 0) {
+                next += 1L << GENERATION_SHIFT;
+            }
+        } while (!STATE.compareAndSet(this, current, next));
+
+        final VMStatus from = STATUSES[(int) (current & STATUS_MASK)];
+        if (from != status) {
+            lifecycle.taken(from, status);
+        }
+        count(current, next);
+        return true;
     }
 
-    public void setStatus(VMStatus status) {
-        this.status = status;
+    void attach(VmCounters counters) {
+        detach();
+        this.counters = counters;
+        update(ATTACHED, true);
+    }
+
+    void detach() {
+        update(ATTACHED, false);
+    }
+
+    /**
+     * @return whether the VM is on a host, from {@link VdsmManager#addVm} until it is removed from it
+     */
+    public boolean isAttached() {
+        return (state & ATTACHED) != 0;
+    }
+
+    /**
+     * Sets the status and flag read from the store, before the VM is on a host.
+     */
+    void restore(VMStatus status, boolean forDelete) {
+        state = status.ordinal() | (forDelete ? FOR_DELETE : 0);
+    }
+
+    private void update(long flag, boolean set) {
+        long current;
+        long next;
+        do {
+            current = state;
+            next = set ? current | flag : current & ~flag;
+            if (next == current) {
+                return;
+            }
+        } while (!STATE.compareAndSet(this, current, next));
+        count(current, next);
+    }
+
+    /**
+     * Applies a change of the state to the counters of the host, every change is counted once by the thread which
+     * made it.
+     */
+    private void count(long before, long after) {
+        final VmCounters hostCounters = counters;
+        if (hostCounters == null) {
+            return;
+        }
+        final VMStatus from = STATUSES[(int) (before & STATUS_MASK)];
+        final VMStatus to = STATUSES[(int) (after & STATUS_MASK)];
+        final boolean wasForDelete = (before & FOR_DELETE) != 0;
+        final boolean isForDelete = (after & FOR_DELETE) != 0;
+        if ((before & ATTACHED) == 0) {
+            if ((after & ATTACHED) != 0) {
+                hostCounters.add(to, isForDelete, 1);
+            }
+        } else if ((after & ATTACHED) == 0) {
+            hostCounters.add(from, wasForDelete, -1);
+        } else {
+            if (from != to) {
+                hostCounters.move(from, to);
+            }
+            if (wasForDelete != isForDelete) {
+                hostCounters.markForDelete(isForDelete ? 1 : -1);
+            }
+        }
     }
 
     public Host getHost() {
@@ -106,20 +224,38 @@ public class VM extends BaseObject {
         this.host = host;
     }
 
+    /**
+     * @return the raw device maps, rendered anew from the devices
+     */
     public List getDeviceList() {
+        List deviceList = new ArrayList(devices.size());
+        for (Device device : devices) {
+            deviceList.add(device.toMap());
+        }
         return deviceList;
     }
 
+    /**
+     * Replaces the devices with the ones of the raw device maps.
+     */
     public void setDeviceList(List deviceList) {
-        this.deviceList = deviceList;
+        devices.clear();
+        if (deviceList != null) {
+            for (Object o : deviceList) {
+                devices.add(Device.of((Map) o));
+            }
+        }
     }
 
+    /**
+     * @return a new map of the custom properties
+     */
     public Map getCustomMap() {
-        return customMap;
+        return customMap.render();
     }
 
     public void setCustomMap(Map customMap) {
-        this.customMap = customMap;
+        this.customMap = CompactMap.of(customMap);
     }
 
     @Override
@@ -128,11 +264,9 @@ public class VM extends BaseObject {
         vm.setId(id);
         vm.setName(name);
         vm.setHost(host);
-        vm.setStatus(status);
-        vm.setDeviceList(deviceList);
         vm.setMemSize(memSize);
         vm.setCpuType(cpuType);
-        vm.setCustomMap(customMap);
+        vm.customMap = customMap;
         vm.setIp(Utils.ipGenerator());
         vm.getDevices().addAll(getDevices());
 
@@ -172,17 +306,11 @@ public class VM extends BaseObject {
 
     // qemu - generate address for device
     public void generateDevicesAddressIfMissing() {
-        if (deviceList == null) {
-            return;
-        }
-
         final Set<String> usedSlots = new HashSet<String>();
 
         // Iteration 1
-        for (Object o : deviceList) {
-            final Map deviceMap = (Map) o;
-
-            final Map addressMap = (Map) deviceMap.get("address");
+        for (Device device : devices) {
+            final Map addressMap = device.getAddress();
             if (addressMap == null) {
                 continue;
             }
@@ -217,9 +345,8 @@ public class VM extends BaseObject {
         }
 
         // Iteration 2
-        for (Object o : deviceList) {
-            final Map deviceMap = (Map) o;
-            final Map addressMap = (Map) deviceMap.get("address");
+        for (Device device : devices) {
+            final Map addressMap = device.getAddress();
             if (addressMap != null) {
                 continue;
             }
@@ -235,7 +362,7 @@ public class VM extends BaseObject {
             slotMap.put(" function", "0x0");
             slotMap.put(" slot", slot);
 
-            deviceMap.put("address", addressMap2);
+            device.setAddress(addressMap2);
         }
     }
 
@@ -253,36 +380,6 @@ public class VM extends BaseObject {
         }
     }
 
-    // fill devices list of Device with deviceList of Map objects
-    public void parseDevices() {
-        if (deviceList == null) {
-            return;
-        }
-
-        for (Object o : deviceList) {
-            Map deviceMap = (Map) o;
-
-            Device device = new Device();
-            devices.add(device);
-
-            device.setId((String) deviceMap.get("deviceId"));
-            device.setName((String) deviceMap.get("device"));
-            device.setDeviceType(Device.DeviceType.getByName((String) deviceMap.get("type")));
-            device.setMacAddr((String) deviceMap.get("macAddr"));
-            device.setIface((String) deviceMap.get("iface"));
-            device.setPath((String) deviceMap.get("path"));
-            device.setVolumeID((String) deviceMap.get("volumeID"));
-            device.setImageID((String) deviceMap.get("imageID"));
-            device.setDomainID((String) deviceMap.get("domainID"));
-            device.setPoolID((String) deviceMap.get("poolID"));
-            device.setFormat((String) deviceMap.get("format"));
-            device.setReadonly((String) deviceMap.get("readonly"));
-            device.setNicModel((String) deviceMap.get("nicModel")); // pv
-            device.setFilter((String) deviceMap.get("filter"));
-            device.setNetwork((String) deviceMap.get("network")); // ovirtmgmt, rhevm
-        }
-    }
-
     public List<Device> getDevicesByType(DeviceType deviceType) {
         List<Device> l = new ArrayList<Device>();
         for (Device device : devices) {
@@ -330,11 +427,33 @@ public class VM extends BaseObject {
         return "" + ((long) ((System.currentTimeMillis() - timeCreated) / 1000.0));
     }
 
+    public VmStatsSnapshot getStatsSnapshot() {
+        return statsSnapshot;
+    }
+
+    public void setStatsSnapshot(VmStatsSnapshot statsSnapshot) {
+        this.statsSnapshot = statsSnapshot;
+    }
+
+    public int getMetricSlot() {
+        return metricSlot;
+    }
+
+    public void setMetricSlot(int metricSlot) {
+        this.metricSlot = metricSlot;
+    }
+
     public boolean isForDelete() {
-        return forDelete;
+        return (state & FOR_DELETE) != 0;
     }
 
     public void setForDelete(boolean forDelete) {
-        this.forDelete = forDelete;
+        update(FOR_DELETE, forDelete);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // on no host until it is restored into one
+        state &= ~ATTACHED;
     }
 }
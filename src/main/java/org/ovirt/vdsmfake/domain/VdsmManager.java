@@ -17,12 +17,14 @@ package org.ovirt.vdsmfake.domain;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.ovirt.vdsmfake.AppConfig;
 import org.ovirt.vdsmfake.PersistUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,12 +38,21 @@ public class VdsmManager implements Serializable {
     private static final Logger log = LoggerFactory.getLogger(VdsmManager.class);
     private static final long serialVersionUID = -1241089276242324962L;
 
+    @Inject
+    private AppConfig appConfig;
+
     @Inject
     private PersistUtils persistUtils;
 
+    @Inject
+    private WriteBehindStore writeBehindStore;
+
     final ConcurrentMap<String, DataCenter> storagePools = new ConcurrentHashMap<>();
     final ConcurrentMap<String, Host> hostMap = new ConcurrentHashMap<String, Host>(0);
     final ConcurrentMap<String, Host> spmMap = new ConcurrentHashMap<String, Host>();
+    // every VM on any host by id, the target one while a VM migrates
+    final ConcurrentMap<String, VM> vmIndex = new ConcurrentHashMap<>();
+    final VmCounters vmCounters = new VmCounters(null);
 
     public void setSpmMap(String spId, Host host) {
         this.spmMap.put(spId, host);
@@ -70,44 +81,186 @@ public class VdsmManager implements Serializable {
     }
 
     public Host getHostByName(String serverName) {
-        Host host = null;
-
-        if (hostMap.containsKey(serverName)) {
-            return hostMap.get(serverName);
+        Host host = hostMap.get(serverName);
+        if (host != null) {
+            return host;
         }
+        // concurrent first requests of a host must all get the one that is kept
+        return hostMap.computeIfAbsent(serverName, this::restoreOrCreateHost);
+    }
 
-        host = (Host) loadObject(Host.class, serverName);
+    private Host restoreOrCreateHost(String serverName) {
+        Host host = restoreHost(serverName);
         if (host == null) {
             host = new Host();
             host.setName(serverName);
             host.setId(serverName);
+            host.vmCounters = new VmCounters(vmCounters);
+            host.setProfile(appConfig.getHostProfile(serverName));
             // generate IP, MAC, ...
-            host.initializeHost();
+            host.initializeHost(host.getProfile().getNics());
 
             // save to the cache
             storeObject(host);
         } else {
             log.info("Host restored from cache, name: {}", serverName);
         }
+        return host;
+    }
 
-        hostMap.put(serverName, host);
-
+    /**
+     * Rebuilds the host with its VMs and tasks, which are stored on their own.
+     */
+    Host restoreHost(String id) {
+        final Host host = (Host) loadObject(Host.class, id);
+        if (host == null) {
+            return null;
+        }
+        host.vmCounters = new VmCounters(vmCounters);
+        host.setProfile(appConfig.getHostProfile(host.getName()));
+        for (String vmId : host.storedVmIds) {
+            VM vm = (VM) persistUtils.loadVm(host.getId(), vmId);
+            if (vm != null) {
+                vm.setHost(host);
+                host.runningVMsMap.put(vmId, vm);
+                vm.attach(host.vmCounters);
+                vmIndex.putIfAbsent(vmId, vm);
+            }
+        }
+        for (String taskId : host.storedTaskIds) {
+            Task task = (Task) loadObject(Task.class, taskId);
+            if (task != null) {
+                host.runningTasks.put(taskId, task);
+            }
+        }
         return host;
     }
 
+    /**
+     * Rebuilds the pool with its storage domains and their volumes, which are stored on their own.
+     */
+    DataCenter restoreStoragePool(String id) {
+        final DataCenter pool = (DataCenter) loadObject(DataCenter.class, id);
+        if (pool == null) {
+            return null;
+        }
+        for (String sdId : pool.storedDomainIds) {
+            StorageDomain storageDomain = (StorageDomain) loadObject(StorageDomain.class, sdId);
+            if (storageDomain == null) {
+                continue;
+            }
+            for (String volumeId : storageDomain.storedVolumeIds) {
+                Volume volume = (Volume) loadObject(Volume.class, volumeId);
+                if (volume != null) {
+                    storageDomain.volumes.put(volumeId, volume);
+                }
+            }
+            if (storageDomain.storedAttached) {
+                storageDomain.setDataCenter(pool);
+            }
+            pool.getStorageDomains().put(sdId, storageDomain);
+        }
+        return pool;
+    }
+
+    /**
+     * Stores the fields of the host, its VMs and tasks are stored on their own. Bumps the version of the host, which
+     * encodes its cached responses again.
+     */
     public void updateHost(Host host) {
+        host.bumpVersion();
         hostMap.put(host.getId(), host);
 
-        log.info("Storing host: {}", host.getName());
+        // save to the cache, at most once per persistInterval
+        writeBehindStore.markDirty(host);
+    }
+
+    public void updateVm(VM vm) {
+        writeBehindStore.markDirty(vm);
+    }
+
+    public void addVm(Host host, VM vm) {
+        final VM previous = host.getRunningVMs().put(vm.getId(), vm);
+        if (previous != null && previous != vm) {
+            previous.detach();
+        }
+        vm.attach(host.vmCounters);
+        vmIndex.put(vm.getId(), vm);
+        writeBehindStore.markDirty(vm);
+        // the ids of the VMs are stored with the host, none of its cached responses shows them
+        writeBehindStore.markDirty(host);
+    }
+
+    public void removeVm(VM vm) {
+        final Host host = vm.getHost();
+        if (host.getRunningVMs().remove(vm.getId(), vm)) {
+            vm.detach();
+            vmIndex.remove(vm.getId(), vm);
+            writeBehindStore.markRemoved(vm);
+            writeBehindStore.markDirty(host);
+        }
+    }
+
+    /**
+     * @return the VM with the id on any host, the one on the target host while it migrates, or null
+     */
+    public VM getVm(String vmId) {
+        return vmIndex.get(vmId);
+    }
+
+    public void updateTask(Task task) {
+        writeBehindStore.markDirty(task);
+    }
+
+    public void addTask(Host host, Task task) {
+        host.getRunningTasks().put(task.getId(), task);
+        writeBehindStore.markDirty(task);
+        writeBehindStore.markDirty(host);
+    }
 
-        // save to the cache
-        storeObject(host);
+    public void removeTask(Host host, String taskId) {
+        final Task task = host.getRunningTasks().remove(taskId);
+        if (task != null) {
+            writeBehindStore.markRemoved(task);
+            writeBehindStore.markDirty(host);
+        }
+    }
+
+    /**
+     * Stores the fields of the pool, its domains are stored on their own. Lookups never store, a verb changing the
+     * pool, a domain or a volume calls one of the update methods.
+     */
+    public void updateStoragePool(DataCenter pool) {
+        pool.bumpVersion();
+        writeBehindStore.markDirty(pool);
+    }
+
+    public void updateStorageDomain(DataCenter pool, StorageDomain storageDomain) {
+        writeBehindStore.markDirty(storageDomain);
+        updateStoragePool(pool);
+    }
+
+    public void removeStorageDomain(DataCenter pool, StorageDomain storageDomain) {
+        writeBehindStore.markRemoved(storageDomain);
+        updateStoragePool(pool);
+    }
+
+    public void addVolume(DataCenter pool, StorageDomain storageDomain, Volume volume) {
+        storageDomain.getVolumes().put(volume.getId(), volume);
+        writeBehindStore.markDirty(volume);
+        writeBehindStore.markDirty(storageDomain);
+        updateStoragePool(pool);
     }
 
     public int getRunningVmsCount() {
-        return hostMap.values().stream()
-                .map(host -> host.getRunningVMs().size())
-                .reduce((x, y) -> x + y).orElse(0);
+        return vmCounters.total();
+    }
+
+    /**
+     * @return the counts of the VMs of all hosts by status
+     */
+    public Map<String, Object> getVmStats() {
+        return vmCounters.getStats();
     }
 
     public int getHostCount() {
@@ -118,11 +271,23 @@ public class VdsmManager implements Serializable {
         return hostMap.values();
     }
 
+    /**
+     * @return the pool from memory, restored or created and stored on the first lookup only
+     */
     public DataCenter getStoragePoolById(String spId) {
-        DataCenter cached = (DataCenter) persistUtils.load(DataCenter.class, spId);
-        DataCenter pool = storagePools.computeIfAbsent(spId, id -> cached == null ? new DataCenter(id) : cached);
-        persistUtils.store(pool);
-        return pool;
+        DataCenter pool = storagePools.get(spId);
+        if (pool != null) {
+            return pool;
+        }
+        return storagePools.computeIfAbsent(spId, id -> {
+            DataCenter cached = restoreStoragePool(id);
+            if (cached != null) {
+                return cached;
+            }
+            DataCenter created = new DataCenter(id);
+            writeBehindStore.markDirty(created);
+            return created;
+        });
     }
 
     public Collection<DataCenter> getAllStoragePools() {
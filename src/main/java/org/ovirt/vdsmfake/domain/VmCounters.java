@@ -0,0 +1,81 @@
+package org.ovirt.vdsmfake.domain;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Counts of the VMs of a host, or of all hosts, by status. A VM updates the counters of its host on every change of
+ * its status while it is on the host, which passes the change on to the global ones, so counting takes no walk over
+ * the VMs.
+ */
+final class VmCounters {
+
+    private static final VM.VMStatus[] STATUSES = VM.VMStatus.values();
+
+    private final AtomicIntegerArray byStatus = new AtomicIntegerArray(STATUSES.length);
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger forDelete = new AtomicInteger();
+    private final VmCounters parent;
+
+    VmCounters(VmCounters parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Adds a VM with the delta 1, removes it with -1.
+     */
+    void add(VM.VMStatus status, boolean markedForDelete, int delta) {
+        byStatus.addAndGet(status.ordinal(), delta);
+        total.addAndGet(delta);
+        if (markedForDelete) {
+            forDelete.addAndGet(delta);
+        }
+        if (parent != null) {
+            parent.add(status, markedForDelete, delta);
+        }
+    }
+
+    void move(VM.VMStatus from, VM.VMStatus to) {
+        byStatus.decrementAndGet(from.ordinal());
+        byStatus.incrementAndGet(to.ordinal());
+        if (parent != null) {
+            parent.move(from, to);
+        }
+    }
+
+    void markForDelete(int delta) {
+        forDelete.addAndGet(delta);
+        if (parent != null) {
+            parent.markForDelete(delta);
+        }
+    }
+
+    int count(VM.VMStatus status) {
+        return byStatus.get(status.ordinal());
+    }
+
+    int total() {
+        return total.get();
+    }
+
+    int forDelete() {
+        return forDelete.get();
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> byStatusMap = new LinkedHashMap<>();
+        for (VM.VMStatus status : STATUSES) {
+            int count = count(status);
+            if (count != 0) {
+                byStatusMap.put(status.name(), count);
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("total", total());
+        stats.put("forDelete", forDelete());
+        stats.put("byStatus", byStatusMap);
+        return stats;
+    }
+}
@@ -0,0 +1,101 @@
+package org.ovirt.vdsmfake.domain;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.ovirt.vdsmfake.domain.VM.VMStatus;
+
+/**
+ * The transitions a VM status may take and how often each was taken. A VM changes its status only along this table,
+ * see {@link VM#setStatus(VMStatus)} and {@link VM#transition(long, VMStatus)}. Staying in the same status is always
+ * allowed and not counted.
+ */
+public final class VmLifecycle {
+
+    private static final VMStatus[] STATUSES = VMStatus.values();
+
+    private static final VmLifecycle instance = new VmLifecycle();
+
+    private final Map<VMStatus, Set<VMStatus>> allowed = new EnumMap<>(VMStatus.class);
+    private final AtomicLongArray taken = new AtomicLongArray(STATUSES.length * STATUSES.length);
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+
+    private VmLifecycle() {
+        final Set<VMStatus> stopping = EnumSet.of(VMStatus.PoweringDown, VMStatus.Down);
+
+        allow(VMStatus.WaitForLaunch, VMStatus.PoweringUp, VMStatus.Up, VMStatus.MigratingTo);
+        allow(VMStatus.PoweringUp, VMStatus.Up, VMStatus.MigratingFrom);
+        allow(VMStatus.Up, VMStatus.MigratingFrom, VMStatus.Paused, VMStatus.RebootInProgress,
+                VMStatus.SavingState, VMStatus.NotResponding);
+        allow(VMStatus.Paused, VMStatus.Up, VMStatus.SavingState);
+        allow(VMStatus.RebootInProgress, VMStatus.Up);
+        allow(VMStatus.MigratingFrom, VMStatus.Up);
+        allow(VMStatus.MigratingTo, VMStatus.Up);
+        allow(VMStatus.SavingState, VMStatus.Suspended);
+        allow(VMStatus.Suspended, VMStatus.RestoringState);
+        allow(VMStatus.RestoringState, VMStatus.Up);
+        allow(VMStatus.NotResponding, VMStatus.Up, VMStatus.Unknown);
+        allow(VMStatus.Unknown, VMStatus.Up, VMStatus.NotResponding);
+        allow(VMStatus.Unassigned, VMStatus.WaitForLaunch);
+        allow(VMStatus.ImageIllegal);
+        allow(VMStatus.ImageLocked, VMStatus.WaitForLaunch);
+        // a running VM may be stopped from any status, Down is final
+        for (VMStatus status : STATUSES) {
+            if (status != VMStatus.Down && status != VMStatus.PoweringDown) {
+                allowed.computeIfAbsent(status, s -> EnumSet.noneOf(VMStatus.class)).addAll(stopping);
+            }
+        }
+        allow(VMStatus.PoweringDown, VMStatus.Down);
+        allow(VMStatus.Down);
+    }
+
+    public static VmLifecycle getInstance() {
+        return instance;
+    }
+
+    private void allow(VMStatus from, VMStatus... to) {
+        Set<VMStatus> targets = allowed.computeIfAbsent(from, s -> EnumSet.noneOf(VMStatus.class));
+        for (VMStatus status : to) {
+            targets.add(status);
+        }
+    }
+
+    boolean allows(VMStatus from, VMStatus to) {
+        return from == to || allowed.get(from).contains(to);
+    }
+
+    void taken(VMStatus from, VMStatus to) {
+        taken.incrementAndGet(from.ordinal() * STATUSES.length + to.ordinal());
+    }
+
+    void rejected() {
+        rejected.incrementAndGet();
+    }
+
+    void stale() {
+        stale.incrementAndGet();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> transitions = new LinkedHashMap<>();
+        for (VMStatus from : STATUSES) {
+            for (VMStatus to : STATUSES) {
+                long count = taken.get(from.ordinal() * STATUSES.length + to.ordinal());
+                if (count != 0) {
+                    transitions.put(from + "->" + to, count);
+                }
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("transitions", transitions);
+        stats.put("rejected", rejected.get());
+        stats.put("stale", stale.get());
+        return stats;
+    }
+}
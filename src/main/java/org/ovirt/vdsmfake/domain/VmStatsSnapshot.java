@@ -0,0 +1,61 @@
+package org.ovirt.vdsmfake.domain;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Encoded stats of a VM as reported by Host.getAllVmStats, taken at one point in time and never modified. The
+ * elapsedTime changes on every read and is not part of the snapshot, it is appended when the stats are written.
+ */
+public final class VmStatsSnapshot {
+
+    private static final byte[] ELAPSED_TIME = ",\"elapsedTime\":\"".getBytes(StandardCharsets.UTF_8);
+
+    private final VM.VMStatus status;
+    private final long takenAt;
+    private final byte[] encoded;
+    private final int contentHash;
+
+    /**
+     * @param encoded the stats object encoded as json, without the elapsedTime
+     */
+    public VmStatsSnapshot(VM.VMStatus status, long takenAt, byte[] encoded) {
+        this.status = status;
+        this.takenAt = takenAt;
+        this.encoded = encoded;
+        this.contentHash = Arrays.hashCode(encoded);
+    }
+
+    /**
+     * @return the status of the VM the stats were taken with, a snapshot of a different status is outdated
+     */
+    public VM.VMStatus getStatus() {
+        return status;
+    }
+
+    public long getTakenAt() {
+        return takenAt;
+    }
+
+    /**
+     * @return whether both snapshots report the same values, the hashes of the encoded stats are compared first
+     */
+    public boolean hasSameContent(VmStatsSnapshot other) {
+        return other == this
+                || other != null && other.contentHash == contentHash && Arrays.equals(other.encoded, encoded);
+    }
+
+    /**
+     * Writes the stats object with the current elapsedTime of the VM.
+     */
+    public void writeTo(OutputStream out, VM vm) throws IOException {
+        // the cached object without its closing brace
+        out.write(encoded, 0, encoded.length - 1);
+        out.write(ELAPSED_TIME);
+        out.write(vm.getElapsedTimeInSeconds().getBytes(StandardCharsets.UTF_8));
+        out.write('"');
+        out.write('}');
+    }
+}
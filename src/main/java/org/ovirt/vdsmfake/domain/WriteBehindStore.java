@@ -0,0 +1,168 @@
+package org.ovirt.vdsmfake.domain;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.ovirt.vdsmfake.AppConfig;
+import org.ovirt.vdsmfake.PersistUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores changed entities in the background. A changed entity is only marked dirty and every persistInterval the
+ * dirty entities are written once each, however many times they changed in between. Entities are written right
+ * away while the flusher is not running or persistInterval is 0, and all dirty entities are written when it stops.
+ */
+@Singleton
+public class WriteBehindStore {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindStore.class);
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    @Inject
+    private AppConfig appConfig;
+
+    @Inject
+    private PersistUtils persistUtils;
+
+    // store key -> the latest pending write of the entity
+    private final ConcurrentHashMap<String, Pending> dirty = new ConcurrentHashMap<>();
+    private volatile ScheduledExecutorService scheduler;
+
+    private final AtomicLong marked = new AtomicLong();
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong removed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong totalLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    private static final class Pending {
+        final String key;
+        // null when the entity is to be removed
+        final BaseObject entity;
+        final long since;
+
+        Pending(String key, BaseObject entity, long since) {
+            this.key = key;
+            this.entity = entity;
+            this.since = since;
+        }
+    }
+
+    public synchronized void start() {
+        long interval = appConfig.getPersistInterval();
+        if (interval <= 0 || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder()
+                        .namingPattern("write-behind-%d")
+                        .daemon(true)
+                        .build());
+        scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("Storing changed entities every {} ms", interval);
+    }
+
+    public void markDirty(BaseObject entity) {
+        mark(PersistUtils.keyOf(entity), entity);
+    }
+
+    public void markRemoved(BaseObject entity) {
+        mark(PersistUtils.keyOf(entity), null);
+    }
+
+    private void mark(String key, BaseObject entity) {
+        marked.incrementAndGet();
+        Pending pending = new Pending(key, entity, System.currentTimeMillis());
+        if (scheduler == null) {
+            write(pending);
+            return;
+        }
+        // a pending write keeps the time it was first marked, for the lag
+        dirty.merge(key, pending,
+                (previous, next) -> previous.entity == next.entity
+                        ? previous
+                        : new Pending(key, next.entity, previous.since));
+    }
+
+    /**
+     * Writes every dirty entity, changes made while an entity is written mark it dirty again for the next flush. An
+     * entity which fails to be written stays dirty, unless it was changed again meanwhile.
+     */
+    public void flush() {
+        for (Pending pending : dirty.values()) {
+            if (dirty.remove(pending.key, pending)) {
+                try {
+                    write(pending);
+                } catch (Exception e) {
+                    log.error("Failed to store " + pending.key + ", retrying on the next flush", e);
+                    failed.incrementAndGet();
+                    dirty.putIfAbsent(pending.key, pending);
+                }
+            }
+        }
+    }
+
+    private void write(Pending pending) {
+        if (pending.entity == null) {
+            log.debug("Removing {}", pending.key);
+            persistUtils.remove(pending.key);
+            removed.incrementAndGet();
+        } else {
+            log.debug("Storing {}", pending.key);
+            long bytes = persistUtils.store(pending.key, pending.entity);
+            if (bytes > 0) {
+                bytesWritten.addAndGet(bytes);
+            }
+            stored.incrementAndGet();
+        }
+        long lag = System.currentTimeMillis() - pending.since;
+        totalLagMillis.addAndGet(lag);
+        maxLagMillis.accumulateAndGet(lag, Math::max);
+    }
+
+    public Map<String, Object> getStats() {
+        long done = stored.get() + removed.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("marked", marked.get());
+        stats.put("stored", stored.get());
+        stats.put("removed", removed.get());
+        stats.put("dirty", dirty.size());
+        stats.put("failed", failed.get());
+        // as reported by the backend, the entities it does not know the size of are left out
+        stats.put("bytesWritten", bytesWritten.get());
+        stats.put("avgLagMillis", done == 0 ? 0 : totalLagMillis.get() / done);
+        stats.put("maxLagMillis", maxLagMillis.get());
+        return stats;
+    }
+
+    /**
+     * Lets a flush in progress finish and writes what is still dirty, entities changed from now on are written right
+     * away.
+     */
+    public synchronized void destroy() {
+        ScheduledExecutorService running = scheduler;
+        scheduler = null;
+        if (running != null) {
+            running.shutdown();
+            try {
+                if (!running.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    log.warn("A flush is still running after {} s, flushing anyway", SHUTDOWN_TIMEOUT_SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+}
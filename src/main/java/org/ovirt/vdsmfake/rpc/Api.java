@@ -15,12 +15,19 @@
 */
 package org.ovirt.vdsmfake.rpc;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.ovirt.vdsmfake.RequestContext;
+import org.ovirt.vdsmfake.domain.DataCenter;
+import org.ovirt.vdsmfake.rpc.params.MigrateParams;
+import org.ovirt.vdsmfake.rpc.params.StorageConnection;
+import org.ovirt.vdsmfake.rpc.params.VmCreateParams;
 import org.ovirt.vdsmfake.service.AbstractService;
 import org.ovirt.vdsmfake.service.HostService;
 import org.ovirt.vdsmfake.service.StorageService;
@@ -39,21 +46,21 @@ public class Api extends AbstractService {
     @Inject
     private TaskService taskService;
 
-    public Map list(String isFull, List<String> vmIds) {
-        return vmService.list(Boolean.parseBoolean(isFull), vmIds);
+    public Map list(RequestContext context, String isFull, List<String> vmIds) {
+        return vmService.list(context, Boolean.parseBoolean(isFull), vmIds);
     }
 
 
-    public Map create(Map createInfo) {
-        return vmService.create(createInfo);
+    public Map create(RequestContext context, VmCreateParams createInfo) {
+        return vmService.create(context, createInfo);
     }
 
-    public Map destroy(String vmId) {
-        return vmService.destroy(vmId);
+    public Map destroy(RequestContext context, String vmId) {
+        return vmService.destroy(context, vmId);
     }
 
-    public Map shutdown(String vmId, String timeout, String message) {
-        return vmService.shutdown(vmId, timeout, message);
+    public Map shutdown(RequestContext context, String vmId, String timeout, String message) {
+        return vmService.shutdown(context, vmId, timeout, message);
     }
 
     public Map shutdownHost(int reboot) {
@@ -80,24 +87,24 @@ public class Api extends AbstractService {
         return getOKStatusNotImplemented();
     }
 
-    public Map list() {
-        return vmService.list();
+    public Map list(RequestContext context) {
+        return vmService.list(context);
     }
 
-    public Map list(boolean isFull, List<String> vmIds) {
-        return vmService.list(isFull, vmIds);
+    public Map list(RequestContext context, boolean isFull, List<String> vmIds) {
+        return vmService.list(context, isFull, vmIds);
     }
 
-    public Map getVdsCapabilities() {
-        return hostService.getVdsCapabilities();
+    public Map getVdsCapabilities(RequestContext context) {
+        return hostService.getVdsCapabilities(context);
     }
 
-    public Map getVdsHardwareInfo() {
-        return hostService.getVdsHardwareInfo();
+    public Map getVdsHardwareInfo(RequestContext context) {
+        return hostService.getVdsHardwareInfo(context);
     }
 
-    public Map getVdsStats() {
-        return hostService.getVdsStats();
+    public Map getVdsStats(RequestContext context) {
+        return hostService.getVdsStats(context);
     }
 
     public Map desktopLogin(String vmId, String domain, String user, String password) {
@@ -112,40 +119,44 @@ public class Api extends AbstractService {
         return getOKStatusNotImplemented();
     }
 
-    public Map getVmStats(String vmId) {
-        return vmService.getVmStats(vmId);
+    public Map getVmStats(RequestContext context, String vmId) {
+        return vmService.getVmStats(context, vmId);
     }
 
-    public Map getAllVmStats() {
-        return vmService.getAllVmStats();
+    public Map getAllVmStats(RequestContext context) {
+        return vmService.getAllVmStats(context);
+    }
+
+    public void writeAllVmStats(RequestContext context, OutputStream out) throws IOException {
+        vmService.writeAllVmStats(context, out);
     }
 
     public Map hostdevListByCaps() {
         return hostService.getHostDeviceList();
     }
 
-    public Map getAllVmRuntimeStats() {
-        return vmService.getAllVmRuntimeStats();
+    public Map getAllVmRuntimeStats(RequestContext context) {
+        return vmService.getAllVmRuntimeStats(context);
     }
 
-    public Map getAllVmDeviceStats() {
-        return vmService.getAllVmDeviceStats();
+    public Map getAllVmDeviceStats(RequestContext context) {
+        return vmService.getAllVmDeviceStats(context);
     }
 
-    public Map getVmStatus(List<String> vmIds) {
-        return vmService.getVmStatus(vmIds);
+    public Map getVmStatus(RequestContext context, List<String> vmIds) {
+        return vmService.getVmStatus(context, vmIds);
     }
 
-    public Map getVmConfInfo(List<String> vmIds) {
-        return vmService.getVmConfInfo(vmIds);
+    public Map getVmConfInfo(RequestContext context, List<String> vmIds) {
+        return vmService.getVmConfInfo(context, vmIds);
     }
 
-    public Map getVmGuestDetails(List<String> vmIds) {
-        return vmService.getVmGuestDetails(vmIds);
+    public Map getVmGuestDetails(RequestContext context, List<String> vmIds) {
+        return vmService.getVmGuestDetails(context, vmIds);
     }
 
-    public Map migrate(Map<String, String> migrationInfo) {
-        return vmService.migrate(migrationInfo);
+    public Map migrate(RequestContext context, MigrateParams migrationInfo) {
+        return vmService.migrate(context, migrationInfo);
     }
 
     public Map migrateStatus(String vmId) {
@@ -188,25 +199,30 @@ public class Api extends AbstractService {
         return getOKStatusNotImplemented();
     }
 
-    public Map addNetwork(String bridge, String vlan, String bond, List<String> nics,
+    public Map addNetwork(RequestContext context, String bridge, String vlan, String bond, List<String> nics,
             Map<String, String> options) {
+        context.getHost().bumpVersion();
         return getOKStatusNotImplemented();
     }
 
-    public Map delNetwork(String bridge, String vlan, String bond, List<String> nics) {
+    public Map delNetwork(RequestContext context, String bridge, String vlan, String bond, List<String> nics) {
+        context.getHost().bumpVersion();
         return getOKStatusNotImplemented();
     }
 
-    public Map editNetwork(String oldBridge, String newBridge, String vlan, String bond, List<String> nics,
-            Map<String, String> options) {
+    public Map editNetwork(RequestContext context, String oldBridge, String newBridge, String vlan, String bond,
+            List<String> nics, Map<String, String> options) {
+        context.getHost().bumpVersion();
         return getOKStatusNotImplemented();
     }
 
-    public Map setupNetworks(Map networks, Map bonding, Map options) {
+    public Map setupNetworks(RequestContext context, Map networks, Map bonding, Map options) {
+        context.getHost().bumpVersion();
         return getOKStatusNotImplemented();
     }
 
-    public Map setSafeNetworkConfig() {
+    public Map setSafeNetworkConfig(RequestContext context) {
+        context.getHost().bumpVersion();
         return getOKStatusNotImplemented();
     }
 
@@ -215,16 +231,18 @@ public class Api extends AbstractService {
         return getOKStatusNotImplemented();
     }
 
-    public Map connectStorageServer(int serverType, String spUUID, List<Map> args) {
-        return storageService.connectStorageServer(serverType, spUUID, args);
+    public Map connectStorageServer(RequestContext context, int serverType, String spUUID,
+            List<StorageConnection> args) {
+        return storageService.connectStorageServer(context, serverType, spUUID, args);
     }
 
     public Map validateStorageServerConnection(int serverType, String spUUID, List<Map> args) {
         return storageService.validateStorageServerConnection(serverType, spUUID, args);
     }
 
-    public Map disconnectStorageServer(int serverType, String spUUID, List<Map> args) {
-        return storageService.disconnectStorageServer(serverType, spUUID, args);
+    public Map disconnectStorageServer(RequestContext context, int serverType, String spUUID,
+            List<StorageConnection> args) {
+        return storageService.disconnectStorageServer(context, serverType, spUUID, args);
     }
 
     public Map getStorageConnectionsList(String spUUID) {
@@ -235,23 +253,24 @@ public class Api extends AbstractService {
         return getOKStatusNotImplemented();
     }
 
-    public Map createStorageDomain(int domainType, String sdUUID, String domainName, String arg,
+    public Map createStorageDomain(RequestContext context, int domainType, String sdUUID, String domainName, String arg,
             int storageType, String storageFormatType) {
-        return storageService.createStorageDomain(domainType, sdUUID, domainName, arg, storageType, storageFormatType);
+        return storageService.createStorageDomain(context, domainType, sdUUID, domainName, arg, storageType,
+                storageFormatType);
     }
 
     public Map formatStorageDomain(String sdUUID) {
         return getOKStatusNotImplemented();
     }
 
-    public Map connectStoragePool(String spUUID, int hostSpmId, String SCSIKey, String masterdomainId,
-            int masterVersion) {
-        return storageService.connectStoragePool(spUUID, hostSpmId, SCSIKey, masterdomainId, masterVersion);
+    public Map connectStoragePool(RequestContext context, String spUUID, int hostSpmId, String SCSIKey,
+            String masterdomainId, int masterVersion) {
+        return storageService.connectStoragePool(context, spUUID, hostSpmId, SCSIKey, masterdomainId, masterVersion);
     }
 
-    public Map connectStoragePool(String spUUID, int hostSpmId, String SCSIKey, String masterdomainId,
-            int masterVersion, Map data) {
-        return storageService.connectStoragePool(spUUID, hostSpmId, SCSIKey, masterdomainId, masterVersion);
+    public Map connectStoragePool(RequestContext context, String spUUID, int hostSpmId, String SCSIKey,
+            String masterdomainId, int masterVersion, Map data) {
+        return storageService.connectStoragePool(context, spUUID, hostSpmId, SCSIKey, masterdomainId, masterVersion);
     }
 
     public Map disconnectStoragePool(String spUUID, int hostSpmId, String SCSIKey) {
@@ -285,8 +304,8 @@ public class Api extends AbstractService {
         return storageService.getStorageDomainStats(sdUUID);
     }
 
-    public Map getStorageDomainInfo(String sdUUID) {
-        return storageService.getStorageDomainInfo(sdUUID);
+    public Map getStorageDomainInfo(RequestContext context, String sdUUID) {
+        return storageService.getStorageDomainInfo(context, sdUUID);
     }
 
     public Map getStorageDomainsList(String spUUID, int domainType, int poolType, String path) {
@@ -329,38 +348,38 @@ public class Api extends AbstractService {
         return getOKStatusNotImplemented();
     }
 
-    public Map spmStart(String spUUID,
+    public Map spmStart(RequestContext context, String spUUID,
             int prevID,
             String prevLVER,
             int recoveryMode,
             String SCSIFencing,
             int maxHostId,
             String storagePoolFormatType) {
-        return storageService.spmStart(spUUID, prevID + "", prevLVER, recoveryMode + "", SCSIFencing);
+        return storageService.spmStart(context, spUUID, prevID + "", prevLVER, recoveryMode + "", SCSIFencing);
     }
 
-    public Map spmStop(String spUUID) {
-        return storageService.spmStop(spUUID);
+    public Map spmStop(RequestContext context, String spUUID) {
+        return storageService.spmStop(context, spUUID);
     }
 
-    public Map getSpmStatus(String spUUID) {
-        return storageService.getSpmStatus(spUUID);
+    public Map getSpmStatus(RequestContext context, String spUUID) {
+        return storageService.getSpmStatus(context, spUUID);
     }
 
     public Map fenceSpmStorage(String spUUID, int prevID, String prevLVER) {
         return getOKStatusNotImplemented();
     }
 
-    public Map refreshStoragePool(String spUUID, String msdUUID, int masterVersion) {
-        return storageService.refreshStoragePool(spUUID, msdUUID, masterVersion);
+    public Map refreshStoragePool(RequestContext context, String spUUID, String msdUUID, int masterVersion) {
+        return storageService.refreshStoragePool(context, spUUID, msdUUID, masterVersion);
     }
 
-    public Map getTaskStatus(String taskUUID) {
-        return  taskService.getTaskStatus(taskUUID);
+    public Map getTaskStatus(RequestContext context, String taskUUID) {
+        return  taskService.getTaskStatus(context, taskUUID);
     }
 
-    public Map getAllTasksStatuses() {
-        return  taskService.getAllTasksStatuses();
+    public Map getAllTasksStatuses(RequestContext context) {
+        return  taskService.getAllTasksStatuses(context);
     }
 
     public Map getTaskInfo(String taskUUID) {
@@ -371,16 +390,16 @@ public class Api extends AbstractService {
         return  taskService.getAllTasksInfo();
     }
 
-    public Map stopTask(String taskUUID) {
-        return  taskService.stopTask(taskUUID);
+    public Map stopTask(RequestContext context, String taskUUID) {
+        return  taskService.stopTask(context, taskUUID);
     }
 
-    public Map clearTask(String taskUUID) {
-        return  taskService.clearTask(taskUUID);
+    public Map clearTask(RequestContext context, String taskUUID) {
+        return  taskService.clearTask(context, taskUUID);
     }
 
-    public Map revertTask(String taskUUID) {
-        return  taskService.revertTask(taskUUID);
+    public Map revertTask(RequestContext context, String taskUUID) {
+        return  taskService.revertTask(context, taskUUID);
     }
 
     Map hotplugDisk(Map info) {
@@ -510,9 +529,10 @@ public class Api extends AbstractService {
     }
 
     /** IRS **/
-    public Map createVolume(String sdUUID, String spUUID, String imgGUID, int size, int volFormat,
-            int volType, int diskType, String volUUID, String descr, String srcImgGUID, String srcVolUUID) {
-        return storageService.createVolume(
+    public Map createVolume(RequestContext context, String sdUUID, String spUUID, String imgGUID, int size,
+            int volFormat, int volType, int diskType, String volUUID, String descr, String srcImgGUID,
+            String srcVolUUID) {
+        return storageService.createVolume(context,
                 sdUUID,
                 spUUID,
                 imgGUID,
@@ -526,9 +546,10 @@ public class Api extends AbstractService {
                 srcVolUUID);
     }
 
-    public Map createVolume(String sdUUID, String spUUID, String imgGUID, String size, int volFormat,
-            int volType, int diskType, String volUUID, String descr, String srcImgGUID, String srcVolUUID) {
-        return storageService.createVolume(
+    public Map createVolume(RequestContext context, String sdUUID, String spUUID, String imgGUID, String size,
+            int volFormat, int volType, int diskType, String volUUID, String descr, String srcImgGUID,
+            String srcVolUUID) {
+        return storageService.createVolume(context,
                 sdUUID,
                 spUUID,
                 imgGUID,
@@ -578,8 +599,8 @@ public class Api extends AbstractService {
         return getOKStatusNotImplemented();
     }
 
-    public Map getVolumeInfo(String sdUUID, String spUUID, String imgGUID, String volUUID) {
-        return storageService.getVolumeInfo(sdUUID, spUUID, imgGUID, volUUID);
+    public Map getVolumeInfo(RequestContext context, String sdUUID, String spUUID, String imgGUID, String volUUID) {
+        return storageService.getVolumeInfo(context, sdUUID, spUUID, imgGUID, volUUID);
     }
 
     public Map getStats() {
@@ -609,24 +630,26 @@ public class Api extends AbstractService {
         return getOKStatusNotImplemented();
     }
 
-    public Map activateStorageDomain(String sdUUID, String spUUID) {
-        return storageService.activateStorageDomain(sdUUID, spUUID);
+    public Map activateStorageDomain(RequestContext context, String sdUUID, String spUUID) {
+        return storageService.activateStorageDomain(context, sdUUID, spUUID);
     }
 
-    public Map deactivateStorageDomain(String sdUUID, String spUUID, String msdUUID, int masterVersion) {
-        return storageService.deactivateStorageDomain(sdUUID, spUUID, msdUUID, masterVersion);
+    public Map deactivateStorageDomain(RequestContext context, String sdUUID, String spUUID, String msdUUID,
+            int masterVersion) {
+        return storageService.deactivateStorageDomain(context, sdUUID, spUUID, msdUUID, masterVersion);
     }
 
-    public Map detachStorageDomain(String sdUUID, String spUUID, String msdUUID, int masterVersion) {
-        return storageService.detachStorageDomain(sdUUID, spUUID, msdUUID, masterVersion);
+    public Map detachStorageDomain(RequestContext context, String sdUUID, String spUUID, String msdUUID,
+            int masterVersion) {
+        return storageService.detachStorageDomain(context, sdUUID, spUUID, msdUUID, masterVersion);
     }
 
     public Map forcedDetachStorageDomain(String sdUUID, String spUUID) {
         return getOKStatusNotImplemented();
     }
 
-    public Map attachStorageDomain(String sdUUID, String spUUID) {
-        return storageService.attachStorageDomain(sdUUID, spUUID);
+    public Map attachStorageDomain(RequestContext context, String sdUUID, String spUUID) {
+        return storageService.attachStorageDomain(context, sdUUID, spUUID);
     }
 
     public Map setStorageDomainDescription(String sdUUID, String description) {
@@ -649,16 +672,21 @@ public class Api extends AbstractService {
         return getOKStatusNotImplemented();
     }
 
-    public Map getStoragePoolInfo(String spUUID) {
-        return storageService.getStoragePoolInfo(spUUID);
+    public Map getStoragePoolInfo(RequestContext context, String spUUID) {
+        return storageService.getStoragePoolInfo(context, spUUID);
+    }
+
+    public DataCenter getStoragePool(RequestContext context) {
+        return storageService.getStoragePool(context);
     }
 
     public Map destroyStoragePool(String spUUID, int hostSpmId, String SCSIKey) {
         return getOKStatusNotImplemented();
     }
 
-    public Map deleteImage(String imgGUID, String spUUID, String sdUUID, boolean postZero, boolean force) {
-        return storageService.deleteImage(imgGUID, spUUID, sdUUID, postZero, force);
+    public Map deleteImage(RequestContext context, String imgGUID, String spUUID, String sdUUID, boolean postZero,
+            boolean force) {
+        return storageService.deleteImage(context, imgGUID, spUUID, sdUUID, postZero, force);
     }
 
     public Map moveImage(String spUUID, String srcDomUUID, String dstDomUUID, String imgGUID,
@@ -3,18 +3,33 @@ package org.ovirt.vdsmfake.rpc.json;
 import java.util.function.Consumer;
 
 import org.ovirt.vdsm.jsonrpc.client.JsonRpcRequest;
-import org.ovirt.vdsm.jsonrpc.client.JsonRpcResponse;
+import org.ovirt.vdsmfake.RequestContext;
 
 public interface CommandExecutor {
 
-    JsonRpcResponse process(JsonRpcRequest request);
+    EncodedResponse process(RequestContext context, JsonRpcRequest request);
 
-    default Consumer<JsonRpcResponse> aroundConsume(Consumer<JsonRpcResponse> responseConsumer, String method) {
+    /**
+     * Delay (ms) the response of the request should be sent after, 0 when it goes out at once.
+     */
+    default long responseDelay(JsonRpcRequest request) {
+        return 0;
+    }
+
+    default Consumer<EncodedResponse> aroundConsume(Consumer<EncodedResponse> responseConsumer, String method) {
         return responseConsumer;
     }
 
-    default void execute(JsonRpcRequest request, Consumer<JsonRpcResponse> responseConsumer) {
-        JsonRpcResponse response = process(request);
-        aroundConsume(responseConsumer, request.getMethod()).accept(response);
+    default void execute(RequestContext context, JsonRpcRequest request, Consumer<EncodedResponse> responseConsumer) {
+        EncodedResponse response = process(context, request);
+        Consumer<EncodedResponse> consumer = aroundConsume(responseConsumer, request.getMethod());
+
+        // simulated latency is applied by delaying the send, the response itself is already built
+        long delay = responseDelay(request);
+        if (delay > 0) {
+            DeferredResponseScheduler.getInstance().schedule(() -> consumer.accept(response), delay);
+        } else {
+            consumer.accept(response);
+        }
     }
 }
@@ -0,0 +1,155 @@
+package org.ovirt.vdsmfake.rpc.json;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import javax.inject.Singleton;
+
+import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient;
+import org.ovirt.vdsmfake.domain.Host;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The open engine connections and the connection each fake host is served on. Connections are registered when
+ * accepted and bound to a host on their first message, events for a host are routed with a single lookup whatever
+ * the number of VMs it runs. The fake host a connection serves is resolved once and kept with the connection, see
+ * {@link #bindingOf(ReactorClient, Function)}. Closed connections are dropped when found on a lookup and on every
+ * accept.
+ */
+@Singleton
+public class ConnectionRegistry {
+    private static final Logger log = LoggerFactory.getLogger(ConnectionRegistry.class);
+
+    private final Set<ReactorClient> connections = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, ReactorClient> hosts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ReactorClient, HostBinding> bindings = new ConcurrentHashMap<>();
+    private final AtomicLong rebinds = new AtomicLong();
+
+    public void register(ReactorClient client) {
+        sweep();
+        connections.add(client);
+    }
+
+    /**
+     * Binds the host to the connection, replacing the connection it was served on before.
+     */
+    private void bind(String hostName, ReactorClient client) {
+        if (hosts.get(hostName) != client) {
+            hosts.put(hostName, client);
+        }
+    }
+
+    /**
+     * @return the fake host the connection serves, resolved by its server name on the first message and again only
+     *         when the engine changes the identifier of the connection
+     */
+    public HostBinding bindingOf(ReactorClient client, Function<String, Host> resolver) {
+        String identifier = client.getRetryPolicy().getIdentifier();
+        HostBinding binding = bindings.get(client);
+        if (binding != null && Objects.equals(binding.identifier, identifier)) {
+            return binding;
+        }
+        // concurrent first messages of a connection resolve the host once
+        return bindings.compute(client, (c, current) -> {
+            if (current != null && Objects.equals(current.identifier, identifier)) {
+                return current;
+            }
+            String serverName = serverNameOf(c);
+            HostBinding resolved = new HostBinding(identifier, serverName, resolver.apply(serverName));
+            if (current != null) {
+                log.debug("connection rebound from {} to {}", current.serverName, serverName);
+                hosts.remove(current.serverName, c);
+                rebinds.incrementAndGet();
+            }
+            // events of the host are sent on the connection it is served on
+            bind(serverName, c);
+            return resolved;
+        });
+    }
+
+    private static String serverNameOf(ReactorClient client) {
+        if (client.getRetryPolicy().getIdentifier() != null) {
+            log.debug("client policy identifier {}", client.getRetryPolicy().getIdentifier());
+            return client.getRetryPolicy().getIdentifier();
+        } else if (client.getHostname() != null) {
+            return client.getHostname();
+        } else {
+            log.error("client identifier were not found, using hash");
+            return Integer.toString(client.hashCode());
+        }
+    }
+
+    /**
+     * @return the open connection the host is served on or null
+     */
+    public ReactorClient getClient(String hostName) {
+        ReactorClient client = hosts.get(hostName);
+        if (client != null && !client.isOpen()) {
+            hosts.remove(hostName, client);
+            connections.remove(client);
+            bindings.remove(client);
+            return null;
+        }
+        return client;
+    }
+
+    /**
+     * Calls the consumer with every host bound to an open connection.
+     */
+    public void forEachHost(BiConsumer<String, ReactorClient> consumer) {
+        for (Map.Entry<String, ReactorClient> entry : hosts.entrySet()) {
+            if (entry.getValue().isOpen()) {
+                consumer.accept(entry.getKey(), entry.getValue());
+            } else {
+                hosts.remove(entry.getKey(), entry.getValue());
+                connections.remove(entry.getValue());
+                bindings.remove(entry.getValue());
+            }
+        }
+    }
+
+    public void sweep() {
+        connections.removeIf(client -> !client.isOpen());
+        hosts.values().removeIf(client -> !client.isOpen());
+        bindings.keySet().removeIf(client -> !client.isOpen());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("connections", connections.size());
+        stats.put("hosts", hosts.size());
+        stats.put("bound", bindings.size());
+        stats.put("rebinds", rebinds.get());
+        return stats;
+    }
+
+    /**
+     * The fake host bound to a connection and the identifier of the connection it was resolved for.
+     */
+    public static final class HostBinding {
+        private final String identifier;
+        private final String serverName;
+        private final Host host;
+
+        HostBinding(String identifier, String serverName, Host host) {
+            this.identifier = identifier;
+            this.serverName = serverName;
+            this.host = host;
+        }
+
+        public String getServerName() {
+            return serverName;
+        }
+
+        public Host getHost() {
+            return host;
+        }
+    }
+}
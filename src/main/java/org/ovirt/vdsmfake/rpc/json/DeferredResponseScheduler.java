@@ -0,0 +1,49 @@
+package org.ovirt.vdsmfake.rpc.json;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends responses with a simulated latency once the delay elapsed, instead of sleeping on a request thread.
+ * A pending response costs only its queue entry, so the number of delayed requests in flight is not bound to the
+ * size of the json thread pool.
+ */
+public class DeferredResponseScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(DeferredResponseScheduler.class);
+    private static final DeferredResponseScheduler instance = new DeferredResponseScheduler();
+    // a few threads, so a response blocked on a slow connection does not hold back the ones due after it
+    private static final int POOL_SIZE = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(POOL_SIZE,
+            new BasicThreadFactory.Builder()
+                    .namingPattern("deferred-response-%d")
+                    .daemon(true)
+                    .build());
+
+    private DeferredResponseScheduler() {
+    }
+
+    public static DeferredResponseScheduler getInstance() {
+        return instance;
+    }
+
+    public void schedule(Runnable send, long delay) {
+        scheduler.schedule(() -> {
+            try {
+                send.run();
+            } catch (Exception e) {
+                log.error("Failed to send deferred response", e);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+}
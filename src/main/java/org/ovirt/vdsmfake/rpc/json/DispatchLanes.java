@@ -0,0 +1,62 @@
+package org.ovirt.vdsmfake.rpc.json;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+/**
+ * Fixed set of single threaded lanes, a message is always queued on the lane its connection hashes to. Messages of
+ * one connection are therefore handled in arrival order and a slow fake host only delays the hosts sharing its lane.
+ * Every lane has its own queue, there is no lock shared between lanes.
+ */
+public class DispatchLanes {
+
+    private final ThreadPoolExecutor[] lanes;
+
+    public DispatchLanes(int count) {
+        this(count, "jsonrpcserver-lane-");
+    }
+
+    public DispatchLanes(int count, String namePrefix) {
+        lanes = new ThreadPoolExecutor[count > 0 ? count : Runtime.getRuntime().availableProcessors()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                    new BasicThreadFactory.Builder()
+                            .namingPattern(namePrefix + i + "-%d")
+                            .daemon(true)
+                            .priority(Thread.MAX_PRIORITY)
+                            .build());
+        }
+    }
+
+    public void execute(Object key, Runnable message) {
+        lanes[laneOf(key)].execute(message);
+    }
+
+    int laneOf(Object key) {
+        int h = key.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), lanes.length);
+    }
+
+    public int size() {
+        return lanes.length;
+    }
+
+    public List<Integer> getQueueDepths() {
+        List<Integer> depths = new ArrayList<>(lanes.length);
+        for (ThreadPoolExecutor lane : lanes) {
+            depths.add(lane.getQueue().size());
+        }
+        return depths;
+    }
+
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.ovirt.vdsmfake.rpc.json;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A json-rpc response already encoded to the bytes sent to the client, see {@link ResponseWriter}.
+ */
+public class EncodedResponse {
+
+    private final byte[] bytes;
+
+    public EncodedResponse(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,78 @@
+package org.ovirt.vdsmfake.rpc.json;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient;
+
+/**
+ * VM status events waiting to be sent to one engine connection. Every change of the status of a VM is kept, e.g.
+ * PoweringUp and then Up, only an event repeating the status already pending for the VM is dropped. A batch holds a
+ * VM once, its later events go out in the following batches.
+ */
+class EventOutbox {
+
+    private static final class Event {
+        private final String vmId;
+        private final String status;
+
+        Event(String vmId, String status) {
+            this.vmId = vmId;
+            this.status = status;
+        }
+    }
+
+    private final ReactorClient client;
+    private final Deque<Event> pending = new ArrayDeque<>();
+    // the latest pending event of each VM
+    private final Map<String, Event> latest = new HashMap<>();
+    // held from drain to send, so the batches of the connection go out in the order they were drained
+    private final Object sendLock = new Object();
+
+    EventOutbox(ReactorClient client) {
+        this.client = client;
+    }
+
+    ReactorClient getClient() {
+        return client;
+    }
+
+    Object getSendLock() {
+        return sendLock;
+    }
+
+    /**
+     * @return false when the VM already had an event with the same status pending and the event was dropped
+     */
+    synchronized boolean add(String vmId, String status) {
+        Event last = latest.get(vmId);
+        if (last != null && last.status.equals(status)) {
+            return false;
+        }
+        Event event = new Event(vmId, status);
+        pending.add(event);
+        latest.put(vmId, event);
+        return true;
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Removes and returns up to max pending events in the order they were queued. The batch ends before a second
+     * event of a VM already in it.
+     */
+    synchronized Map<String, String> drain(int max) {
+        Map<String, String> batch = new LinkedHashMap<>();
+        while (batch.size() < max && !pending.isEmpty() && !batch.containsKey(pending.peek().vmId)) {
+            Event event = pending.poll();
+            batch.put(event.vmId, event.status);
+            latest.remove(event.vmId, event);
+        }
+        return batch;
+    }
+}
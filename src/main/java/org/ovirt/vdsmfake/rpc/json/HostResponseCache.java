@@ -0,0 +1,85 @@
+package org.ovirt.vdsmfake.rpc.json;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ovirt.vdsmfake.domain.DataCenter;
+import org.ovirt.vdsmfake.domain.Host;
+
+/**
+ * Encoded results of the verbs whose answer depends only on the host, e.g. the capabilities, or on the host and its
+ * storage pool. An entry is valid for the host and pool versions it was encoded at, any change of the host or of the
+ * pool, its domains and their volumes bumps a version and the next call encodes it again. The VMs of the host are
+ * not part of any cached result, adding or removing one keeps the version.
+ * <p>
+ * The entries are kept by the host itself, a host that is dropped or replaced takes its entries with it.
+ */
+public class HostResponseCache {
+
+    private static final HostResponseCache instance = new HostResponseCache();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @FunctionalInterface
+    public interface Encoder {
+        byte[] encode() throws Exception;
+    }
+
+    private static class Entry {
+        private final long version;
+        private final DataCenter pool;
+        private final long poolVersion;
+        private final byte[] result;
+
+        Entry(long version, DataCenter pool, long poolVersion, byte[] result) {
+            this.version = version;
+            this.pool = pool;
+            this.poolVersion = poolVersion;
+            this.result = result;
+        }
+    }
+
+    private HostResponseCache() {
+    }
+
+    public static HostResponseCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return the cached result of the verb for the current version of the host, encoded by the encoder on a miss
+     */
+    public byte[] get(Host host, String verb, Encoder encoder) throws Exception {
+        return get(host, null, verb, encoder);
+    }
+
+    /**
+     * @param pool the pool the result depends on as well, null when it depends on the host alone
+     * @return the cached result of the verb for the current versions of the host and the pool, encoded by the encoder
+     *         on a miss
+     */
+    public byte[] get(Host host, DataCenter pool, String verb, Encoder encoder) throws Exception {
+        final Map<String, Object> entries = host.getCachedResponses();
+        // read the versions before encoding, a change made meanwhile leaves the entry outdated rather than wrong
+        final long version = host.getVersion();
+        final long poolVersion = pool == null ? 0 : pool.getVersion();
+        Entry entry = (Entry) entries.get(verb);
+        if (entry != null && entry.version == version && entry.pool == pool && entry.poolVersion == poolVersion) {
+            hits.incrementAndGet();
+            return entry.result;
+        }
+        misses.incrementAndGet();
+        byte[] result = encoder.encode();
+        entries.put(verb, new Entry(version, pool, poolVersion, result));
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+}
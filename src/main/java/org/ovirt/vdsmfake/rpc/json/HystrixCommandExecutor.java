@@ -8,7 +8,7 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.ovirt.vdsm.jsonrpc.client.JsonRpcRequest;
-import org.ovirt.vdsm.jsonrpc.client.JsonRpcResponse;
+import org.ovirt.vdsmfake.RequestContext;
 
 import com.netflix.hystrix.HystrixCommand;
 import com.netflix.hystrix.HystrixCommandGroupKey;
@@ -22,19 +22,24 @@ public class HystrixCommandExecutor implements CommandExecutor {
     private CommandExecutor defaultCommandExecutor;
 
     @Override
-    public JsonRpcResponse process(JsonRpcRequest request) {
+    public EncodedResponse process(RequestContext context, JsonRpcRequest request) {
         HystrixCommand.Setter setter = setter(request.getMethod() + ".Prepare");
-        final HystrixCommand<JsonRpcResponse> preparationCommand = new HystrixCommand<JsonRpcResponse>(setter) {
+        final HystrixCommand<EncodedResponse> preparationCommand = new HystrixCommand<EncodedResponse>(setter) {
             @Override
-            protected JsonRpcResponse run() throws Exception {
-                return defaultCommandExecutor.process(request);
+            protected EncodedResponse run() throws Exception {
+                return defaultCommandExecutor.process(context, request);
             }
         };
         return preparationCommand.execute();
     }
 
     @Override
-    public Consumer<JsonRpcResponse> aroundConsume(Consumer<JsonRpcResponse> responseConsumer, String method) {
+    public long responseDelay(JsonRpcRequest request) {
+        return defaultCommandExecutor.responseDelay(request);
+    }
+
+    @Override
+    public Consumer<EncodedResponse> aroundConsume(Consumer<EncodedResponse> responseConsumer, String method) {
         return response -> {
             HystrixCommand.Setter setter = setter(method + ".Send");
 
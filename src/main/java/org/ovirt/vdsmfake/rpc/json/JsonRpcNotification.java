@@ -1,25 +1,33 @@
 package org.ovirt.vdsmfake.rpc.json;
 
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
-import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.node.ObjectNode;
-import org.ovirt.vdsm.jsonrpc.client.ClientConnectionException;
 import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient;
 import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.StompCommonClient;
 import org.ovirt.vdsm.jsonrpc.client.reactors.stomp.impl.Message;
 import org.ovirt.vdsmfake.AppConfig;
 import org.ovirt.vdsmfake.domain.VM;
 import org.ovirt.vdsmfake.domain.VdsmManager;
+import org.ovirt.vdsmfake.service.VmMetricStore;
 import org.ovirt.vdsmfake.task.TaskType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Sends the VM status events. Events are queued in an {@link EventOutbox} per connection and every flush interval
+ * the events of a connection are sent as one notification holding all their VMs, at most eventsMaxBatchSize VMs
+ * a frame. With a flush interval of 0 each event is sent on its own right away.
+ */
 @Singleton
 public class JsonRpcNotification {
 
@@ -28,57 +36,130 @@ public class JsonRpcNotification {
     @Inject
     private VdsmManager vdsmManager;
 
+    @Inject
+    private ConnectionRegistry connectionRegistry;
+
     private ScheduledExecutorService scheduledExecutorService;
 
+    private final long flushInterval;
+    private final int maxBatchSize;
+    private final Map<ReactorClient, EventOutbox> outboxes = new ConcurrentHashMap<>();
+
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong maxBatch = new AtomicLong();
+
     @Inject
     private JsonRpcNotification(AppConfig appConfig) {
         scheduledExecutorService = Executors.newScheduledThreadPool(appConfig.getEventsThreadPoolSize());
+        flushInterval = appConfig.getEventsFlushInterval();
+        maxBatchSize = Math.max(1, appConfig.getEventsMaxBatchSize());
+        if (flushInterval > 0) {
+            scheduledExecutorService.scheduleWithFixedDelay(this::flushAll, flushInterval, flushInterval,
+                    TimeUnit.MILLISECONDS);
+        }
     }
 
-    private String messageFormatter(String msg, String id, String method) {
-        ObjectNode vmDetailNode = new ObjectMapper().createObjectNode();
-        vmDetailNode.put("status", msg);
-        vmDetailNode.put("hash", Integer.toString(id.hashCode()));
+    private void queueNotification(String status, VM vm) {
+        if (status == null) {
+            log.warn("empty message has arrived, ignore empty messages");
+            return;
+        }
+        final String vmId = vm.getId();
+        ReactorClient client = connectionRegistry.getClient(vm.getHost().getName());
+        if (client == null) {
+            log.warn("No connection to send the status {} of VM {} to", status, vmId);
+            return;
+        }
 
-        ObjectNode paramsNode = new ObjectMapper().createObjectNode();
-        paramsNode.put(id.toString(), vmDetailNode);
-        paramsNode.put("notify_time", System.nanoTime());
+        events.incrementAndGet();
+        EventOutbox outbox = outboxes.computeIfAbsent(client, EventOutbox::new);
+        if (!outbox.add(vmId, status)) {
+            coalesced.incrementAndGet();
+        }
+        if (flushInterval <= 0 || outbox.size() >= maxBatchSize) {
+            flush(outbox);
+        }
+    }
 
-        ObjectNode node = new ObjectMapper().createObjectNode();
-        node.put("params", paramsNode);
-        node.put("jsonrpc", "2.0");
-        node.put("method", method);
-        return node.toString();
+    private void flushAll() {
+        try {
+            for (EventOutbox outbox : outboxes.values()) {
+                flush(outbox);
+                if (!outbox.getClient().isOpen()) {
+                    outboxes.remove(outbox.getClient());
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to flush events", e);
+        }
     }
 
-    private void sendNotification(String message, String id, boolean removeClient, String method)
-            throws ClientConnectionException {
-        if (message == null){
-            log.warn("empty message has arrived, ignore empty messages");
+    /**
+     * Called by the flusher and by the threads filling a batch, one at a time per connection.
+     */
+    private void flush(EventOutbox outbox) {
+        synchronized (outbox.getSendLock()) {
+            Map<String, String> batch;
+            while (!(batch = outbox.drain(maxBatchSize)).isEmpty()) {
+                send(outbox.getClient(), batch);
+            }
         }
-        send(messageFormatter(message, id, method), id, removeClient);
     }
 
-    private void send(String message, String vmID, boolean removeClient) throws ClientConnectionException{
-        ReactorClient client = null;
+    private void send(ReactorClient client, Map<String, String> batch) {
         try {
-            // get client
-            client = JsonRpcServer.getClientByVmId(vmID);
-
-            // send message
-            ((StompCommonClient) client).send((new Message()).message()
-                    .withHeader("destination", "jms.queue.events")
-                    .withContent(message.getBytes())
-                    .build());
-            log.debug("sending events message {}", message);
+            sendEvent(client, format(batch));
+            frames.incrementAndGet();
+            maxBatch.accumulateAndGet(batch.size(), Math::max);
+            log.debug("sent status events of {} VMs", batch.size());
         } catch (Exception e) {
             log.error("Host {}, failed to send event message {}", client.getHostname(), e);
         }
+    }
 
-        // remove client from the map in case the operation completed \ last event was sent.
-        if (removeClient){
-            JsonRpcServer.removeClientByVmId(vmID);
-        }
+    /**
+     * Sends an encoded notification to the events queue of the connection.
+     */
+    public static void sendEvent(ReactorClient client, byte[] notification) {
+        ((StompCommonClient) client).send((new Message()).message()
+                .withHeader("destination", "jms.queue.events")
+                .withContent(notification)
+                .build());
+    }
+
+    /**
+     * The engine reads every VM of the params, the method carries the id of the first one as vdsm does for a single
+     * VM.
+     */
+    private static byte[] format(Map<String, String> batch) throws IOException {
+        return ResponseWriter.encode(generator -> {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("params");
+            for (Map.Entry<String, String> event : batch.entrySet()) {
+                generator.writeObjectFieldStart(event.getKey());
+                generator.writeStringField("status", event.getValue());
+                generator.writeStringField("hash", Integer.toString(event.getKey().hashCode()));
+                generator.writeEndObject();
+            }
+            generator.writeNumberField("notify_time", System.nanoTime());
+            generator.writeEndObject();
+            generator.writeStringField("jsonrpc", "2.0");
+            generator.writeStringField("method", "|virt|VM_status|" + batch.keySet().iterator().next());
+            generator.writeEndObject();
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        long sent = frames.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("events", events.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("frames", sent);
+        stats.put("avgBatchSize", sent == 0 ? 0 : (events.get() - coalesced.get()) / (double) sent);
+        stats.put("maxBatchSize", maxBatch.get());
+        return stats;
     }
 
     public void fireEvents(TaskType taskType, long delay, Object entity) throws InterruptedException {
@@ -89,28 +170,32 @@ public class JsonRpcNotification {
         final String Down = "Down";
 
         VM vm = (VM) entity;
+        // the transitions are dropped once a verb changes the VM before they are due
+        final long generation = vm == null ? -1 : vm.getGeneration();
 
         //TODO: merged duplicate code 'TaskRequest.process()'
         switch (taskType){
             case START_VM:
-                vm.setStatus(VM.VMStatus.WaitForLaunch);
+                vm.transition(generation, VM.VMStatus.WaitForLaunch);
                 break;
 
             case START_VM_POWERING_UP:
-                vmUpdateStatus(vm, VM.VMStatus.PoweringUp, delay, PoweringUp, false);
+                vmUpdateStatus(vm, generation, VM.VMStatus.PoweringUp, delay, PoweringUp, null);
                 break;
 
             case START_VM_AS_UP:
-                vmUpdateStatus(vm, VM.VMStatus.Up, delay, Up, true); // last event for start vm flow
+                vmUpdateStatus(vm, generation, VM.VMStatus.Up, delay, Up, null);
                 break;
 
             case SHUTDOWN_VM:
-                vmUpdateStatus(vm, VM.VMStatus.PoweringDown, delay, PoweringDown, false);
+                // Down only follows Powering down, the lifecycle refuses the other order
+                vmUpdateStatus(vm, generation, VM.VMStatus.PoweringDown, delay, PoweringDown,
+                        () -> vmUpdateStatus(vm, generation, VM.VMStatus.Down, 0, Down, null));
                 // remove vm from vdsm.
                 if (vm != null) {
-                    vm.getHost().getRunningVMs().remove(vm.getId());
+                    vdsmManager.removeVm(vm);
+                    VmMetricStore.getInstance().release(vm);
                 }
-                vmUpdateStatus(vm, VM.VMStatus.Down, 0, Down, true); // last event for stop vm flow
                 break;
 
             default:
@@ -121,18 +206,26 @@ public class JsonRpcNotification {
 
     // TODO: enlarge this method to support cross entities objects such as storage, hosts (currently BaseObject not
     // implement status).
-    private void vmUpdateStatus(final VM vm, final VM.VMStatus status, final long delay, final String msg,
-            final boolean removeClient)
-            throws InterruptedException {
+    /**
+     * @param next run once the status is set, null when nothing follows
+     */
+    private void vmUpdateStatus(final VM vm, final long generation, final VM.VMStatus status, final long delay,
+            final String msg, final Runnable next) {
         scheduledExecutorService.schedule(() -> {
             try {
-                vm.setStatus(status);
-                sendNotification(msg, vm.getId(), removeClient, "|virt|VM_status|" + vm.getId());
+                if (!vm.transition(generation, status)) {
+                    log.info("VM {} not set to {}, it changed since", vm.getId(), msg);
+                    return null;
+                }
+                queueNotification(msg, vm);
                 log.info("VM {} set to {}", vm.getId(), msg);
 
                 // update host if required
                 if (isUpdateRequired(status)) {
-                    vdsmManager.updateHost(vm.getHost());
+                    vdsmManager.updateVm(vm);
+                }
+                if (next != null) {
+                    next.run();
                 }
             } catch (Exception e) {
                 e.printStackTrace();
@@ -1,23 +1,16 @@
 package org.ovirt.vdsmfake.rpc.json;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
-import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.ovirt.vdsm.jsonrpc.client.ClientConnectionException;
 import org.ovirt.vdsm.jsonrpc.client.JsonRpcRequest;
-import org.ovirt.vdsm.jsonrpc.client.JsonRpcResponse;
-import org.ovirt.vdsm.jsonrpc.client.ResponseBuilder;
 import org.ovirt.vdsm.jsonrpc.client.reactors.Reactor;
 import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient;
 import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient.MessageListener;
@@ -25,7 +18,9 @@ import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorFactory;
 import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorListener;
 import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorType;
 import org.ovirt.vdsmfake.AppConfig;
-import org.ovirt.vdsmfake.ContextHolder;
+import org.ovirt.vdsmfake.RequestContext;
+import org.ovirt.vdsmfake.domain.VdsmManager;
+import org.ovirt.vdsmfake.rpc.json.ConnectionRegistry.HostBinding;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,13 +41,17 @@ public class JsonRpcServer {
     @Inject
     private CommandExecutor commandExecutor;
 
+    @Inject
+    private ConnectionRegistry connectionRegistry;
+
+    @Inject
+    private VdsmManager vdsmManager;
+
     private ReactorListener listener;
     private int jsonPort;
     private boolean encrypted;
     private String hostName;
-    private static final ConcurrentHashMap<String, ReactorClient> clientsMap = new ConcurrentHashMap<>();
-    private String eventSupportedMethods;
-    private ExecutorService service;
+    private MessageExecutor service;
     private AppConfig appConfig;
 
     @Inject
@@ -61,27 +60,15 @@ public class JsonRpcServer {
         hostName = appConfig.getJsonHost();
         jsonPort = appConfig.getJsonListenPort();
         encrypted = appConfig.isJsonSecured();
-        eventSupportedMethods = appConfig.getEventSupportedMethods().toString();
-        service = Executors.newFixedThreadPool(
-                appConfig.getJsonThreadPoolSize(),
-                new BasicThreadFactory.Builder()
-                        .namingPattern("jsonrpcserver-pool-%d")
-                        .daemon(true)
-                        .priority(Thread.MAX_PRIORITY)
-                        .build());
-
-    }
-
-    public void setReactorsMap(String vmId, ReactorClient client){
-        clientsMap.put(vmId, client);
+        service = new MessageExecutor(appConfig);
     }
 
-    public static void removeClientByVmId(String vmId){
-        clientsMap.remove(vmId);
+    public Map<String, Object> getExecutionStats() {
+        return service.getStats();
     }
 
-    public static ReactorClient getClientByVmId(String vmId){
-        return clientsMap.get(vmId);
+    public void shutdown() {
+        service.shutdown();
     }
 
     public void start() {
@@ -107,13 +94,14 @@ public class JsonRpcServer {
                         @Override
                         public void onAcccept(final ReactorClient client) {
                             log.info("Accepting connection from " + client.getHostname());
+                            connectionRegistry.register(client);
                             client.addEventListener(new MessageListener() {
                                 // you can provide your implementation of MessageListener
                                 @Override
                                 public void onMessageReceived(byte[] message) {
                                     MessageHandler handler = new MessageHandler(client, message);
                                     // handler.run();
-                                    service.submit(handler);
+                                    service.submit(client, handler);
                                 }
                             });
                         }
@@ -140,43 +128,27 @@ public class JsonRpcServer {
             try {
                 request = JsonRpcRequest.fromByteArray(message);
 
-                //store clients for events usage
-                if(eventSupportedMethods.contains(request.getMethod())){
-                    setReactorsMap(request.getParams().get("vmID").asText(), client);
-                }
-
-                ContextHolder.init();
-                if (client.getRetryPolicy().getIdentifier() != null) {
-                    ContextHolder.setServerName(client.getRetryPolicy().getIdentifier());
-                    log.debug("client policy identifier {}", client.getRetryPolicy().getIdentifier());
-                }
-                else if (client.getHostname() != null) {
-                    ContextHolder.setServerName(client.getHostname());
-                }
-                else{
-                    ContextHolder.setServerName(Integer.toString(client.hashCode()));
-                    log.error("client identifier were not found, using hash");
-                }
+                HostBinding binding = connectionRegistry.bindingOf(client, vdsmManager::getHostByName);
+                RequestContext context =
+                        new RequestContext(binding.getServerName(), binding.getHost(), request.getMethod());
 
                 final JsonRpcRequest finalRequest = request;
-                commandExecutor.execute(finalRequest, response -> send(response, finalRequest.getMethod()));
+                commandExecutor.execute(context, finalRequest, response -> send(response, finalRequest.getMethod()));
             } catch (Throwable e) {
                 log.error("Failure in processing request", e);
-                Map<String, Object> error = new HashMap<>();
-                error.put("code", 100);
-                error.put("message", e.getMessage());
-
-                send(new ResponseBuilder(request.getId()).withError(error).build(), request.getMethod());
+                send(ResponseWriter.error(request == null ? null : request.getId(),
+                        ResponseWriter.generalError(e.getMessage())),
+                        request == null ? null : request.getMethod());
             }
         }
 
-        private void send(JsonRpcResponse response, String method) {
+        private void send(EncodedResponse response, String method) {
             if (log.isDebugEnabled()) {
-                log.debug("Request is " + method + " got response " + new String(response.toByteArray()));
+                log.debug("Request is " + method + " got response " + response);
             }
 
             try {
-                client.sendMessage(response.toByteArray());
+                client.sendMessage(response.getBytes());
             } catch (ClientConnectionException e) {
                 // if error we are unable to talk it is better to propagate
                 log.error("Error in sending", e);
@@ -0,0 +1,150 @@
+package org.ovirt.vdsmfake.rpc.json;
+
+import static java.util.stream.Collectors.joining;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.ovirt.vdsmfake.AppConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs inbound json-rpc messages on the fixed size pool, on a virtual thread per message or on per-connection
+ * ordered lanes and keeps the same counters for all of them, so two fakes started with different modes can be
+ * compared.
+ */
+public class MessageExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageExecutor.class);
+
+    public enum Mode {
+        POOL,
+        VIRTUAL,
+        LANES;
+
+        /**
+         * @return the mode of the jsonExecutionMode value, POOL when it is empty
+         * @throws IllegalArgumentException naming the valid modes when it is not one of them
+         */
+        public static Mode of(String name) {
+            if (name == null || name.trim().isEmpty()) {
+                return POOL;
+            }
+            try {
+                return valueOf(name.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown jsonExecutionMode '" + name + "', valid modes are "
+                        + Arrays.stream(values()).map(mode -> mode.name().toLowerCase()).collect(joining(", ")));
+            }
+        }
+    }
+
+    private final Mode mode;
+    private final ExecutorService service;
+    private final DispatchLanes lanes;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+
+    public MessageExecutor(AppConfig appConfig) {
+        Mode requested = Mode.of(appConfig.getJsonExecutionMode());
+        ExecutorService virtual = requested == Mode.VIRTUAL ? newVirtualThreadPerTaskExecutor() : null;
+        if (requested == Mode.LANES) {
+            mode = Mode.LANES;
+            service = null;
+            lanes = new DispatchLanes(appConfig.getJsonDispatchLanes());
+        } else if (virtual != null) {
+            mode = Mode.VIRTUAL;
+            service = virtual;
+            lanes = null;
+        } else {
+            lanes = null;
+            mode = Mode.POOL;
+            service = Executors.newFixedThreadPool(
+                    appConfig.getJsonThreadPoolSize(),
+                    new BasicThreadFactory.Builder()
+                            .namingPattern("jsonrpcserver-pool-%d")
+                            .daemon(true)
+                            .priority(Thread.MAX_PRIORITY)
+                            .build());
+        }
+        log.info("Json messages are executed in {} mode", mode);
+    }
+
+    /**
+     * The project targets java 8, virtual threads are looked up reflectively and used only on a JVM providing them.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads are not available on java {}, falling back to the thread pool",
+                    System.getProperty("java.version"));
+            return null;
+        }
+    }
+
+    /**
+     * @param connection the connection the message arrived on, decides the lane in {@link Mode#LANES} mode
+     */
+    public void submit(Object connection, Runnable message) {
+        final long queued = System.nanoTime();
+        submitted.incrementAndGet();
+        Runnable task = () -> {
+            final long started = System.nanoTime();
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                message.run();
+            } finally {
+                inFlight.decrementAndGet();
+                completed.incrementAndGet();
+                totalWaitNanos.addAndGet(started - queued);
+                totalRunNanos.addAndGet(System.nanoTime() - started);
+            }
+        };
+        if (lanes != null) {
+            lanes.execute(connection, task);
+        } else {
+            service.execute(task);
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public Map<String, Object> getStats() {
+        long done = completed.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("mode", mode.name().toLowerCase());
+        stats.put("submitted", submitted.get());
+        stats.put("completed", done);
+        stats.put("inFlight", inFlight.get());
+        stats.put("peakInFlight", peakInFlight.get());
+        stats.put("avgWaitMicros", done == 0 ? 0 : totalWaitNanos.get() / done / 1000);
+        stats.put("avgRunMicros", done == 0 ? 0 : totalRunNanos.get() / done / 1000);
+        if (lanes != null) {
+            stats.put("laneQueueDepths", lanes.getQueueDepths());
+        }
+        return stats;
+    }
+
+    public void shutdown() {
+        if (lanes != null) {
+            lanes.shutdown();
+        } else {
+            service.shutdownNow();
+        }
+    }
+}
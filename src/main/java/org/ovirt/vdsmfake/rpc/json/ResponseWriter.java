@@ -0,0 +1,199 @@
+package org.ovirt.vdsmfake.rpc.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Encodes json-rpc responses straight to bytes. The response is written by a streaming generator into a scratch
+ * buffer taken from a shared pool, the exact sized copy handed to the reactor is the only buffer allocated per
+ * response. The pool is not tied to threads, so the buffers are reused by virtual threads too, see jsonExecutionMode.
+ */
+public final class ResponseWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(ResponseWriter.class);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+    // a buffer grown by an exceptionally large response is dropped instead of being returned to the pool
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+    // buffers kept when idle, more are allocated while that many responses are being written at once
+    private static final int POOL_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+    // a value may be encoded while a response is being written, each takes a buffer of its own
+    private static final BlockingQueue<ScratchBuffer> buffers = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final byte[] JSONRPC_ID = "{\"jsonrpc\":\"2.0\",\"id\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RESULT = ",\"result\":".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Writes the value of the result field.
+     */
+    @FunctionalInterface
+    public interface Body {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    /**
+     * Writes the value of the result field as already encoded json.
+     */
+    @FunctionalInterface
+    public interface RawBody {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private ResponseWriter() {
+    }
+
+    public static EncodedResponse result(JsonNode id, Object result) {
+        return stream(id, generator -> generator.writeObject(result));
+    }
+
+    /**
+     * @param body writes the result, when it fails an error response is returned instead
+     */
+    public static EncodedResponse stream(JsonNode id, Body body) {
+        try {
+            return encode(id, "result", body);
+        } catch (Exception e) {
+            log.error("Can't write response", e);
+            return error(id, generalError(e.getMessage()));
+        }
+    }
+
+    public static EncodedResponse error(JsonNode id, Map error) {
+        try {
+            return encode(id, "error", generator -> generator.writeObject(error));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param result the result encoded by {@link #encodeValue(Object)} earlier
+     */
+    public static EncodedResponse cached(JsonNode id, byte[] result) {
+        return raw(id, out -> out.write(result));
+    }
+
+    /**
+     * @param body writes the already encoded result, when it fails an error response is returned instead
+     */
+    public static EncodedResponse raw(JsonNode id, RawBody body) {
+        try {
+            ScratchBuffer buffer = acquire();
+            try {
+                buffer.write(JSONRPC_ID);
+                try (JsonGenerator generator = createGenerator(buffer)) {
+                    writeId(generator, id);
+                }
+                buffer.write(RESULT);
+                body.write(buffer);
+                buffer.write('}');
+                return new EncodedResponse(buffer.toByteArray());
+            } finally {
+                release(buffer);
+            }
+        } catch (Exception e) {
+            log.error("Can't write response", e);
+            return error(id, generalError(e.getMessage()));
+        }
+    }
+
+    /**
+     * @return the value alone encoded, to be passed to {@link #cached(JsonNode, byte[])}
+     */
+    public static byte[] encodeValue(Object value) throws IOException {
+        return encode(generator -> generator.writeObject(value));
+    }
+
+    /**
+     * @return the value written by the body alone encoded
+     */
+    public static byte[] encode(Body body) throws IOException {
+        ScratchBuffer buffer = acquire();
+        try {
+            try (JsonGenerator generator = createGenerator(buffer)) {
+                body.write(generator);
+            }
+            return buffer.toByteArray();
+        } finally {
+            release(buffer);
+        }
+    }
+
+    public static Map<String, Object> generalError(String message) {
+        Map<String, Object> error = new HashMap<>();
+        // General exception
+        error.put("code", 100);
+        error.put("message", message);
+        return error;
+    }
+
+    private static EncodedResponse encode(JsonNode id, String field, Body body) throws IOException {
+        ScratchBuffer buffer = acquire();
+        try {
+            try (JsonGenerator generator = createGenerator(buffer)) {
+                generator.writeStartObject();
+                generator.writeStringField("jsonrpc", "2.0");
+                generator.writeFieldName("id");
+                writeId(generator, id);
+                generator.writeFieldName(field);
+                body.write(generator);
+                generator.writeEndObject();
+            }
+            return new EncodedResponse(buffer.toByteArray());
+        } finally {
+            release(buffer);
+        }
+    }
+
+    private static JsonGenerator createGenerator(ScratchBuffer buffer) throws IOException {
+        return mapper.getJsonFactory().createJsonGenerator(buffer, JsonEncoding.UTF8);
+    }
+
+    private static void writeId(JsonGenerator generator, JsonNode id) throws IOException {
+        if (id == null) {
+            generator.writeNull();
+        } else {
+            generator.writeTree(id);
+        }
+    }
+
+    private static ScratchBuffer acquire() {
+        ScratchBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : new ScratchBuffer();
+    }
+
+    /**
+     * Returns the buffer to the pool unless it grew too large or the pool is full, it is left to the collector then.
+     */
+    private static void release(ScratchBuffer buffer) {
+        if (buffer.capacity() <= MAX_POOLED_BUFFER_SIZE) {
+            buffer.reset();
+            buffers.offer(buffer);
+        }
+    }
+
+    private static class ScratchBuffer extends ByteArrayOutputStream {
+
+        ScratchBuffer() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+}
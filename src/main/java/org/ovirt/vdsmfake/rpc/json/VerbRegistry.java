@@ -0,0 +1,54 @@
+package org.ovirt.vdsmfake.rpc.json;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.ovirt.vdsmfake.rpc.json.commands.JsonCommand;
+import org.ovirt.vdsmfake.rpc.json.commands.UnsupportedCommand;
+import org.ovirt.vdsmfake.rpc.json.commands.Verb;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verb to command table, built once from all the {@link Verb} annotated commands. Commands keep no per request
+ * state so a single instance of each serves every request.
+ */
+@Singleton
+public class VerbRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(VerbRegistry.class);
+
+    private final Map<String, JsonCommand> commands;
+    private final JsonCommand unsupported = new UnsupportedCommand();
+
+    @Inject
+    public VerbRegistry(@Any Instance<JsonCommand> instances) {
+        Map<String, JsonCommand> map = new HashMap<>();
+        for (JsonCommand command : instances) {
+            Verb verb = command.getClass().getAnnotation(Verb.class);
+            if (verb != null && map.put(verb.value(), command) != null) {
+                throw new IllegalStateException("More than one command registered for verb " + verb.value());
+            }
+        }
+        commands = Collections.unmodifiableMap(map);
+        log.info("Registered {} json commands", commands.size());
+    }
+
+    /**
+     * @return the command for the verb, {@link UnsupportedCommand} for an unknown one
+     */
+    public JsonCommand get(String verb) {
+        JsonCommand command = commands.get(verb);
+        if (command == null) {
+            log.warn("Unsupported verb {}", verb);
+            return unsupported;
+        }
+        return command;
+    }
+}
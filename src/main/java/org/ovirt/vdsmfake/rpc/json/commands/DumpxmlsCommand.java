@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("Host.dumpxmls")
 public class DumpxmlsCommand extends JsonCommand {
@@ -14,7 +15,7 @@ public class DumpxmlsCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) throws IOException {
+    protected Map activateApi(RequestContext context, JsonNode params) throws IOException {
         return api.getAllTasksInfo();
     }
 
@@ -3,6 +3,7 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("Host.getAllTasksStatuses")
 public class GetAllTasksStatusesCommand extends JsonCommand {
@@ -13,8 +14,8 @@ public class GetAllTasksStatusesCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) {
-        return api.getAllTasksStatuses();
+    protected Map activateApi(RequestContext context, JsonNode params) {
+        return api.getAllTasksStatuses(context);
     }
 
 }
@@ -3,6 +3,9 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
+import org.ovirt.vdsmfake.rpc.json.EncodedResponse;
+import org.ovirt.vdsmfake.rpc.json.ResponseWriter;
 
 @Verb("Host.getAllVmStats")
 public class GetAllVmStatsCommand extends JsonCommand {
@@ -13,8 +16,16 @@ public class GetAllVmStatsCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) {
-        return api.getAllVmStats();
+    protected Map activateApi(RequestContext context, JsonNode params) {
+        return api.getAllVmStats(context);
+    }
+
+    /**
+     * The stats list is written from the encoded stats snapshots of the VMs, without building maps.
+     */
+    @Override
+    public EncodedResponse run(RequestContext context, JsonNode params, JsonNode requestId) {
+        return ResponseWriter.raw(requestId, out -> api.writeAllVmStats(context, out));
     }
 
 }
@@ -3,6 +3,7 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("Host.getCapabilities")
 public class GetCapabilitiesCommand extends JsonCommand {
@@ -13,7 +14,12 @@ public class GetCapabilitiesCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) {
-        return api.getVdsCapabilities();
+    protected Map activateApi(RequestContext context, JsonNode params) {
+        return api.getVdsCapabilities(context);
+    }
+
+    @Override
+    protected boolean isCachedPerHost() {
+        return true;
     }
 }
@@ -8,6 +8,7 @@ import java.util.Map;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("Host.getVMFullList")
 public class GetFullVmListCommand extends JsonCommand {
@@ -18,13 +19,14 @@ public class GetFullVmListCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) throws JsonParseException, JsonMappingException, IOException {
+    protected Map activateApi(RequestContext context, JsonNode params)
+            throws JsonParseException, JsonMappingException, IOException {
         Map data;
 
         if (params != null && params.get("vmList") != null) {
-            data = api.list(true, toList(params.get("vmList")));
+            data = api.list(context, true, toList(params.get("vmList")));
         } else {
-            data = api.list(true, new ArrayList());
+            data = api.list(context, true, new ArrayList());
         }
         data.put("vmList", ((List) data.get("vmList")).toArray());
         return data;
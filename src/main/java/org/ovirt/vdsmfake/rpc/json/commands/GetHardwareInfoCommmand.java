@@ -3,6 +3,7 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("Host.getHardwareInfo")
 public class GetHardwareInfoCommmand extends JsonCommand {
@@ -13,8 +14,12 @@ public class GetHardwareInfoCommmand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) {
-        return api.getVdsHardwareInfo();
+    protected Map activateApi(RequestContext context, JsonNode params) {
+        return api.getVdsHardwareInfo(context);
     }
 
+    @Override
+    protected boolean isCachedPerHost() {
+        return true;
+    }
 }
@@ -3,6 +3,8 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
+import org.ovirt.vdsmfake.Utils;
 
 @SuppressWarnings("rawtypes")
 @Verb("Host.getStats")
@@ -14,8 +16,13 @@ public class GetStatsCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) {
-        return api.getVdsStats();
+    protected Map activateApi(RequestContext context, JsonNode params) {
+        return api.getVdsStats(context);
+    }
+
+    @Override
+    public long responseDelay() {
+        return Utils.getLatency();
     }
 
 }
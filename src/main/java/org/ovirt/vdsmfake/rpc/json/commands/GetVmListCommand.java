@@ -3,6 +3,7 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("Host.getVMList")
 public class GetVmListCommand extends JsonCommand {
@@ -14,8 +15,8 @@ public class GetVmListCommand extends JsonCommand {
 
     @SuppressWarnings("unchecked")
     @Override
-    protected Map activateApi(JsonNode params) {
-        return api.list();
+    protected Map activateApi(RequestContext context, JsonNode params) {
+        return api.list(context);
     }
 
 }
@@ -3,6 +3,7 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("Host.hostdevListByCaps")
 public class HostDevListByCaps extends JsonCommand {
@@ -13,7 +14,7 @@ public class HostDevListByCaps extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) {
+    protected Map activateApi(RequestContext context, JsonNode params) {
         return api.hostDevListByCaps();
     }
 
@@ -6,16 +6,17 @@ import java.util.Map;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
-import org.ovirt.vdsm.jsonrpc.client.JsonRpcResponse;
-import org.ovirt.vdsm.jsonrpc.client.ResponseBuilder;
+import org.ovirt.vdsmfake.RequestContext;
+import org.ovirt.vdsmfake.rpc.json.EncodedResponse;
+import org.ovirt.vdsmfake.rpc.json.ResponseWriter;
 import org.ovirt.vdsmfake.service.ResultCodes;
 
 @Verb("Host.setMOMPolicyParameters")
 public class HostSetMomPolicyParameters extends JsonCommand {
 
     @Override
-    public JsonRpcResponse run(JsonNode params, JsonNode requestId) {
-        return new ResponseBuilder(requestId).withResult(ResultCodes.OK.map()).build();
+    public EncodedResponse run(RequestContext context, JsonNode params, JsonNode requestId) {
+        return ResponseWriter.result(requestId, ResultCodes.OK.map());
     }
 
     @Override
@@ -24,7 +25,8 @@ public class HostSetMomPolicyParameters extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) throws JsonParseException, JsonMappingException, IOException {
+    protected Map activateApi(RequestContext context, JsonNode params)
+            throws JsonParseException, JsonMappingException, IOException {
         return null;
     }
 
@@ -3,6 +3,7 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("Image.delete")
 public class ImageDelete extends JsonCommand {
@@ -13,8 +14,8 @@ public class ImageDelete extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) {
-        return api.deleteImage(params.get("imageID").asText(),
+    protected Map activateApi(RequestContext context, JsonNode params) {
+        return api.deleteImage(context, params.get("imageID").asText(),
                 params.get("storagepoolID").asText(),
                 params.get("storagedomainID").asText(),
                 params.get("postZero").asBoolean(),
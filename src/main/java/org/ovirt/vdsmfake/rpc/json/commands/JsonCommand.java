@@ -1,9 +1,6 @@
 package org.ovirt.vdsmfake.rpc.json.commands;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -14,68 +11,82 @@ import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.type.TypeReference;
-import org.ovirt.vdsm.jsonrpc.client.JsonRpcResponse;
-import org.ovirt.vdsm.jsonrpc.client.ResponseBuilder;
 import org.ovirt.vdsmfake.AppLifecycleListener;
+import org.ovirt.vdsmfake.RequestContext;
+import org.ovirt.vdsmfake.domain.DataCenter;
 import org.ovirt.vdsmfake.rpc.Api;
+import org.ovirt.vdsmfake.rpc.json.EncodedResponse;
+import org.ovirt.vdsmfake.rpc.json.HostResponseCache;
+import org.ovirt.vdsmfake.rpc.json.ResponseWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Base of the json-rpc verbs. A single instance of each command serves all requests, see
+ * {@link org.ovirt.vdsmfake.rpc.json.VerbRegistry}, so implementations must not keep per request state.
+ */
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public abstract class JsonCommand {
     protected static final Logger log = LoggerFactory
             .getLogger(JsonCommand.class);
-    private final ObjectMapper mapper = new ObjectMapper();
-    protected Api api = CDI.current().select(Api.class, AppLifecycleListener.DefaultLiteral.INSTANCE).get();
+    private static final ObjectMapper mapper = new ObjectMapper();
+    protected final Api api = CDI.current().select(Api.class, AppLifecycleListener.DefaultLiteral.INSTANCE).get();
 
-    public JsonRpcResponse run(JsonNode params, JsonNode requestId) {
+    public EncodedResponse run(RequestContext context, JsonNode params, JsonNode requestId) {
         Object result;
-        ResponseBuilder builder = new ResponseBuilder(requestId);
         try {
-            Map apiResult = activateApi(params);
-
-            if (fieldName() != null) {
-                result = apiResult.get(fieldName());
-            } else {
-                result = apiResult;
+            if (isCachedPerHost()) {
+                return ResponseWriter.cached(requestId, HostResponseCache.getInstance().get(context.getHost(),
+                        cachedPool(context), getClass().getName(),
+                        () -> ResponseWriter.encodeValue(result(context, params))));
             }
-
+            result = result(context, params);
         } catch (Exception e) {
             log.error("Can't run api call", e);
-            Map<String, Object> error = new HashMap<>();
-            // General exception
-            error.put("code", 100);
-            error.put("message", e.getMessage());
-            return builder.withError(error).build();
+            return ResponseWriter.error(requestId, ResponseWriter.generalError(e.getMessage()));
         }
 
-        if (result instanceof Map) {
-            builder =
-                    builder.withResult((Map) result);
-        } else if (result instanceof List) {
-            builder =
-                    builder.withResult((List) result);
-        } else if (result instanceof String) {
-            builder = builder.withResult((String) result);
-        } else if (result != null && result.getClass().isArray()){
-            List tempList = new ArrayList();
-            Collections.addAll(tempList, (Object[]) result);
-            builder = builder.withResult(tempList);
-        } else {
-            log.error("Unknown response data --> " + result, new Exception());
-            Map<String, Object> error = new HashMap<>();
-            // General exception
-            error.put("code", 100);
-            error.put("message", "Unknown response data");
-            builder.withError(error);
+        if (result instanceof Map || result instanceof List || result instanceof String || result instanceof JsonNode
+                || result != null && result.getClass().isArray()) {
+            return ResponseWriter.result(requestId, result);
         }
 
-        return builder.build();
+        log.error("Unknown response data --> " + result, new Exception());
+        return ResponseWriter.error(requestId, ResponseWriter.generalError("Unknown response data"));
+    }
+
+    private Object result(RequestContext context, JsonNode params) throws IOException {
+        Map apiResult = activateApi(context, params);
+        return fieldName() != null ? apiResult.get(fieldName()) : apiResult;
+    }
+
+    /**
+     * Commands whose result depends only on the host return true, their encoded result is reused until the host
+     * changes, see {@link HostResponseCache}.
+     */
+    protected boolean isCachedPerHost() {
+        return false;
+    }
+
+    /**
+     * @return the storage pool a result cached per host depends on as well, its changes invalidate the result too
+     */
+    protected DataCenter cachedPool(RequestContext context) {
+        return null;
+    }
+
+    /**
+     * Delay (ms) the response should be sent after, commands simulating a slow call run the latency here, see
+     * {@link org.ovirt.vdsmfake.Utils#getLatency()}.
+     */
+    public long responseDelay() {
+        return 0;
     }
 
     abstract String fieldName();
 
-    abstract Map activateApi(JsonNode params) throws JsonParseException, JsonMappingException, IOException;
+    abstract Map activateApi(RequestContext context, JsonNode params)
+            throws JsonParseException, JsonMappingException, IOException;
 
     protected List toList(JsonNode jsonNode) throws JsonParseException, JsonMappingException,
             IOException {
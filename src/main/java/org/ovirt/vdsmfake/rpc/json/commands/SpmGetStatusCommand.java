@@ -3,6 +3,7 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("StoragePool.getSpmStatus")
 public class SpmGetStatusCommand extends JsonCommand {
@@ -13,8 +14,8 @@ public class SpmGetStatusCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) {
-        return api.getSpmStatus(params
+    protected Map activateApi(RequestContext context, JsonNode params) {
+        return api.getSpmStatus(context, params
                 .get("storagepoolID")
                 .asText());
     }
@@ -3,6 +3,7 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("StoragePool.spmStart")
 public class SpmStartCommand extends JsonCommand {
@@ -13,8 +14,8 @@ public class SpmStartCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) {
-        return api.spmStart(params.get("storagepoolID").asText(),
+    protected Map activateApi(RequestContext context, JsonNode params) {
+        return api.spmStart(context, params.get("storagepoolID").asText(),
                 params.get("prevID").asInt(),
                 params.get("prevLver").asText(),
                 0,
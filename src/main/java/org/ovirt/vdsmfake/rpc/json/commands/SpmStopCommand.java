@@ -3,6 +3,7 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("StoragePool.spmStop")
 public class SpmStopCommand extends JsonCommand {
@@ -13,8 +14,8 @@ public class SpmStopCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) {
-        return api.spmStop(params.get("storagepoolID").asText());
+    protected Map activateApi(RequestContext context, JsonNode params) {
+        return api.spmStop(context, params.get("storagepoolID").asText());
     }
 
 }
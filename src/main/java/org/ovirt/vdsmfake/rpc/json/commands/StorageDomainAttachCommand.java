@@ -6,6 +6,7 @@ import java.util.Map;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("StorageDomain.attach")
 public class StorageDomainAttachCommand extends JsonCommand {
@@ -16,8 +17,9 @@ public class StorageDomainAttachCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) throws JsonParseException, JsonMappingException, IOException {
-        return api.attachStorageDomain(params.get("storagedomainID").asText(),
+    protected Map activateApi(RequestContext context, JsonNode params)
+            throws JsonParseException, JsonMappingException, IOException {
+        return api.attachStorageDomain(context, params.get("storagedomainID").asText(),
                 params.get("storagepoolID").asText());
     }
 
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
 import org.ovirt.vdsmfake.domain.StorageDomain;
 
 @Verb("StorageDomain.create")
@@ -15,8 +16,8 @@ public class StorageDomainCreateCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) throws IOException {
-        return api.createStorageDomain(StorageDomain.StorageType.NFS.ordinal(),
+    protected Map activateApi(RequestContext context, JsonNode params) throws IOException {
+        return api.createStorageDomain(context, StorageDomain.StorageType.NFS.ordinal(),
                 params.get("storagedomainID").asText(),
                 params.get("name").asText(),
                 params.get("typeArgs").asText(),
@@ -6,6 +6,7 @@ import java.util.Map;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("StorageDomain.getInfo")
 public class StorageDomainGetInfoCommand extends JsonCommand {
@@ -16,8 +17,9 @@ public class StorageDomainGetInfoCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) throws JsonParseException, JsonMappingException, IOException {
-        return api.getStorageDomainInfo(params.get("storagedomainID").asText());
+    protected Map activateApi(RequestContext context, JsonNode params)
+            throws JsonParseException, JsonMappingException, IOException {
+        return api.getStorageDomainInfo(context, params.get("storagedomainID").asText());
     }
 
 }
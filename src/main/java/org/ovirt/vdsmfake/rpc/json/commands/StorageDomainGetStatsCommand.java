@@ -6,6 +6,7 @@ import java.util.Map;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("StorageDomain.getStats")
 public class StorageDomainGetStatsCommand extends JsonCommand {
@@ -16,7 +17,8 @@ public class StorageDomainGetStatsCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) throws JsonParseException, JsonMappingException, IOException {
+    protected Map activateApi(RequestContext context, JsonNode params)
+            throws JsonParseException, JsonMappingException, IOException {
         return api.getStorageDomainStats(params.get("storagedomainID").asText());
     }
 
@@ -3,6 +3,7 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("StoragePool.connect")
 public class StoragePoolConnectCommand extends JsonCommand {
@@ -13,8 +14,8 @@ public class StoragePoolConnectCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) {
-        return api.connectStoragePool(params.get("storagepoolID").asText(),
+    protected Map activateApi(RequestContext context, JsonNode params) {
+        return api.connectStoragePool(context, params.get("storagepoolID").asText(),
                 params.get("hostID").asInt(),
                 params.get("scsiKey").asText(),
                 params.get("masterSdUUID").asText(),
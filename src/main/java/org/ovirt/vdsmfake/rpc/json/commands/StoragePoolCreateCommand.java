@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("StoragePool.create")
 public class StoragePoolCreateCommand extends JsonCommand {
@@ -15,7 +16,7 @@ public class StoragePoolCreateCommand extends JsonCommand {
 
     @SuppressWarnings("unchecked")
     @Override
-    protected Map activateApi(JsonNode params) throws IOException {
+    protected Map activateApi(RequestContext context, JsonNode params) throws IOException {
         return api.createStoragePool(0,
                 params.get("storagepoolID").asText(),
                 params.get("name").asText(),
@@ -3,6 +3,7 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("StoragePool.disconnect")
 public class StoragePoolDisconnectCommand extends JsonCommand {
@@ -13,7 +14,7 @@ public class StoragePoolDisconnectCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) {
+    protected Map activateApi(RequestContext context, JsonNode params) {
         return api.disconnectStoragePool(params.get("storagepoolID").asText(),
                 params.get("hostID").asInt(),
                 params.get("scsiKey").asText());
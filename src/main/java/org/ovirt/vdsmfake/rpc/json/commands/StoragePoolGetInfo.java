@@ -6,6 +6,8 @@ import java.util.Map;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
+import org.ovirt.vdsmfake.RequestContext;
+import org.ovirt.vdsmfake.domain.DataCenter;
 
 @Verb("StoragePool.getInfo")
 public class StoragePoolGetInfo extends JsonCommand {
@@ -16,8 +18,18 @@ public class StoragePoolGetInfo extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) throws JsonParseException, JsonMappingException, IOException {
-        return api.getStoragePoolInfo(params.get("storagepoolID").asText());
+    protected Map activateApi(RequestContext context, JsonNode params)
+            throws JsonParseException, JsonMappingException, IOException {
+        return api.getStoragePoolInfo(context, params.get("storagepoolID").asText());
     }
 
+    @Override
+    protected boolean isCachedPerHost() {
+        return true;
+    }
+
+    @Override
+    protected DataCenter cachedPool(RequestContext context) {
+        return api.getStoragePool(context);
+    }
 }
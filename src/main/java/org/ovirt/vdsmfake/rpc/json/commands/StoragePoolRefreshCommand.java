@@ -6,6 +6,7 @@ import java.util.Map;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("StoragePool.refresh")
 public class StoragePoolRefreshCommand extends JsonCommand {
@@ -16,8 +17,9 @@ public class StoragePoolRefreshCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) throws JsonParseException, JsonMappingException, IOException {
-        return api.refreshStoragePool(params.get("storagepoolID").asText(),
+    protected Map activateApi(RequestContext context, JsonNode params)
+            throws JsonParseException, JsonMappingException, IOException {
+        return api.refreshStoragePool(context, params.get("storagepoolID").asText(),
                 params.get("masterSdUUID").asText(),
                 params.get("masterVersion").asInt());
     }
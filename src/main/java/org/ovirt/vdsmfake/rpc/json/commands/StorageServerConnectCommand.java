@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
+import org.ovirt.vdsmfake.rpc.params.ParamsReader;
 
 @Verb("StoragePool.connectStorageServer")
 public class StorageServerConnectCommand extends JsonCommand {
@@ -14,12 +16,10 @@ public class StorageServerConnectCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) throws IOException {
-
-
-        return api.connectStorageServer(params.get("domainType").asInt(),
+    protected Map activateApi(RequestContext context, JsonNode params) throws IOException {
+        return api.connectStorageServer(context, params.get("domainType").asInt(),
                 params.get("storagepoolID").asText(),
-                toList(params.get("connectionParams")));
+                ParamsReader.readStorageConnections(params.get("connectionParams")));
     }
 
 }
@@ -6,6 +6,8 @@ import java.util.Map;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
+import org.ovirt.vdsmfake.RequestContext;
+import org.ovirt.vdsmfake.rpc.params.ParamsReader;
 
 @Verb("StoragePool.disconnectStorageServer")
 public class StorageServerDisconnectCommand extends JsonCommand {
@@ -15,12 +17,12 @@ public class StorageServerDisconnectCommand extends JsonCommand {
         return "statuslist";
     }
 
-    @SuppressWarnings("unchecked")
     @Override
-    protected Map activateApi(JsonNode params) throws JsonParseException, JsonMappingException, IOException {
-        return api.disconnectStorageServer(params.get("domainType").asInt(),
+    protected Map activateApi(RequestContext context, JsonNode params)
+            throws JsonParseException, JsonMappingException, IOException {
+        return api.disconnectStorageServer(context, params.get("domainType").asInt(),
                 params.get("storagepoolID").asText(),
-                toList(params.get("connectionParams")));
+                ParamsReader.readStorageConnections(params.get("connectionParams")));
     }
 
 }
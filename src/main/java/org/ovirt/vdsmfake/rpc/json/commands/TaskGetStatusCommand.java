@@ -6,6 +6,7 @@ import java.util.Map;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("Task.getStatus")
 public class TaskGetStatusCommand extends JsonCommand {
@@ -16,8 +17,9 @@ public class TaskGetStatusCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) throws JsonParseException, JsonMappingException, IOException {
-        return api.getTaskStatus(params.get("taskID").asText());
+    protected Map activateApi(RequestContext context, JsonNode params)
+            throws JsonParseException, JsonMappingException, IOException {
+        return api.getTaskStatus(context, params.get("taskID").asText());
     }
 
 }
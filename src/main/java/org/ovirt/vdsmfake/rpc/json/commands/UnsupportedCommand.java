@@ -3,16 +3,17 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
-import org.ovirt.vdsm.jsonrpc.client.JsonRpcResponse;
-import org.ovirt.vdsm.jsonrpc.client.ResponseBuilder;
+import org.ovirt.vdsmfake.RequestContext;
+import org.ovirt.vdsmfake.rpc.json.EncodedResponse;
+import org.ovirt.vdsmfake.rpc.json.ResponseWriter;
 import org.ovirt.vdsmfake.service.ResultCodes;
 
 @SuppressWarnings("rawtypes")
 public class UnsupportedCommand extends JsonCommand {
 
     @Override
-    public JsonRpcResponse run(JsonNode params, JsonNode requestId) {
-        return new ResponseBuilder(requestId).withError(ResultCodes.UNSUPPORTED.map()).build();
+    public EncodedResponse run(RequestContext context, JsonNode params, JsonNode requestId) {
+        return ResponseWriter.error(requestId, ResultCodes.UNSUPPORTED.map());
     }
 
     @Override
@@ -21,7 +22,7 @@ public class UnsupportedCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) {
+    protected Map activateApi(RequestContext context, JsonNode params) {
         return null;
     }
 
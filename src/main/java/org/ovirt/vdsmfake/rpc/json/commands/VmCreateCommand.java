@@ -1,12 +1,13 @@
 package org.ovirt.vdsmfake.rpc.json.commands;
 
 import java.io.IOException;
-import java.util.List;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
+import org.ovirt.vdsmfake.RequestContext;
+import org.ovirt.vdsmfake.rpc.params.ParamsReader;
 
 @Verb("VM.create")
 public class VmCreateCommand extends JsonCommand {
@@ -16,14 +17,10 @@ public class VmCreateCommand extends JsonCommand {
         return "vmList";
     }
 
-    @SuppressWarnings("unchecked")
     @Override
-    protected Map activateApi(JsonNode params) throws JsonParseException, JsonMappingException, IOException {
-        Map apiData = toMap(params.get("vmParams"));
-        if (apiData.get("devices") != null) {
-            apiData.put("devices", ((List<Object>) apiData.get("devices")).toArray());
-        }
-        return api.create(apiData);
+    protected Map activateApi(RequestContext context, JsonNode params)
+            throws JsonParseException, JsonMappingException, IOException {
+        return api.create(context, ParamsReader.readVmCreate(params.get("vmParams")));
     }
 
 }
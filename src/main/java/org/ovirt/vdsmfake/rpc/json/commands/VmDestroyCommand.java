@@ -3,6 +3,7 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("VM.destroy")
 public class VmDestroyCommand extends JsonCommand {
@@ -13,8 +14,8 @@ public class VmDestroyCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) {
-        return api.destroy(params.get("vmID").asText());
+    protected Map activateApi(RequestContext context, JsonNode params) {
+        return api.destroy(context, params.get("vmID").asText());
     }
 
 }
@@ -3,6 +3,8 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
+import org.ovirt.vdsmfake.Utils;
 
 @Verb("VM.getStats")
 public class VmGetStatsCommand extends JsonCommand {
@@ -13,8 +15,13 @@ public class VmGetStatsCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) {
-        return api.getVmStats(params.get("vmID").asText());
+    protected Map activateApi(RequestContext context, JsonNode params) {
+        return api.getVmStats(context, params.get("vmID").asText());
+    }
+
+    @Override
+    public long responseDelay() {
+        return Utils.getLatency();
     }
 
 }
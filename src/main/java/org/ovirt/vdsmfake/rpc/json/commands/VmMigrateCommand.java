@@ -6,6 +6,8 @@ import java.util.Map;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
+import org.ovirt.vdsmfake.RequestContext;
+import org.ovirt.vdsmfake.rpc.params.ParamsReader;
 
 @Verb("VM.migrate")
 public class VmMigrateCommand extends JsonCommand {
@@ -15,10 +17,10 @@ public class VmMigrateCommand extends JsonCommand {
         return null;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
-    protected Map activateApi(JsonNode params) throws JsonParseException, JsonMappingException, IOException {
-        return api.migrate(toMap(params.get("params")));
+    protected Map activateApi(RequestContext context, JsonNode params)
+            throws JsonParseException, JsonMappingException, IOException {
+        return api.migrate(context, ParamsReader.readMigrate(params.get("params")));
     }
 
 }
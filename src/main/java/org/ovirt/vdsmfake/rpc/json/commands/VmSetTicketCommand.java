@@ -6,6 +6,7 @@ import java.util.Map;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.JsonMappingException;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("VM.setTicket")
 public class VmSetTicketCommand extends JsonCommand {
@@ -17,7 +18,8 @@ public class VmSetTicketCommand extends JsonCommand {
 
     @SuppressWarnings("unchecked")
     @Override
-    protected Map activateApi(JsonNode params) throws JsonParseException, JsonMappingException, IOException {
+    protected Map activateApi(RequestContext context, JsonNode params)
+            throws JsonParseException, JsonMappingException, IOException {
         return api.setVmTicket(params.get("vmID").asText(),
                 params.get("password").asText(),
                 params.get("ttl").asText(),
@@ -3,6 +3,7 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("VM.shutdown")
 public class VmShutdownCommand extends JsonCommand {
@@ -13,8 +14,8 @@ public class VmShutdownCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) {
-        return api.shutdown(params.get("vmID").asText(),
+    protected Map activateApi(RequestContext context, JsonNode params) {
+        return api.shutdown(context, params.get("vmID").asText(),
                 params.get("delay").asText(),
                 params.get("message").asText());
     }
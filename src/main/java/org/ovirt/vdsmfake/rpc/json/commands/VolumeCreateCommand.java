@@ -3,6 +3,7 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("Volume.create")
 public class VolumeCreateCommand extends JsonCommand {
@@ -13,8 +14,8 @@ public class VolumeCreateCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) {
-        return api.createVolume(params.get("storagedomainID").asText(),
+    protected Map activateApi(RequestContext context, JsonNode params) {
+        return api.createVolume(context, params.get("storagedomainID").asText(),
                 params.get("storagepoolID").asText(),
                 params.get("imageID").asText(),
                 params.get("size").asInt(),
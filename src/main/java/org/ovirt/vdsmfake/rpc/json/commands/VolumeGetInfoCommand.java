@@ -3,6 +3,7 @@ package org.ovirt.vdsmfake.rpc.json.commands;
 import java.util.Map;
 
 import org.codehaus.jackson.JsonNode;
+import org.ovirt.vdsmfake.RequestContext;
 
 @Verb("Volume.getInfo")
 public class VolumeGetInfoCommand extends JsonCommand {
@@ -13,8 +14,8 @@ public class VolumeGetInfoCommand extends JsonCommand {
     }
 
     @Override
-    protected Map activateApi(JsonNode params) {
-        return api.getVolumeInfo(params.get("storagedomainID").asText(), params.get("storagepoolID").asText(),
+    protected Map activateApi(RequestContext context, JsonNode params) {
+        return api.getVolumeInfo(context, params.get("storagedomainID").asText(), params.get("storagepoolID").asText(),
                 params.get("imageID").asText(), params.get("volumeID").asText());
     }
 }
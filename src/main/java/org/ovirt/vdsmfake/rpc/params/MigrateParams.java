@@ -0,0 +1,43 @@
+package org.ovirt.vdsmfake.rpc.params;
+
+import java.util.Map;
+
+/**
+ * The params of VM.migrate used by the fake.
+ */
+public class MigrateParams {
+
+    // bound by ParamsReader
+    String vmId;
+    String src;
+    String dst;
+    String method;
+
+    public static MigrateParams of(Map<String, Object> params) {
+        MigrateParams migrateParams = new MigrateParams();
+        migrateParams.vmId = (String) params.get("vmId");
+        migrateParams.src = (String) params.get("src");
+        migrateParams.dst = (String) params.get("dst");
+        migrateParams.method = (String) params.get("method");
+        return migrateParams;
+    }
+
+    public String getVmId() {
+        return vmId;
+    }
+
+    public String getSrc() {
+        return src;
+    }
+
+    /**
+     * @return the destination, host name followed by an optional port, e.g. 10.34.63.178:54321
+     */
+    public String getDst() {
+        return dst;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+}
@@ -0,0 +1,185 @@
+package org.ovirt.vdsmfake.rpc.params;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.node.ObjectNode;
+import org.ovirt.vdsmfake.domain.Device;
+
+/**
+ * Binds request params to the typed parameter objects reading the json tokens once, without the intermediate
+ * maps and arrays of an {@code ObjectMapper} round trip. Only the device and custom property objects of VM.create,
+ * which the VM keeps as they were sent, are read into maps.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public final class ParamsReader {
+
+    private ParamsReader() {
+    }
+
+    public static VmCreateParams readVmCreate(JsonNode node) throws IOException {
+        String vmId = null;
+        String vmName = null;
+        String cpuType = null;
+        int memSize = 0;
+        Map custom = new HashMap();
+        List<Device> devices = new ArrayList<>();
+        if (node != null) {
+            try (JsonParser parser = startObject(node)) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken token = parser.nextToken();
+                    if ("vmId".equals(field)) {
+                        vmId = readText(parser);
+                    } else if ("vmName".equals(field)) {
+                        vmName = readText(parser);
+                    } else if ("cpuType".equals(field)) {
+                        cpuType = readText(parser);
+                    } else if ("memSize".equals(field) && token == JsonToken.VALUE_STRING) {
+                        memSize = Integer.parseInt(parser.getText());
+                    } else if ("memSize".equals(field) && token == JsonToken.VALUE_NUMBER_INT) {
+                        memSize = parser.getIntValue();
+                    } else if ("custom".equals(field) && token == JsonToken.START_OBJECT) {
+                        custom = readObject(parser);
+                    } else if ("devices".equals(field) && token == JsonToken.START_ARRAY) {
+                        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                            if (token == JsonToken.START_OBJECT) {
+                                devices.add(Device.of(readObject(parser)));
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+        // the params are echoed back as sent, the tree of the request is reused for that
+        return new VmCreateParams(node instanceof ObjectNode ? (ObjectNode) node : null,
+                vmId, vmName, cpuType, memSize, custom, devices);
+    }
+
+    public static MigrateParams readMigrate(JsonNode node) throws IOException {
+        MigrateParams params = new MigrateParams();
+        if (node == null) {
+            return params;
+        }
+        try (JsonParser parser = startObject(node)) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("vmId".equals(field)) {
+                    params.vmId = readText(parser);
+                } else if ("src".equals(field)) {
+                    params.src = readText(parser);
+                } else if ("dst".equals(field)) {
+                    params.dst = readText(parser);
+                } else if ("method".equals(field)) {
+                    params.method = readText(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return params;
+    }
+
+    public static List<StorageConnection> readStorageConnections(JsonNode node) throws IOException {
+        List<StorageConnection> connections = new ArrayList<>();
+        if (node == null) {
+            return connections;
+        }
+        try (JsonParser parser = node.traverse()) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException("Expected a list of storage connections", null);
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                String id = null;
+                String connection = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken token = parser.nextToken();
+                    if ("id".equals(field) && token != JsonToken.VALUE_NULL) {
+                        id = parser.getText();
+                    } else if ("connection".equals(field) && token != JsonToken.VALUE_NULL) {
+                        connection = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                connections.add(new StorageConnection(id, connection));
+            }
+        }
+        return connections;
+    }
+
+    private static JsonParser startObject(JsonNode node) throws IOException {
+        JsonParser parser = node.traverse();
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            parser.close();
+            throw new JsonParseException("Expected an object", null);
+        }
+        return parser;
+    }
+
+    /**
+     * @return the text of the current scalar value, null for null, objects and arrays are skipped
+     */
+    private static String readText(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        return token == JsonToken.VALUE_NULL ? null : parser.getText();
+    }
+
+    private static Map<String, Object> readObject(JsonParser parser) throws IOException {
+        Map<String, Object> map = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            map.put(field, readValue(parser));
+        }
+        return map;
+    }
+
+    private static List<Object> readArray(JsonParser parser) throws IOException {
+        List<Object> list = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            list.add(readValue(parser));
+        }
+        return list;
+    }
+
+    private static Object readValue(JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+        case START_OBJECT:
+            return readObject(parser);
+        case START_ARRAY:
+            return readArray(parser);
+        case VALUE_STRING:
+            return parser.getText();
+        case VALUE_NUMBER_INT:
+        case VALUE_NUMBER_FLOAT:
+            return parser.getNumberValue();
+        case VALUE_TRUE:
+            return Boolean.TRUE;
+        case VALUE_FALSE:
+            return Boolean.FALSE;
+        case VALUE_NULL:
+            return null;
+        default:
+            throw new JsonParseException("Unexpected token " + parser.getCurrentToken(), null);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.ovirt.vdsmfake.rpc.params;
+
+/**
+ * One entry of the connectionParams list of connectStorageServer and disconnectStorageServer.
+ */
+public class StorageConnection {
+
+    private final String id;
+    private final String connection;
+
+    public StorageConnection(String id, String connection) {
+        this.id = id;
+        this.connection = connection;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getConnection() {
+        return connection;
+    }
+}
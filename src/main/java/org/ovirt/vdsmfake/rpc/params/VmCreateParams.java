@@ -0,0 +1,113 @@
+package org.ovirt.vdsmfake.rpc.params;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.jackson.node.ObjectNode;
+import org.ovirt.vdsmfake.domain.Device;
+
+/**
+ * The vmParams of VM.create. The params as sent are kept, either the raw map or the json tree of the request, as
+ * they are echoed back in the response, see {@link #echo(String)}.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class VmCreateParams {
+
+    private Map<String, Object> raw;
+    private ObjectNode node;
+    private String vmId;
+    private String vmName;
+    private String cpuType;
+    private int memSize;
+    private Map custom;
+    private List<Device> devices;
+
+    private VmCreateParams() {
+    }
+
+    VmCreateParams(ObjectNode node, String vmId, String vmName, String cpuType, int memSize, Map custom,
+            List<Device> devices) {
+        this.node = node;
+        this.vmId = vmId;
+        this.vmName = vmName;
+        this.cpuType = cpuType;
+        this.memSize = memSize;
+        this.custom = custom;
+        this.devices = devices;
+    }
+
+    public static VmCreateParams of(Map<String, Object> vmParams) {
+        VmCreateParams params = new VmCreateParams();
+        params.raw = vmParams;
+        params.vmId = (String) vmParams.get("vmId");
+        params.vmName = (String) vmParams.get("vmName");
+        params.cpuType = (String) vmParams.get("cpuType");
+
+        Object memSize = vmParams.get("memSize");
+        if (memSize instanceof String) {
+            params.memSize = Integer.parseInt((String) memSize);
+        } else if (memSize instanceof Number) {
+            params.memSize = ((Number) memSize).intValue();
+        }
+
+        Object custom = vmParams.get("custom");
+        params.custom = custom instanceof Map ? (Map) custom : new HashMap();
+
+        Object devices = vmParams.get("devices");
+        List deviceList;
+        if (devices instanceof Object[]) {
+            deviceList = Arrays.asList((Object[]) devices);
+        } else if (devices instanceof List) {
+            deviceList = (List) devices;
+        } else {
+            deviceList = new ArrayList();
+        }
+        params.devices = new ArrayList<>(deviceList.size());
+        for (Object device : deviceList) {
+            params.devices.add(Device.of((Map) device));
+        }
+        return params;
+    }
+
+    /**
+     * @return the params as sent with the status of the created VM added, a map or a json tree
+     */
+    public Object echo(String status) {
+        if (node != null) {
+            node.put("status", status);
+            return node;
+        }
+        if (raw == null) {
+            raw = new HashMap<>();
+        }
+        raw.put("status", status);
+        return raw;
+    }
+
+    public String getVmId() {
+        return vmId;
+    }
+
+    public String getVmName() {
+        return vmName;
+    }
+
+    public String getCpuType() {
+        return cpuType;
+    }
+
+    public int getMemSize() {
+        return memSize;
+    }
+
+    public Map getCustom() {
+        return custom;
+    }
+
+    public List<Device> getDevices() {
+        return devices;
+    }
+}
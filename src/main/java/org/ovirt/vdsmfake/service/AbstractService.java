@@ -23,10 +23,11 @@ import java.util.Map;
 
 import javax.inject.Inject;
 
-import org.ovirt.vdsmfake.ContextHolder;
+import org.ovirt.vdsmfake.RequestContext;
 import org.ovirt.vdsmfake.Utils;
 import org.ovirt.vdsmfake.domain.Host;
 import org.ovirt.vdsmfake.domain.Task;
+import org.ovirt.vdsmfake.domain.VM;
 import org.ovirt.vdsmfake.domain.VdsmManager;
 import org.ovirt.vdsmfake.task.TaskProcessor;
 import org.slf4j.Logger;
@@ -73,12 +74,6 @@ public abstract class AbstractService{
         return new ArrayList();
     }
 
-    public Host getActiveHost() {
-        final String serverName = ContextHolder.getServerName();
-        final Host host = vdsmManager.getHostByName(serverName);
-        return host;
-    }
-
     public Host getActiveHostByName(String serverName) {
         return vdsmManager.getHostByName(serverName);
     }
@@ -87,6 +82,22 @@ public abstract class AbstractService{
         vdsmManager.updateHost(host);
     }
 
+    public void updateVm(VM vm) {
+        vdsmManager.updateVm(vm);
+    }
+
+    public void addVm(Host host, VM vm) {
+        vdsmManager.addVm(host, vm);
+    }
+
+    public VM getVm(String vmId) {
+        return vdsmManager.getVm(vmId);
+    }
+
+    public void removeTask(Host host, String taskId) {
+        vdsmManager.removeTask(host, taskId);
+    }
+
     public Host getHostByName(String name) {
         return vdsmManager.getHostByName(name);
     }
@@ -105,13 +116,13 @@ public abstract class AbstractService{
         return Utils.getRandomNum(length);
     }
 
-    public void syncTask(Host host, Task task){
+    public void syncTask(RequestContext context, Host host, Task task){
         if (host == null){
-            host = getActiveHost();
+            host = context.getHost();
             log.debug("host is null, task {} will be sync by any active host {}", task.getName(), host.getName());
         }
 
-        host.getRunningTasks().put(task.getId(), task);
+        vdsmManager.addTask(host, task);
         log.debug("sync task:{} to host:{}", task.getName(), host.getName());
         TaskProcessor.getInstance().setTasksMap(host.getName(), task.getId());
     }
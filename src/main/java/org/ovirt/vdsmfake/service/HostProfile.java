@@ -0,0 +1,214 @@
+package org.ovirt.vdsmfake.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ovirt.vdsmfake.AppConfig;
+import org.ovirt.vdsmfake.HostProfileConfig;
+import org.ovirt.vdsmfake.RequestContext;
+
+/**
+ * The part of the capabilities the fake hosts of a profile share, built once from the settings of the profile and
+ * never changed. A host keeps only its own ids, MACs and IPs, see
+ * {@link HostService#getVdsCapabilities(RequestContext)}.
+ */
+final class HostProfile {
+
+    private final int memSize;
+    private final int numaNodes;
+    private final List<String> nics;
+    private final Map<String, Object> capabilities;
+    private final Map<String, Object> bridgeCfg;
+    private final List<String> bridgePorts;
+
+    HostProfile(AppConfig appConfig, HostProfileConfig config) {
+        this.memSize = config.getMemSize();
+        this.numaNodes = Math.max(1, config.getNumaNodes());
+        this.nics = config.getNics();
+
+        Map<String, Object> cfg = new HashMap<>();
+        cfg.put("DEVICE", appConfig.getNetworkBridgeName());
+        cfg.put("DELAY", "0");
+        cfg.put("BOOTPROTO", "dhcp");
+        cfg.put("TYPE", "Ethernet");
+        cfg.put("ONBOOT", "yes");
+        this.bridgeCfg = Collections.unmodifiableMap(cfg);
+        this.bridgePorts = nics.isEmpty() ? Collections.emptyList() : Collections.singletonList(nics.get(0));
+
+        AppConfig.ArchitectureType architecture = AppConfig.ArchitectureType.valueOf(config.getArchitectureType());
+        Map<String, Object> infoMap = new HashMap<>();
+        infoMap.put("HBAInventory", hbaInventory());
+        infoMap.put("autoNumaBalancing", "1");
+        infoMap.put("packages2", packages2());
+        infoMap.put("cpuModel", architecture.getCpuModel());
+        infoMap.put("cpuFlags", architecture.getCpuFlags());
+        infoMap.put("hooks", Collections.emptyMap());
+        // a socket per NUMA node, a thread per core
+        infoMap.put("cpuSockets", Integer.toString(numaNodes));
+        infoMap.put("vmTypes", Collections.singletonList("kvm"));
+        infoMap.put("supportedProtocols", Arrays.asList("2.2", "2.3"));
+        infoMap.put("lastClientIface", appConfig.getNetworkBridgeName());
+        infoMap.put("numaNodeDistance", numaNodeDistance());
+        infoMap.put("numaNodes", numaNodes(config.getOnlineCpus()));
+        infoMap.put("onlineCpus", onlineCpus(config.getOnlineCpus()));
+        infoMap.put("software_revision", "0.141");
+        infoMap.put("clusterLevels", versions());
+        infoMap.put("ISCSIInitiatorName", "iqn.1994-05.com.example:ef52ec17bb0");
+        infoMap.put("netConfigDirty", "False");
+        infoMap.put("supportedENGINEs", versions());
+        infoMap.put("reservedMem", "321");
+        infoMap.put("bondings", bondings());
+        infoMap.put("software_version", "4.10");
+        infoMap.put("memSize", Integer.toString(memSize));
+        infoMap.put("cpuSpeed", "1200.000");
+        infoMap.put("version_name", "Snow Man");
+        infoMap.put("vlans", Collections.emptyMap());
+        infoMap.put("cpuCores", Integer.toString(config.getOnlineCpus()));
+        infoMap.put("kvmEnabled", "true");
+        infoMap.put("guestOverhead", "65");
+        infoMap.put("management_ip", ""); // null
+        infoMap.put("cpuThreads", Integer.toString(config.getOnlineCpus()));
+        infoMap.put("emulatedMachines", Collections.unmodifiableList(new ArrayList<>(appConfig.getEmulatedMachines())));
+        infoMap.put("operatingSystem", operatingSystem());
+        infoMap.put("lastClient", "10.36.6.76");
+        infoMap.put("rngSources", Collections.singletonList("RANDOM"));
+        infoMap.put("selinux", Collections.singletonMap("mode", "1"));
+        infoMap.put("kdumpStatus", "1");
+        this.capabilities = Collections.unmodifiableMap(infoMap);
+    }
+
+    /**
+     * @return the shared entries of the capabilities info, the caller adds the entries of the host to a copy
+     */
+    Map<String, Object> getCapabilities() {
+        return capabilities;
+    }
+
+    int getMemSize() {
+        return memSize;
+    }
+
+    int getNumaNodes() {
+        return numaNodes;
+    }
+
+    List<String> getNics() {
+        return nics;
+    }
+
+    Map<String, Object> getBridgeCfg() {
+        return bridgeCfg;
+    }
+
+    List<String> getBridgePorts() {
+        return bridgePorts;
+    }
+
+    private static Map<String, Object> hbaInventory() {
+        List<Object> iSCSIList = Collections.singletonList(
+                Collections.singletonMap("InitiatorName", "iqn.1994-05.com.example:ef52ec17bb0"));
+
+        Map<String, Object> resultMap = new HashMap<>();
+        resultMap.put("iSCSI", iSCSIList);
+        resultMap.put("FC", Collections.emptyList());
+        return Collections.unmodifiableMap(resultMap);
+    }
+
+    private static Map<String, Object> packages2() {
+        Map<String, Object> resultMap = new HashMap<>();
+        resultMap.put("kernel", rpm("5.fc17.x86_64", "1357699251.0", "3.6.11"));
+        resultMap.put("spice-server", rpm("5.fc17", "1336983054", "0.10.1"));
+        resultMap.put("vdsm", rpm("0.141.gita11e8f2.fc17", "1359653302", "4.10.3"));
+        resultMap.put("qemu-kvm", rpm("2.fc17", "1349642820", "1.0.1"));
+        resultMap.put("libvirt", rpm("2.fc17", "1349642820", "1.0.1"));
+        resultMap.put("qemu-img", rpm("2.fc17", "1349642820", "1.0.1"));
+        resultMap.put("mom", rpm("1.fc17", "1354824066", "0.3.0"));
+        return Collections.unmodifiableMap(resultMap);
+    }
+
+    private static Map<String, Object> rpm(String release, String buildtime, String version) {
+        Map<String, Object> rpmMap = new HashMap<>();
+        rpmMap.put("release", release);
+        rpmMap.put("buildtime", buildtime);
+        rpmMap.put("version", version);
+        return Collections.unmodifiableMap(rpmMap);
+    }
+
+    private Map<String, Object> numaNodeDistance() {
+        Map<String, Object> numaNodeDistanceMap = new HashMap<>();
+        for (int node = 0; node < numaNodes; node++) {
+            List<Integer> distances = new ArrayList<>(numaNodes);
+            for (int other = 0; other < numaNodes; other++) {
+                distances.add(other == node ? 10 : 20);
+            }
+            numaNodeDistanceMap.put(Integer.toString(node), Collections.unmodifiableList(distances));
+        }
+        return Collections.unmodifiableMap(numaNodeDistanceMap);
+    }
+
+    private Map<String, Object> numaNodes(int cpus) {
+        Map<String, Object> numaNodesMap = new HashMap<>();
+        for (int node = 0; node < numaNodes; node++) {
+            Map<String, Object> nodeMap = new HashMap<>();
+            nodeMap.put("cpus", nodeCpus(node, cpus));
+            nodeMap.put("totalMemory", memSize / numaNodes);
+            numaNodesMap.put(Integer.toString(node), Collections.unmodifiableMap(nodeMap));
+        }
+        return Collections.unmodifiableMap(numaNodesMap);
+    }
+
+    private List<Integer> onlineCpus(int cpus) {
+        List<Integer> onlineCpusList = new ArrayList<>(cpus);
+        for (int node = 0; node < numaNodes; node++) {
+            onlineCpusList.addAll(nodeCpus(node, cpus));
+        }
+        return Collections.unmodifiableList(onlineCpusList);
+    }
+
+    /**
+     * @return the cpus of the node, interleaved across the nodes: with two nodes the odd ones on node 0
+     */
+    private List<Integer> nodeCpus(int node, int cpus) {
+        List<Integer> nodeCpuList = new ArrayList<>();
+        for (int cpu = 0; cpu < cpus; cpu++) {
+            if ((cpu + 1) % numaNodes == node) {
+                nodeCpuList.add(cpu);
+            }
+        }
+        return Collections.unmodifiableList(nodeCpuList);
+    }
+
+    private static List<String> versions() {
+        return Collections.unmodifiableList(
+                Arrays.asList("3.0", "3.1", "3.2", "3.3", "3.4", "3.5", "3.6", "4.0", "4.1", "4.2"));
+    }
+
+    private static Map<String, Object> bondings() {
+        Map<String, Object> bondMap = new HashMap<>();
+        bondMap.put("addr", ""); // null
+        bondMap.put("cfg", Collections.emptyMap());
+        bondMap.put("mtu", "150");
+        bondMap.put("netmask", ""); // null
+        bondMap.put("slaves", Collections.emptyList());
+        bondMap.put("hwaddr", "00:00:00:00:00:00");
+        Map<String, Object> bond = Collections.unmodifiableMap(bondMap);
+
+        Map<String, Object> resultMap = new HashMap<>();
+        for (int i = 0; i < 5; i++) {
+            resultMap.put("bond" + i, bond);
+        }
+        return Collections.unmodifiableMap(resultMap);
+    }
+
+    private static Map<String, Object> operatingSystem() {
+        Map<String, Object> resultMap = new HashMap<>();
+        resultMap.put("release", "1");
+        resultMap.put("version", "17");
+        resultMap.put("name", "Fedora");
+        return Collections.unmodifiableMap(resultMap);
+    }
+}
@@ -15,16 +15,18 @@
  */
 package org.ovirt.vdsmfake.service;
 
-import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.IntStream;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.ovirt.vdsmfake.AppConfig;
+import org.ovirt.vdsmfake.HostProfileConfig;
+import org.ovirt.vdsmfake.RequestContext;
 import org.ovirt.vdsmfake.Utils;
 import org.ovirt.vdsmfake.domain.DataCenter;
 import org.ovirt.vdsmfake.domain.Host;
@@ -41,60 +43,40 @@ public class HostService extends AbstractService {
     @Inject
     private VdsmManager vdsmManager;
 
-    private static final int TOTAL_MEMORY_SIZE = 7976;
-    private static final int NUMBER_OF_NUMA_NODES = 2;
+    // by profile name, built on first use
+    private final ConcurrentMap<String, HostProfile> profiles = new ConcurrentHashMap<>();
+
+    /**
+     * @return the shared capabilities of the profile the host is in, see hostProfiles
+     */
+    HostProfile getProfile(Host host) {
+        HostProfileConfig config = host.getProfile();
+        if (config == null) {
+            // a host not made by the manager
+            config = appConfig.getHostProfile(host.getName());
+            host.setProfile(config);
+        }
+        return getProfile(config);
+    }
+
+    private HostProfile getProfile(HostProfileConfig config) {
+        final HostProfile profile = profiles.get(config.getName());
+        return profile != null ? profile
+                : profiles.computeIfAbsent(config.getName(), name -> new HostProfile(appConfig, config));
+    }
 
-    public Map getVdsCapabilities() {
-        final Host host = getActiveHost();
+    public Map getVdsCapabilities(RequestContext context) {
+        final Host host = context.getHost();
 
         try {
             Map resultMap = getDoneStatus();
 
-            Map infoMap = map();
-            infoMap.put("HBAInventory", getHBAInventoryMap());
-            infoMap.put("autoNumaBalancing", "1");
-            infoMap.put("packages2", getPackages2Map());
-
-            AppConfig.ArchitectureType architecture =
-                    AppConfig.ArchitectureType.valueOf(appConfig.getArchitectureType());
-            infoMap.put("cpuModel", architecture.getCpuModel());
-            infoMap.put("cpuFlags", architecture.getCpuFlags());
-
-            infoMap.put("hooks", map());
-            infoMap.put("cpuSockets", "1");
-            infoMap.put("vmTypes", getVmTypesList());
-            infoMap.put("supportedProtocols", getSupportedProtocolsList());
+            // only the networks and NICs differ between hosts, the rest is shared by all of them
+            Map infoMap = new HashMap(getProfile(host).getCapabilities());
             infoMap.put("networks", getNetworksMap(host));
             infoMap.put("bridges", getBridgesMap(host));
             infoMap.put("uuid", host.getUuid() + "_80:" + host.getMacAddress());
-            infoMap.put("lastClientIface", appConfig.getNetworkBridgeName());
             infoMap.put("nics", getNicsMap(host));
-            infoMap.put("numaNodeDistance", getNumaNodeDistanceMap());
-            infoMap.put("numaNodes", getNumaNodesMap());
-            infoMap.put("onlineCpus", getOnlineCpusList());
-            infoMap.put("software_revision", "0.141");
-            infoMap.put("clusterLevels", getClusterLevelsList());
-            infoMap.put("ISCSIInitiatorName", "iqn.1994-05.com.example:ef52ec17bb0");
-            infoMap.put("netConfigDirty", "False");
-            infoMap.put("supportedENGINEs", getSupportedENGINEsList());
-            infoMap.put("reservedMem", "321");
-            infoMap.put("bondings", getBondingsMap());
-            infoMap.put("software_version", "4.10");
-            infoMap.put("memSize", Integer.toString(TOTAL_MEMORY_SIZE));
-            infoMap.put("cpuSpeed", "1200.000");
-            infoMap.put("version_name", "Snow Man");
-            infoMap.put("vlans", map());
-            infoMap.put("cpuCores", "4");
-            infoMap.put("kvmEnabled", "true");
-            infoMap.put("guestOverhead", "65");
-            infoMap.put("management_ip", ""); // null
-            infoMap.put("cpuThreads", "4");
-            infoMap.put("emulatedMachines", appConfig.getEmulatedMachines());
-            infoMap.put("operatingSystem", getOperatingSystemMap());
-            infoMap.put("lastClient", "10.36.6.76");
-            infoMap.put("rngSources", Arrays.asList(new String[]{"RANDOM"}));
-            infoMap.put("selinux", getSELinux());
-            infoMap.put("kdumpStatus", "1");
 
             resultMap.put("info", infoMap);
 
@@ -105,93 +87,8 @@ public class HostService extends AbstractService {
 
     }
 
-    private Object getSELinux() {
-        Map seLinuxMap = map();
-        seLinuxMap.put("mode", "1");
-        return seLinuxMap;
-    }
-
-    private Map getHBAInventoryMap() {
-        // HBAInventory
-        Map initiatorMap = map();
-        initiatorMap.put("InitiatorName", "iqn.1994-05.com.example:ef52ec17bb0");
-
-        List iSCSIList = lst();
-        iSCSIList.add(initiatorMap);
-
-        Map iSCSIMap = map();
-        iSCSIMap.put("iSCSI", iSCSIList);
-
-        Map resultMap = map();
-        resultMap.put("iSCSI", iSCSIList);
-        resultMap.put("FC", lst());
-
-        return resultMap;
-    }
-
-    private Map getPackages2Map() {
-        Map resultMap = map();
-
-        Map kernelMap = map();
-        kernelMap.put("release", "5.fc17.x86_64");
-        kernelMap.put("buildtime", "1357699251.0");
-        kernelMap.put("version", "3.6.11");
-
-        Map spiceServerMap = map();
-        spiceServerMap.put("release", "5.fc17");
-        spiceServerMap.put("buildtime", "1336983054");
-        spiceServerMap.put("version", "0.10.1");
-
-        Map vdsmMap = map();
-        vdsmMap.put("release", "0.141.gita11e8f2.fc17");
-        vdsmMap.put("buildtime", "1359653302");
-        vdsmMap.put("version", "4.10.3");
-
-        Map qemuKvmMap = map();
-        qemuKvmMap.put("release", "2.fc17");
-        qemuKvmMap.put("buildtime", "1349642820");
-        qemuKvmMap.put("version", "1.0.1");
-
-        Map libvirtMap = map();
-        libvirtMap.put("release", "2.fc17");
-        libvirtMap.put("buildtime", "1349642820");
-        libvirtMap.put("version", "1.0.1");
-
-        Map qemuImgMap = map();
-        qemuImgMap.put("release", "2.fc17");
-        qemuImgMap.put("buildtime", "1349642820");
-        qemuImgMap.put("version", "1.0.1");
-
-        Map momMap = map();
-        momMap.put("release", "1.fc17");
-        momMap.put("buildtime", "1354824066");
-        momMap.put("version", "0.3.0");
-
-        resultMap.put("kernel", kernelMap);
-        resultMap.put("spice-server", spiceServerMap);
-        resultMap.put("vdsm", vdsmMap);
-        resultMap.put("qemu-kvm", qemuKvmMap);
-        resultMap.put("libvirt", libvirtMap);
-        resultMap.put("qemu-img", qemuImgMap);
-        resultMap.put("mom", momMap);
-
-        return resultMap;
-    }
-
-    List getVmTypesList() {
-        List resultList = lst();
-        resultList.add("kvm");
-        return resultList;
-    }
-
-    List getSupportedProtocolsList() {
-        List resultList = lst();
-        resultList.add("2.2");
-        resultList.add("2.3");
-        return resultList;
-    }
-
     Map getNetworksMap(Host host) {
+        final HostProfile profile = getProfile(host);
         Map resultMap = map();
 
         Map ovirtmgmtMap = map();
@@ -199,15 +96,7 @@ public class HostService extends AbstractService {
 
         ovirtmgmtMap.put("iface", appConfig.getNetworkBridgeName());
         ovirtmgmtMap.put("addr", host.getIpAddress()); // 10.34.63.177
-
-        Map cfgMap = map();
-        cfgMap.put("DEVICE", appConfig.getNetworkBridgeName());
-        cfgMap.put("DELAY", "0");
-        cfgMap.put("BOOTPROTO", "dhcp");
-        cfgMap.put("TYPE", "Ethernet");
-        cfgMap.put("ONBOOT", "yes");
-
-        ovirtmgmtMap.put("cfg", cfgMap);
+        ovirtmgmtMap.put("cfg", profile.getBridgeCfg());
         ovirtmgmtMap.put("mtu", "1500");
         ovirtmgmtMap.put("netmask", "255.255.252.0");
         ovirtmgmtMap.put("stp", "off");
@@ -215,15 +104,13 @@ public class HostService extends AbstractService {
         ovirtmgmtMap.put("gateway", "10.34.63.254");
         ovirtmgmtMap.put("switch", "legacy");
         ovirtmgmtMap.put("ipv4defaultroute", Boolean.TRUE);
-
-        List portsList = lst();
-        portsList.add("em1");
-        ovirtmgmtMap.put("ports", portsList);
+        ovirtmgmtMap.put("ports", profile.getBridgePorts());
 
         return resultMap;
     }
 
     Map getBridgesMap(Host host) {
+        final HostProfile profile = getProfile(host);
         Map resultMap = map();
 
         Map ovirtmgmtMap = map();
@@ -235,19 +122,8 @@ public class HostService extends AbstractService {
         ovirtmgmtMap.put("stp", "off");
         ovirtmgmtMap.put("gateway", host.getIpAddress("GATEWAY")); // 10.34.63.254
         ovirtmgmtMap.put("ipv4defaultroute", Boolean.TRUE);
-
-        Map cfgMap = map();
-        cfgMap.put("DEVICE", appConfig.getNetworkBridgeName());
-        cfgMap.put("DELAY", "0");
-        cfgMap.put("BOOTPROTO", "dhcp");
-        cfgMap.put("TYPE", "Ethernet");
-        cfgMap.put("ONBOOT", "yes");
-
-        ovirtmgmtMap.put("cfg", cfgMap);
-
-        List portsList = lst();
-        portsList.add("em1");
-        ovirtmgmtMap.put("ports", portsList);
+        ovirtmgmtMap.put("cfg", profile.getBridgeCfg());
+        ovirtmgmtMap.put("ports", profile.getBridgePorts());
 
         return resultMap;
     }
@@ -255,195 +131,41 @@ public class HostService extends AbstractService {
     Map getNicsMap(Host host) {
         Map resultMap = map();
 
-        Map em1Map = map();
-        Map em2Map = map();
-
-        resultMap.put("em1", em1Map);
-        resultMap.put("em2", em2Map);
-
-        Map cfg1Map = map();
-        cfg1Map.put("BRIDGE", appConfig.getNetworkBridgeName());
-        cfg1Map.put("DEVICE", "em1");
-        cfg1Map.put("UUID", host.getUuid("EM1")); // 1c7b3a5a-500f-41ec-ae03-bb619aeb4081
-        cfg1Map.put("NETBOOT", "yes");
-        cfg1Map.put("NM_CONTROLLED", "yes");
-        cfg1Map.put("BOOTPROTO", "dhcp");
-        cfg1Map.put("HWADDR", host.getMacAddress("EM1")); // 80:c1:6e:6c:51:54
-        cfg1Map.put("TYPE", "Ethernet");
-        cfg1Map.put("ONBOOT", "yes");
-        cfg1Map.put("NAME", "Boot Disk");
-
-        em1Map.put("cfg", cfg1Map);
-        em1Map.put("addr", ""); // null
-        em1Map.put("mtu", "1500");
-        em1Map.put("netmask", ""); // null
-        em1Map.put("hwaddr", host.getMacAddress("EM1")); // 80:c1:6e:6c:51:54
-        em1Map.put("speed", Integer.valueOf(1000));
-
-        Map cfg2Map = map();
-        cfg2Map.put("BRIDGE", appConfig.getNetworkBridgeName());
-        cfg2Map.put("DEVICE", "em2");
-        cfg2Map.put("UUID", host.getUuid("EM2")); // 011c667a-5c74-4882-9b62-35da3021cf8
-        cfg2Map.put("NETBOOT", "yes");
-        cfg2Map.put("NM_CONTROLLED", "yes");
-        cfg2Map.put("BOOTPROTO", "dhcp");
-        cfg2Map.put("HWADDR", host.getMacAddress("EM2")); // 80:C1:6E:6C:51:55
-        cfg2Map.put("TYPE", "Ethernet");
-        cfg2Map.put("ONBOOT", "no");
-
-        em2Map.put("cfg", cfg2Map);
-        em2Map.put("addr", ""); // null
-        em2Map.put("mtu", "1500");
-        em2Map.put("netmask", ""); // null
-        em2Map.put("hwaddr", host.getMacAddress("EM2")); // 80:C1:6E:6C:51:55
-        em2Map.put("speed", Integer.valueOf(1000));
-
-        return resultMap;
-
-    }
-
-    Map getNumaNodeDistanceMap() {
-      Map numaNodeDistanceMap = map();
-
-      // Node 0
-      List nodeZeroDistList = lst();
-      nodeZeroDistList.add(Integer.valueOf(10));
-      nodeZeroDistList.add(Integer.valueOf(20));
-      numaNodeDistanceMap.put("0", nodeZeroDistList);
-
-      // Node 1
-      List nodeOneDistList = lst();
-      nodeOneDistList.add(Integer.valueOf(20));
-      nodeOneDistList.add(Integer.valueOf(10));
-      numaNodeDistanceMap.put("1", nodeOneDistList);
-
-      return numaNodeDistanceMap;
-    }
-
-    Map getNumaNodesMap() {
-      Map numaNodesMap = map();
-      int totalMemPerNode = TOTAL_MEMORY_SIZE / NUMBER_OF_NUMA_NODES;
-
-      // Node 0
-      Map nodeZeroMap = map();
-      List nodeZeroCpuList = lst();
-      nodeZeroCpuList.add(Integer.valueOf(1));
-      nodeZeroCpuList.add(Integer.valueOf(3));
-      nodeZeroCpuList.add(Integer.valueOf(5));
-      nodeZeroCpuList.add(Integer.valueOf(7));
-      nodeZeroCpuList.add(Integer.valueOf(9));
-      nodeZeroCpuList.add(Integer.valueOf(11));
-      nodeZeroCpuList.add(Integer.valueOf(13));
-      nodeZeroCpuList.add(Integer.valueOf(15));
-
-      nodeZeroMap.put("cpus", nodeZeroCpuList);
-      nodeZeroMap.put("totalMemory", Integer.valueOf(totalMemPerNode));
-
-      numaNodesMap.put("0", nodeZeroMap);
-
-      // Node 1
-      Map nodeOneMap = map();
-      List nodeOneCpuList = lst();
-      nodeOneCpuList.add(Integer.valueOf(0));
-      nodeOneCpuList.add(Integer.valueOf(2));
-      nodeOneCpuList.add(Integer.valueOf(4));
-      nodeOneCpuList.add(Integer.valueOf(6));
-      nodeOneCpuList.add(Integer.valueOf(8));
-      nodeOneCpuList.add(Integer.valueOf(10));
-      nodeOneCpuList.add(Integer.valueOf(12));
-      nodeOneCpuList.add(Integer.valueOf(14));
-
-      nodeOneMap.put("cpus", nodeOneCpuList);
-      nodeOneMap.put("totalMemory", Integer.valueOf(totalMemPerNode));
-
-      numaNodesMap.put("1", nodeOneMap);
-
-      return numaNodesMap;
-    }
-
-    List getOnlineCpusList() {
-      List onlineCpusList = lst();
-      onlineCpusList.add(Integer.valueOf(1));
-      onlineCpusList.add(Integer.valueOf(3));
-      onlineCpusList.add(Integer.valueOf(5));
-      onlineCpusList.add(Integer.valueOf(7));
-      onlineCpusList.add(Integer.valueOf(9));
-      onlineCpusList.add(Integer.valueOf(11));
-      onlineCpusList.add(Integer.valueOf(13));
-      onlineCpusList.add(Integer.valueOf(15));
-      onlineCpusList.add(Integer.valueOf(0));
-      onlineCpusList.add(Integer.valueOf(2));
-      onlineCpusList.add(Integer.valueOf(4));
-      onlineCpusList.add(Integer.valueOf(6));
-      onlineCpusList.add(Integer.valueOf(8));
-      onlineCpusList.add(Integer.valueOf(10));
-      onlineCpusList.add(Integer.valueOf(12));
-      onlineCpusList.add(Integer.valueOf(14));
-
-      return onlineCpusList;
-    }
-
-    public List getClusterLevelsList() {
-        List resultList = lst();
-        resultList.add("3.0");
-        resultList.add("3.1");
-        resultList.add("3.2");
-        resultList.add("3.3");
-        resultList.add("3.4");
-        resultList.add("3.5");
-        resultList.add("3.6");
-        resultList.add("4.0");
-        resultList.add("4.1");
-        resultList.add("4.2");
-
-        return resultList;
-    }
-
-    public List getSupportedENGINEsList() {
-        List resultList = lst();
-        resultList.add("3.0");
-        resultList.add("3.1");
-        resultList.add("3.2");
-        resultList.add("3.3");
-        resultList.add("3.4");
-        resultList.add("3.5");
-        resultList.add("3.6");
-        resultList.add("4.0");
-        resultList.add("4.1");
-        resultList.add("4.2");
-
-        return resultList;
-    }
-
-    public Map getBondingsMap() {
-        Map resultMap = map();
+        boolean first = true;
+        for (String nic : getProfile(host).getNics()) {
+            final String key = nic.toUpperCase();
+
+            Map cfgMap = map();
+            cfgMap.put("BRIDGE", appConfig.getNetworkBridgeName());
+            cfgMap.put("DEVICE", nic);
+            cfgMap.put("UUID", host.getUuid(key)); // 1c7b3a5a-500f-41ec-ae03-bb619aeb4081
+            cfgMap.put("NETBOOT", "yes");
+            cfgMap.put("NM_CONTROLLED", "yes");
+            cfgMap.put("BOOTPROTO", "dhcp");
+            cfgMap.put("HWADDR", host.getMacAddress(key)); // 80:c1:6e:6c:51:54
+            cfgMap.put("TYPE", "Ethernet");
+            cfgMap.put("ONBOOT", first ? "yes" : "no");
+            if (first) {
+                cfgMap.put("NAME", "Boot Disk");
+            }
 
-        for (int i = 0; i < 5; i++) {
-            Map bondMap = map();
-            bondMap.put("addr", ""); // null
-            bondMap.put("cfg", map());
-            bondMap.put("mtu", "150");
-            bondMap.put("netmask", ""); // null
-            bondMap.put("slaves", lst());
-            bondMap.put("hwaddr", "00:00:00:00:00:00");
+            Map nicMap = map();
+            nicMap.put("cfg", cfgMap);
+            nicMap.put("addr", ""); // null
+            nicMap.put("mtu", "1500");
+            nicMap.put("netmask", ""); // null
+            nicMap.put("hwaddr", host.getMacAddress(key)); // 80:c1:6e:6c:51:54
+            nicMap.put("speed", Integer.valueOf(1000));
 
-            resultMap.put("bond" + i, bondMap);
+            resultMap.put(nic, nicMap);
+            first = false;
         }
 
         return resultMap;
     }
 
-    public Map getOperatingSystemMap() {
-        Map resultMap = map();
-        resultMap.put("release", "1");
-        resultMap.put("version", "17");
-        resultMap.put("name", "Fedora");
-
-        return resultMap;
-    }
-
-    public Map getVdsHardwareInfo() {
-        final Host host = getActiveHost();
+    public Map getVdsHardwareInfo(RequestContext context) {
+        final Host host = context.getHost();
 
         Map resultMap = getDoneStatus();
 
@@ -460,8 +182,8 @@ public class HostService extends AbstractService {
         return resultMap;
     }
 
-    public Map getVdsStats() {
-        final Host host = getActiveHost();
+    public Map getVdsStats(RequestContext context) {
+        final Host host = context.getHost();
 
         try {
             Map resultMap = getDoneStatus();
@@ -472,41 +194,30 @@ public class HostService extends AbstractService {
             infoMap.put("netConfigDirty", "False");
             infoMap.put("rxRate", "0.00");
 
-            int nTotal = 0;
-            for (VM vm : getActiveHost().getRunningVMs().values()) {
-                if (!vm.isForDelete()) {
-                    nTotal++;
-                }
-            }
-            infoMap.put("vmCount", nTotal);
+            infoMap.put("vmCount", host.getVmCount());
 
-            String memUsedPercent = Utils.rangeParser(appConfig.getMemLoad());
+            String memUsedPercent = Integer.toString(appConfig.getMemLoadRange().next());
             infoMap.put("memUsed", memUsedPercent);
 
-            double memUsedInMB = TOTAL_MEMORY_SIZE * (Double.valueOf(memUsedPercent) / 100);
-            int memFree = (int) (TOTAL_MEMORY_SIZE - memUsedInMB);
+            final int memSize = getProfile(host).getMemSize();
+            double memUsedInMB = memSize * (Double.valueOf(memUsedPercent) / 100);
+            int memFree = (int) (memSize - memUsedInMB);
             infoMap.put("memFree", Integer.toString(memFree));
 
-            infoMap.put("storageDomains", getStorageDomainsStatsMap());
+            infoMap.put("storageDomains", getStorageDomainsStatsMap(host));
             infoMap.put("network", getNetworkStatMap(host.getMacAddress()));
             infoMap.put("txDropped", "0");
-            infoMap.put("cpuUser", Utils.rangeParser(appConfig.getCpuLoad()));
+            infoMap.put("cpuUser", Integer.toString(appConfig.getCpuLoadRange().next()));
             infoMap.put("ksmPages", Integer.valueOf(100));
             infoMap.put("elapsedTime", host.getElapsedTimeInSeconds() + "");
-            infoMap.put("cpuLoad", Utils.rangeParser(appConfig.getCpuLoad()));
-            infoMap.put("cpuSys", Utils.rangeParser(appConfig.getCpuLoad()));
+            infoMap.put("cpuLoad", Integer.toString(appConfig.getCpuLoadRange().next()));
+            infoMap.put("cpuSys", Integer.toString(appConfig.getCpuLoadRange().next()));
             infoMap.put("diskStats", getDiskStatsMap());
             infoMap.put("memCommitted", Integer.valueOf(0));
             infoMap.put("ksmState", Boolean.FALSE); //boolean..0
 
-            int nMigrating = 0;
-            for (VM vm : host.getRunningVMs().values()) {
-                if (vm.getStatus() == VM.VMStatus.MigratingFrom || vm.getStatus() == VM.VMStatus.MigratingTo) {
-                    nMigrating++;
-                }
-            }
-
-            infoMap.put("vmMigrating", nMigrating);
+            infoMap.put("vmMigrating",
+                    host.getVmCount(VM.VMStatus.MigratingFrom) + host.getVmCount(VM.VMStatus.MigratingTo));
             infoMap.put("ksmCpu", Integer.valueOf(0));
             infoMap.put("memAvailable", Integer.valueOf(6435));
             infoMap.put("txRate", "");
@@ -521,19 +232,11 @@ public class HostService extends AbstractService {
             infoMap.put("anonHugePages", "662");
             infoMap.put("cpuIdle", Utils.getCpuIdle(infoMap.get("cpuUser").toString()));
 
-            int nActive = 0;
-            for (VM vm : getActiveHost().getRunningVMs().values()) {
-                if (vm.getStatus() == VM.VMStatus.Up) {
-                    nActive++;
-                }
-            }
-
-            infoMap.put("vmActive", nActive);
+            infoMap.put("vmActive", host.getVmCount(VM.VMStatus.Up));
             infoMap.put("cpuSysVdsmd", "0.25");
-            infoMap.put("numaNodeMemFree", getNumaNodeMemFreeMap(memFree, memUsedPercent));
+            infoMap.put("numaNodeMemFree", getNumaNodeMemFreeMap(host, memFree, memUsedPercent));
 
             resultMap.put("info", infoMap);
-            Utils.getLatency();
 
             return resultMap;
         } catch (Exception e) {
@@ -541,31 +244,27 @@ public class HostService extends AbstractService {
         }
     }
 
-    Map getNumaNodeMemFreeMap(int memFree, String memUsed) {
-      double memFreePerNode = ((double) memFree) / NUMBER_OF_NUMA_NODES;
-      int nodeZeroMemFree = (int) Math.floor(memFreePerNode);
-      int nodeOneMemFree = (int) Math.ceil(memFreePerNode);
+    Map getNumaNodeMemFreeMap(Host host, int memFree, String memUsed) {
+        final int nodes = getProfile(host).getNumaNodes();
+        Map numaNodeMemFreeMap = map();
 
-      // Node 0
-      Map nodeZeroNumaFreeMemMap = map();
-      nodeZeroNumaFreeMemMap.put("memFree", Integer.valueOf(nodeZeroMemFree));
-      nodeZeroNumaFreeMemMap.put("memPercent", memUsed);
+        // the last node gets the remainder
+        int left = memFree;
+        for (int node = 0; node < nodes; node++) {
+            int nodeMemFree = node == nodes - 1 ? left : memFree / nodes;
+            left -= nodeMemFree;
 
-      // Node 1
-      Map nodeOneNumaFreeMemMap = map();
-      nodeOneNumaFreeMemMap.put("memFree", Integer.valueOf(nodeOneMemFree));
-      nodeOneNumaFreeMemMap.put("memPercent", memUsed);
-
-      Map numaNodeMemFreeMap = map();
-      numaNodeMemFreeMap.put("0", nodeZeroNumaFreeMemMap);
-      numaNodeMemFreeMap.put("1", nodeOneNumaFreeMemMap);
+            Map nodeNumaFreeMemMap = map();
+            nodeNumaFreeMemMap.put("memFree", Integer.valueOf(nodeMemFree));
+            nodeNumaFreeMemMap.put("memPercent", memUsed);
+            numaNodeMemFreeMap.put(Integer.toString(node), nodeNumaFreeMemMap);
+        }
 
-      return numaNodeMemFreeMap;
+        return numaNodeMemFreeMap;
     }
 
-    public Map<String, Map<String, Object> > getStorageDomainsStatsMap() {
-        final Host host = getActiveHost();
-        DataCenter pool = vdsmManager.getStoragePoolById(getActiveHost().getSpUUID());
+    public Map<String, Map<String, Object> > getStorageDomainsStatsMap(Host host) {
+        DataCenter pool = vdsmManager.getStoragePoolById(host.getSpUUID());
 
         Map<String, Map<String, Object>> resultMap = new HashMap<>();
 
@@ -600,10 +299,10 @@ public class HostService extends AbstractService {
             netStats.put("macAddr", hostMacAdd); // null
             netStats.put("name", netName);
             netStats.put("txDropped", "0");
-            netStats.put("txRate", Utils.rangeParser(appConfig.getNetworkLoad()));
+            netStats.put("txRate", Integer.toString(appConfig.getNetworkLoadRange().next()));
             netStats.put("rxErrors", "0");
             netStats.put("rxRate", "0.0");
-            netStats.put("rxRate", Utils.rangeParser(appConfig.getNetworkLoad()));
+            netStats.put("rxRate", Integer.toString(appConfig.getNetworkLoadRange().next()));
             netStats.put("rxDropped", "14965");
 
             resultMap.put(netName, netStats);
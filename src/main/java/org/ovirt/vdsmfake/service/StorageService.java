@@ -22,13 +22,14 @@ import java.util.Map;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
-import org.ovirt.vdsmfake.PersistUtils;
+import org.ovirt.vdsmfake.RequestContext;
 import org.ovirt.vdsmfake.domain.DataCenter;
 import org.ovirt.vdsmfake.domain.Host;
 import org.ovirt.vdsmfake.domain.StorageDomain;
 import org.ovirt.vdsmfake.domain.Task;
 import org.ovirt.vdsmfake.domain.VdsmManager;
 import org.ovirt.vdsmfake.domain.Volume;
+import org.ovirt.vdsmfake.rpc.params.StorageConnection;
 import org.ovirt.vdsmfake.task.TaskProcessor;
 import org.ovirt.vdsmfake.task.TaskRequest;
 import org.ovirt.vdsmfake.task.TaskType;
@@ -38,17 +39,15 @@ public class StorageService extends AbstractService {
 
     @Inject
     private VdsmManager vdsmManager;
-    @Inject
-    private PersistUtils persistUtils;
 
     /**
      * Connect data center to the host.
      */
-    public Map connectStoragePool(
+    public Map connectStoragePool(RequestContext context,
             String spUUID, Integer hostID, String scsiKey, String msdUUID, Integer masterVersion) {
 
         // save to model
-        final Host host = getActiveHost();
+        final Host host = context.getHost();
         host.setSpUUID(spUUID);
         updateHost(host);
 
@@ -58,6 +57,7 @@ public class StorageService extends AbstractService {
 
         // store to database
         setMasterDomain(spUUID, msdUUID);
+        vdsmManager.updateStoragePool(pool);
 
         log.info("Data center {} connected.", spUUID);
 
@@ -76,18 +76,21 @@ public class StorageService extends AbstractService {
         DataCenter pool = vdsmManager.getStoragePoolById(spUuid);
 
         for (StorageDomain storageDomain : pool.getStorageDomains().values()) {
-            if (masterSdUuid.equals(storageDomain.getId())) {
-                storageDomain.setDomainRole(StorageDomain.DomainRole.MASTER);
-            } else {
-                storageDomain.setDomainRole(StorageDomain.DomainRole.REGULAR);
+            StorageDomain.DomainRole role = masterSdUuid.equals(storageDomain.getId())
+                    ? StorageDomain.DomainRole.MASTER
+                    : StorageDomain.DomainRole.REGULAR;
+            if (storageDomain.getDomainRole() != role) {
+                storageDomain.setDomainRole(role);
+                vdsmManager.updateStorageDomain(pool, storageDomain);
             }
         }
 
     }
 
-    public Map connectStorageServer(Integer domType, String spUUID, List<Map> storageDomains) {
+    public Map connectStorageServer(RequestContext context, Integer domType, String spUUID,
+            List<StorageConnection> storageDomains) {
         try {
-            final Host host = getActiveHost();
+            final Host host = context.getHost();
             // save to model
             updateHost(host);
 
@@ -98,10 +101,10 @@ public class StorageService extends AbstractService {
 
             // extract
             for(int i=0; storageDomains != null && i < storageDomains.size();i++) {
-                final Map storageDomainMap = storageDomains.get(i);
+                final StorageConnection storageConnection = storageDomains.get(i);
 
-                final String id = (String) storageDomainMap.get("id");
-                final String connection = (String) storageDomainMap.get("connection");
+                final String id = storageConnection.getId();
+                final String connection = storageConnection.getConnection();
 
                 log.info("Adding storage connection, spUUID: {} id: {}, connection: {}",
                         new Object[] { spUUID, id, connection });
@@ -168,6 +171,7 @@ public class StorageService extends AbstractService {
 
             // store to database
             setMasterDomain(spUUID, masterDom);
+            vdsmManager.updateStoragePool(pool);
 
             log.info("Storage pool {} created, master domain: {}, total domains: {}",
                     new Object[] { spUUID, pool.getMasterStorageDomainId(),
@@ -181,6 +185,7 @@ public class StorageService extends AbstractService {
     }
 
     public Map createStorageDomain(
+            RequestContext context,
             Integer storageType,
             String sdId,
             String domainName,
@@ -189,9 +194,9 @@ public class StorageService extends AbstractService {
             String storageFormatType) {
         log.info("Storage domain sdUUID: {}, name: {} created.", sdId, domainName);
 
-        DataCenter pool = vdsmManager.getStoragePoolById(getActiveHost().getSpUUID());
+        DataCenter pool = vdsmManager.getStoragePoolById(context.getHost().getSpUUID());
 
-        pool.getStorageDomains().compute(
+        StorageDomain storageDomain = pool.getStorageDomains().compute(
                 sdId,
                 (id, entity) -> {
                     StorageDomain sd = entity == null ? new StorageDomain() : entity;
@@ -203,25 +208,24 @@ public class StorageService extends AbstractService {
                     return sd;
                 });
 
-        persistUtils.store(pool);
+        vdsmManager.updateStorageDomain(pool, storageDomain);
 
         // send ok
         return getOKStatus();
     }
 
-    public Map disconnectStorageServer(Integer domType, String spUUID, List<Map> storageDomains) {
+    public Map disconnectStorageServer(RequestContext context, Integer domType, String spUUID,
+            List<StorageConnection> storageDomains) {
         Map resultMap = getOKStatus();
 
         List statusList = new ArrayList();
         resultMap.put("statuslist", statusList);
 
-        Map<String, String> storageConections = getActiveHost().getStorageConnections();
+        Map<String, String> storageConections = context.getHost().getStorageConnections();
 
         // extract
         for(int i=0;i < storageDomains.size();i++) {
-            Map storageDomainMap = storageDomains.get(i);
-
-            String id = (String) storageDomainMap.get("id");
+            String id = storageDomains.get(i).getId();
             storageConections.remove(id);
 
 
@@ -235,9 +239,16 @@ public class StorageService extends AbstractService {
         return resultMap;
     }
 
-    public Map getStoragePoolInfo(String spUUID) {
+    /**
+     * @return the storage pool the host is connected to, the one its pool info describes
+     */
+    public DataCenter getStoragePool(RequestContext context) {
+        return vdsmManager.getStoragePoolById(context.getHost().getSpUUID());
+    }
+
+    public Map getStoragePoolInfo(RequestContext context, String spUUID) {
         try {
-            final Host host = getActiveHost();
+            final Host host = context.getHost();
             final DataCenter pool = vdsmManager.getStoragePoolById(host.getSpUUID());
 
             Map resultMap = map();
@@ -258,6 +269,7 @@ public class StorageService extends AbstractService {
                 //force ACTIVE Status for storage domain.
                 if (!storageDomain.getDomainStatus().equals(StorageDomain.DomainStatus.ACTIVE)){
                     storageDomain.setDomainStatus(StorageDomain.DomainStatus.ACTIVE);
+                    vdsmManager.updateStorageDomain(pool, storageDomain);
                 }
                 // TODO: name of storage domain not sent, API talk with id no naming relations, might be problematic.
                 // storageDomain.setName("sd_fake")
@@ -282,7 +294,8 @@ public class StorageService extends AbstractService {
             infoMap.put("pool_status", pool.getPoolStatus()); // connected
             infoMap.put("isoprefix",
                     isoDomainId == null ? "" :
-                    "/rhev/data-center/" + spUUID + "/" + isoDomainId + "/images/11111111-1111-1111-1111-111111111111");
+                    "/rhev/data-center/" + pool.getId() + "/" + isoDomainId
+                            + "/images/11111111-1111-1111-1111-111111111111");
             infoMap.put("type", pool.getStorageType().toString()); // NFS
             infoMap.put("master_ver", pool.getMasterVersion());
             infoMap.put("lver", host.getSpmLver()); //  Integer.valueOf(2)
@@ -327,15 +340,16 @@ public class StorageService extends AbstractService {
         storageDomain.setDomainStatus(StorageDomain.DomainStatus.ACTIVE);
     }
 
-    public Map activateStorageDomain(String sdUUID, String spUUID) {
+    public Map activateStorageDomain(RequestContext context, String sdUUID, String spUUID) {
         try {
             log.info("Activating storage domain, spUUID: {} sdUUID: {}", new Object[] { spUUID, sdUUID });
 
-            DataCenter pool = vdsmManager.getStoragePoolById(getActiveHost().getSpUUID());
+            DataCenter pool = vdsmManager.getStoragePoolById(context.getHost().getSpUUID());
 
             final StorageDomain storageDomain = pool.getStorageDomains().get(sdUUID);
             if (storageDomain != null) {
                 activateClearance(storageDomain);
+                vdsmManager.updateStorageDomain(pool, storageDomain);
                 log.info("storage were activated {} {}", storageDomain.getName(), sdUUID);
             } else {
                 log.warn("No storage domains were activated for storage domain '{}' and storage pool '{}'",
@@ -349,14 +363,16 @@ public class StorageService extends AbstractService {
         }
     }
 
-    public Map deactivateStorageDomain(String sdUUID, String spUUID, String msdUUID, int masterVersion) {
+    public Map deactivateStorageDomain(RequestContext context, String sdUUID, String spUUID, String msdUUID,
+            int masterVersion) {
         try {
             log.info("Deactivating storage domain, spUUID: {} sdUUID: {}", new Object[] { spUUID, sdUUID });
 
-            DataCenter pool = vdsmManager.getStoragePoolById(getActiveHost().getSpUUID());
+            DataCenter pool = vdsmManager.getStoragePoolById(context.getHost().getSpUUID());
 
             final StorageDomain storageDomain = pool.getStorageDomains().get(sdUUID);
             storageDomain.setDomainStatus(StorageDomain.DomainStatus.ATTACHED);
+            vdsmManager.updateStorageDomain(pool, storageDomain);
 
             return getOKStatus();
         } catch (Exception e) {
@@ -364,17 +380,18 @@ public class StorageService extends AbstractService {
         }
     }
 
-    public Map attachStorageDomain(String sdUUID, String spUUID) {
+    public Map attachStorageDomain(RequestContext context, String sdUUID, String spUUID) {
         try {
             log.info("Attaching storage domain, spUUID: {} sdUUID: {}", new Object[] { spUUID, sdUUID });
 
-            DataCenter pool = vdsmManager.getStoragePoolById(getActiveHost().getSpUUID());
+            DataCenter pool = vdsmManager.getStoragePoolById(context.getHost().getSpUUID());
 
             final StorageDomain storageDomain = pool.getStorageDomains().get(sdUUID);
             storageDomain.setDomainStatus(StorageDomain.DomainStatus.ACTIVE);
 
             // FIXME The need to reference a pool from sd is questionable. Revisit.
             storageDomain.setDataCenter(pool);
+            vdsmManager.updateStorageDomain(pool, storageDomain);
 
             return getOKStatus();
         } catch (Exception e) {
@@ -382,16 +399,18 @@ public class StorageService extends AbstractService {
         }
     }
 
-    public Map detachStorageDomain(String sdUUID, String spUUID, String msdUUID, int masterVersion) {
+    public Map detachStorageDomain(RequestContext context, String sdUUID, String spUUID, String msdUUID,
+            int masterVersion) {
         try {
             log.info("Detaching storage domain, spUUID: {} sdUUID: {}", new Object[] { spUUID, sdUUID });
 
-            DataCenter pool = vdsmManager.getStoragePoolById(getActiveHost().getSpUUID());
+            DataCenter pool = vdsmManager.getStoragePoolById(context.getHost().getSpUUID());
 
             final StorageDomain storageDomain = pool.getStorageDomains().get(sdUUID);
             storageDomain.setDomainStatus(StorageDomain.DomainStatus.UNATTACHED);
             pool.getStorageDomains().remove(storageDomain.getId());
             storageDomain.setDataCenter(null);
+            vdsmManager.removeStorageDomain(pool, storageDomain);
 
             return getOKStatus();
         } catch (Exception e) {
@@ -399,17 +418,18 @@ public class StorageService extends AbstractService {
         }
     }
 
-    public Map refreshStoragePool(String spUUID, String msdUUID, Integer masterVersion) {
+    public Map refreshStoragePool(RequestContext context, String spUUID, String msdUUID, Integer masterVersion) {
         try {
             log.info("Refreshing storage pool, spUUID: {} msdUUID: {}", new Object[] { spUUID, msdUUID });
 
-            DataCenter pool = vdsmManager.getStoragePoolById(getActiveHost().getSpUUID());
+            DataCenter pool = vdsmManager.getStoragePoolById(context.getHost().getSpUUID());
 
             pool.setMasterStorageDomainId(msdUUID);
             pool.setMasterVersion(masterVersion);
 
             // storage into db
             setMasterDomain(spUUID, msdUUID);
+            vdsmManager.updateStoragePool(pool);
 
             return getOKStatus();
         } catch (Exception e) {
@@ -443,8 +463,9 @@ public class StorageService extends AbstractService {
         return resultMap;
     }
 
-    public Map spmStart(String spUUID, String prevID, String prevLVER, String recoveryMode, String scsiFencing) {
-        final Host host = getActiveHost();
+    public Map spmStart(RequestContext context, String spUUID, String prevID, String prevLVER, String recoveryMode,
+            String scsiFencing) {
+        final Host host = context.getHost();
 
         Map resultMap = getOKStatus();
 
@@ -452,7 +473,7 @@ public class StorageService extends AbstractService {
         resultMap.put("uuid", task.getId());
 
         task.setTarget(host);
-        getActiveHost().getRunningTasks().put(task.getId(), task);
+        vdsmManager.addTask(host, task);
         TaskProcessor.getInstance().setTasksMap(host.getName(), task.getId());
 
         TaskProcessor.getInstance().addTask(new TaskRequest(TaskType.FINISH_START_SPM, 10000L, task));
@@ -462,8 +483,8 @@ public class StorageService extends AbstractService {
         return resultMap;
     }
 
-    public Map spmStop(String spUUID) {
-        final Host host = getActiveHost();
+    public Map spmStop(RequestContext context, String spUUID) {
+        final Host host = context.getHost();
 
         host.setSpmId(-1);
         host.setSpmStatus(Host.SpmStatus.FREE);
@@ -477,8 +498,8 @@ public class StorageService extends AbstractService {
         return resultMap;
     }
 
-    public Map getSpmStatus(String uuid) {
-        final Host host = getActiveHost();
+    public Map getSpmStatus(RequestContext context, String uuid) {
+        final Host host = context.getHost();
 
         Map resultMap = getOKStatus();
 
@@ -492,7 +513,8 @@ public class StorageService extends AbstractService {
         return resultMap;
     }
 
-    public Map createVolume(String sdUUID,
+    public Map createVolume(RequestContext context,
+            String sdUUID,
             String spUUID,
             String imgUUID,
             String size,
@@ -504,7 +526,7 @@ public class StorageService extends AbstractService {
             String srcImgUUID,
             String srcVolUUID) {
         try {
-            DataCenter pool = vdsmManager.getStoragePoolById(getActiveHost().getSpUUID());
+            DataCenter pool = vdsmManager.getStoragePoolById(context.getHost().getSpUUID());
             StorageDomain storageDomain = pool.getStorageDomains().get(sdUUID);
 
             final Volume volume = new Volume();
@@ -520,14 +542,14 @@ public class StorageService extends AbstractService {
 
             log.info("Adding volume: {} for sp: {}, sd: {}", new Object[] { volUUID, spUUID, sdUUID });
 
-            storageDomain.getVolumes().put(volUUID, volume);
+            vdsmManager.addVolume(pool, storageDomain, volume);
 
             final Map resultMap = getOKStatus();
             final Task task = new Task(getUuid());
 
             resultMap.put("uuid", task.getId());
 
-            syncTask(vdsmManager.getSpmHost(spUUID), task);
+            syncTask(context, vdsmManager.getSpmHost(spUUID), task);
 
             TaskProcessor.getInstance().addTask(new TaskRequest(TaskType.FINISH_CREATE_VOLUME, 3000L, task));
 
@@ -537,9 +559,9 @@ public class StorageService extends AbstractService {
         }
     }
 
-    public Map getVolumeInfo(String sdUUID, String spUUID, String imgGUID, String volUUID) {
+    public Map getVolumeInfo(RequestContext context, String sdUUID, String spUUID, String imgGUID, String volUUID) {
         try {
-            DataCenter pool = vdsmManager.getStoragePoolById(getActiveHost().getSpUUID());
+            DataCenter pool = vdsmManager.getStoragePoolById(context.getHost().getSpUUID());
             StorageDomain storageDomain = pool.getStorageDomains().get(sdUUID);
 
             Volume volume = storageDomain.getVolumes().get(volUUID);
@@ -575,9 +597,9 @@ public class StorageService extends AbstractService {
         }
     }
 
-    public Map getStorageDomainInfo(String sdUUID) {
+    public Map getStorageDomainInfo(RequestContext context, String sdUUID) {
         try {
-            final Host host = getActiveHost();
+            final Host host = context.getHost();
             DataCenter pool = vdsmManager.getStoragePoolById(host.getSpUUID());
 
             StorageDomain storageDomain = pool.getStorageDomains().get(sdUUID);
@@ -653,7 +675,8 @@ public class StorageService extends AbstractService {
             throw error(e);
         }
     }
-    public Map deleteImage(String imgUUID,
+    public Map deleteImage(RequestContext context,
+                           String imgUUID,
                            String spUUID,
                            String sdUUID,
                            boolean postZero,
@@ -667,7 +690,7 @@ public class StorageService extends AbstractService {
 
             resultMap.put("uuid", task.getId());
 
-            syncTask(null, task);
+            syncTask(context, null, task);
 
             TaskProcessor.getInstance().addTask(new TaskRequest(TaskType.FINISH_REMOVE_VOLUME, 5000L, task));
 
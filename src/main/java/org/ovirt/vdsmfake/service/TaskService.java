@@ -20,14 +20,15 @@ import java.util.Map;
 
 import javax.inject.Singleton;
 
+import org.ovirt.vdsmfake.RequestContext;
 import org.ovirt.vdsmfake.domain.Task;
 import org.ovirt.vdsmfake.task.TaskProcessor;
 
 @Singleton
 public class TaskService extends AbstractService {
 
-    public Map getTaskStatus(String taskUUID) {
-        final Task task = getActiveHost().getRunningTasks().get(taskUUID);
+    public Map getTaskStatus(RequestContext context, String taskUUID) {
+        final Task task = context.getHost().getRunningTasks().get(taskUUID);
 
         final Map resultMap = getOKStatus();
         if (task == null) {
@@ -53,7 +54,7 @@ public class TaskService extends AbstractService {
         return resultMap;
     }
 
-    public Map getAllTasksStatuses() {
+    public Map getAllTasksStatuses(RequestContext context) {
 
         Map resultMap = getOKStatus();
         Map allTasksStatusMap = map();
@@ -65,7 +66,7 @@ public class TaskService extends AbstractService {
         TaskProcessor.getInstance().clearTaskMap();
 
         //backward compatibility
-        processor(allTasksStatusMap, getActiveHost().getRunningTasks().values());
+        processor(allTasksStatusMap, context.getHost().getRunningTasks().values());
 
 
         resultMap.put("allTasksStatus", allTasksStatusMap);
@@ -108,18 +109,14 @@ public class TaskService extends AbstractService {
         return resultMap;
     }
 
-    public Map clearTask(String taskUUID) {
-        final Task task = getActiveHost().getRunningTasks().get(taskUUID);
-
-        if (task != null) {
-            getActiveHost().getRunningTasks().remove(taskUUID);
-        }
+    public Map clearTask(RequestContext context, String taskUUID) {
+        removeTask(context.getHost(), taskUUID);
 
         return getOKStatus();
     }
 
-    public Map stopTask(String taskUUID) {
-        final Task task = getActiveHost().getRunningTasks().get(taskUUID);
+    public Map stopTask(RequestContext context, String taskUUID) {
+        final Task task = context.getHost().getRunningTasks().get(taskUUID);
         if (task != null) {
             task.setFinished(true);
         }
@@ -127,8 +124,8 @@ public class TaskService extends AbstractService {
         return getOKStatus();
     }
 
-    public Map revertTask(String taskUUID) {
-        final Task task = getActiveHost().getRunningTasks().get(taskUUID);
+    public Map revertTask(RequestContext context, String taskUUID) {
+        final Task task = context.getHost().getRunningTasks().get(taskUUID);
         if (task != null) {
             task.setFinished(false);
         }
@@ -1,6 +1,5 @@
 package org.ovirt.vdsmfake.service;
 
-import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -35,49 +34,31 @@ public class VMInfoService extends AbstractService {
         timing.forEach((k, v) -> randomValueTimeouts.put(k, v * 1000L));
     }
 
-    private long getRandomNumberTimeout(String name) {
+    /**
+     * @return the update interval of the value in ms, 0 when it has none
+     */
+    public long getUpdateInterval(String name) {
         if (!randomValueTimeouts.containsKey(name)) {
             return 0;
         }
         return randomValueTimeouts.get(name);
     }
 
-    private long getNow() {
-        return new Date().getTime();
-    }
-
-    public String getRandomNumber(VM vm, String name, int length) {
-        long last = 0;
-        if (vm.getLastRandomNumberUpdate().containsKey(name)) {
-            last = vm.getLastRandomNumberUpdate().get(name);
-        }
-        // If never set/updated or if bigger than configured timeout
-        // update the last update time and update the value
-        final long now = getNow();
-        if (last == 0 || (now - last) > getRandomNumberTimeout(name)) {
-            vm.getLastRandomNumberUpdate().put(name, getNow());
-            vm.getRandomNumberStore().put(name, getRandomNum(length));
-        }
-
-        return vm.getRandomNumberStore().get(name);
-    }
-
-    private Map getDynamicValues(VM vm) {
-        Map values = map();
-        values.put("cpuSys", "0." + getRandomNumber(vm, "cpuSys", 2));
-        values.put("cpuUser", "0." + getRandomNumber(vm, "cpuUser", 2));
-        values.put("hash", getRandomNumber(vm, "hash", 20)); // 3077163634575265748
-        return values;
+    /**
+     * @return the shortest of the update intervals in ms
+     */
+    public long getShortestUpdateInterval() {
+        return randomValueTimeouts.values().stream().mapToLong(Long::longValue).min().orElse(10000L);
     }
 
+    /**
+     * @return the constants of the keys, the simulated load is kept by {@link VmMetricStore}
+     */
     public Map getFromKeys(VM vm, List keys) {
         Map result = map();
-        final Map dynamic = getDynamicValues(vm);
         for (Object key : keys) {
             if (values.containsKey(key)) {
                 result.put(key, values.get(key));
-            } else if (dynamic.containsKey(key)) {
-                result.put(key, dynamic.get(key));
             }
         }
         return result;
@@ -15,6 +15,9 @@
  */
 package org.ovirt.vdsmfake.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -22,17 +25,24 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.ovirt.vdsmfake.AppConfig;
+import org.ovirt.vdsmfake.RequestContext;
 import org.ovirt.vdsmfake.Utils;
 import org.ovirt.vdsmfake.domain.Device;
 import org.ovirt.vdsmfake.domain.Host;
 import org.ovirt.vdsmfake.domain.VM;
+import org.ovirt.vdsmfake.domain.VmStatsSnapshot;
 import org.ovirt.vdsmfake.rpc.json.JsonRpcNotification;
+import org.ovirt.vdsmfake.rpc.json.ResponseWriter;
+import org.ovirt.vdsmfake.rpc.params.MigrateParams;
+import org.ovirt.vdsmfake.rpc.params.VmCreateParams;
+import org.ovirt.vdsmfake.service.VmMetricStore.Metric;
 import org.ovirt.vdsmfake.task.TaskProcessor;
 import org.ovirt.vdsmfake.task.TaskRequest;
 import org.ovirt.vdsmfake.task.TaskType;
@@ -45,8 +55,10 @@ public class VMService extends AbstractService {
     @Inject
     private JsonRpcNotification jsonRpcNotification;
 
-    public Map list() {
-        final Host host = getActiveHost();
+    private volatile long statsMaxAge = -1;
+
+    public Map list(RequestContext context) {
+        final Host host = context.getHost();
         final Map resultMap = getDoneStatus();
         final List statusList = new ArrayList();
 
@@ -68,8 +80,8 @@ public class VMService extends AbstractService {
                     + " smartcardEnable kvmEnable pitReinjection smp vmType displayIp clientIp smpCoresPerSocket nice")
                     .split(" "));
 
-    public Map list(boolean fullStatus, List vmList) {
-        final Host host = getActiveHost();
+    public Map list(RequestContext context, boolean fullStatus, List vmList) {
+        final Host host = context.getHost();
 
         final Map resultMap = getDoneStatus();
 
@@ -84,10 +96,8 @@ public class VMService extends AbstractService {
                 vmMap = VMInfoService.getInstance().getFromKeys(vm, fullListMapKeys);
                 vmMap.put("status", vm.getStatus().toString()); // Up
                 vmMap.put("vmId", vm.getId()); // 4c36aca1-577f-4533-987d-a8288faab149
-                Map customMap = vm.getCustomMap();
-                if (customMap != null) {
-                    vmMap.put("custom", vm.getCustomMap());
-                }
+                vmMap.put("custom", vm.getCustomMap());
+                // rendered from the compact devices for this response only
                 vmMap.put("devices", vm.getDeviceList());
                 vmMap.put("memSize", vm.getMemSize());
                 vmMap.put("vmName", vm.getName()); // Fedora17_test1
@@ -106,24 +116,23 @@ public class VMService extends AbstractService {
         return resultMap;
     }
 
-    public Map migrate(Map request) {
-        // String method = (String) request.get("method"); // online
-        String dst = (String) request.get("dst"); // 10.34.63.178:54321
-        // String src = (String)request.get("src"); // 10.34.63.177
-        String vmId = (String) request.get("vmId"); // 79567083-9889-4bcc-90e3-291885b0da7f
+    public Map migrate(RequestContext context, MigrateParams request) {
+        String dst = request.getDst(); // 10.34.63.178:54321
+        String vmId = request.getVmId(); // 79567083-9889-4bcc-90e3-291885b0da7f
 
         boolean success = true;
 
-        final VM vm = getActiveHost().getRunningVMs().get(vmId);
+        final VM vm = context.getHost().getRunningVMs().get(vmId);
         if (vm == null) {
             log.info("VM not found: " + vmId);
             throw new RuntimeException("VM not found: " + vmId);
         }
-
-        // bind clone of VM to the target host
-        VM targetVM = vm.clone();
-        vm.setStatus(VM.VMStatus.MigratingFrom);
-        targetVM.setStatus(VM.VMStatus.MigratingTo);
+        // the index holds the copy on the target host while the VM migrates
+        final VM migrating = getVm(vmId);
+        if (migrating != vm && migrating != null && migrating.getStatus() == VM.VMStatus.MigratingTo) {
+            log.info("VM {} is already migrating to host {}", vmId, migrating.getHost().getName());
+            throw new RuntimeException("VM is already migrating: " + vmId);
+        }
 
         String targetServerName = dst;
 
@@ -138,8 +147,14 @@ public class VMService extends AbstractService {
             log.info("Target host not found: " + dst);
             throw new RuntimeException("Target host not found: " + dst + ", name: " + targetServerName);
         }
+
+        // bind clone of VM to the target host
+        VM targetVM = vm.clone();
+        setStatus(vm, VM.VMStatus.MigratingFrom);
+        targetVM.setStatus(VM.VMStatus.MigratingTo);
         targetVM.setHost(targetHost);
-        targetHost.getRunningVMs().put(targetVM.getId(), targetVM);
+        updateVm(vm);
+        addVm(targetHost, targetVM);
 
         // add asynch task
         TaskProcessor.getInstance().addTask(new TaskRequest(TaskType.FINISH_MIGRATED_FROM_VM, 10000L, vm));
@@ -162,15 +177,13 @@ public class VMService extends AbstractService {
         return resultMap;
     }
 
-    private final List VmStatsKeys = Arrays.asList(
-            ("username fqdn memUage balloonInfo username acpiEnable pid displayIp displayPort session "
-                    + "displaySecurePort timeOffset hash pauseCode kvmEnable monitorResponse statsAge"
-                    + " elapsedTime vmType cpuSys appsList guestIPs")
-                    .split(" "));
+    // only the VMInfoService values not set by writeVmStats itself, every field must be written once. The former list
+    // also named "memUage", which is not in VMInfoService.yaml and was never sent, memUsage comes from writeVmStats.
+    private final List VmStatsKeys = Arrays.asList("fqdn acpiEnable".split(" "));
 
-    public Map getVmStats(String uuid) {
+    public Map getVmStats(RequestContext context, String uuid) {
 
-        final Host host = getActiveHost();
+        final Host host = context.getHost();
         Map resultMap = getDoneStatus();
         List statusList = new ArrayList();
 
@@ -181,8 +194,6 @@ public class VMService extends AbstractService {
 
         resultMap.put("statsList", statusList);
 
-        Utils.getLatency();
-
         return resultMap;
     }
 
@@ -221,8 +232,10 @@ public class VMService extends AbstractService {
 
         Map resultMap = map();
         int count = 0;
+        final VmMetricStore metrics = VmMetricStore.getInstance();
+        final String txRate = Integer.toString(metrics.get(vm, Metric.TX_RATE, appConfig.getNetworkLoadRange()));
+        final String rxRate = Integer.toString(metrics.get(vm, Metric.RX_RATE, appConfig.getNetworkLoadRange()));
         for (Device device : nicDevices) {
-            List<String> loadValues = appConfig.getNetworkLoad();
             Map netStats = map();
             String dName = "vnet" + count;
 
@@ -231,11 +244,11 @@ public class VMService extends AbstractService {
             netStats.put("macAddr", device.getMacAddr());
             netStats.put("name", dName);
             netStats.put("txDropped", "0");
-            netStats.put("txRate", Utils.rangeParser(loadValues));
+            netStats.put("txRate", txRate);
             netStats.put("rxErrors", "0");
-            netStats.put("rxRate", Utils.rangeParser(loadValues));
-            netStats.put("tx", Utils.rangeParser(loadValues));
-            netStats.put("rx", Utils.rangeParser(loadValues));
+            netStats.put("rxRate", rxRate);
+            netStats.put("tx", txRate);
+            netStats.put("rx", rxRate);
             netStats.put("rxDropped", "0");
             netStats.put("speed", "1000");
             netStats.put("sampleTime", "4318787.08");
@@ -276,9 +289,7 @@ public class VMService extends AbstractService {
         return resultMap;
     }
 
-    private Collection<VM> getVmListFromIds(List vmIds) {
-
-        final Host host = getActiveHost();
+    private Collection<VM> getVmListFromIds(Host host, List vmIds) {
 
         if (vmIds == null || vmIds.isEmpty()) {
             return host.getRunningVMs().values();
@@ -321,10 +332,9 @@ public class VMService extends AbstractService {
         return result;
     }
 
-    private Map getExtractedStatsAndHash(List keys, List vmIds, boolean hashes) {
-        final Host host = getActiveHost();
+    private Map getExtractedStatsAndHash(Host host, List keys, List vmIds, boolean hashes) {
         Map result = map();
-        for (VM vm : getVmListFromIds(vmIds)) {
+        for (VM vm : getVmListFromIds(host, vmIds)) {
             Map stats = null;
             if (hashes) {
                 stats = extractKeysFromVmAndHash(vm, keys, fillVmStatsMap(vm));
@@ -336,8 +346,8 @@ public class VMService extends AbstractService {
         return result;
     }
 
-    private Map getExtractedStats(List keys, List vmIds) {
-        return getExtractedStatsAndHash(keys, vmIds, false);
+    private Map getExtractedStats(Host host, List keys, List vmIds) {
+        return getExtractedStatsAndHash(host, keys, vmIds, false);
     }
 
     private Map getRuntimeStatsHashesForVm(VM vm, Map stats) {
@@ -356,27 +366,27 @@ public class VMService extends AbstractService {
     private final List VmRuntimeStatsKeys = Arrays.asList(
             "cpuSys cpuUser memUsage elapsedTime status statsAge".split(" "));
 
-    public Map getAllVmRuntimeStats() {
+    public Map getAllVmRuntimeStats(RequestContext context) {
         Map resultMap = getDoneStatus();
-        resultMap.put("runtimeStats", getExtractedStatsAndHash(VmRuntimeStatsKeys, null, true));
+        resultMap.put("runtimeStats", getExtractedStatsAndHash(context.getHost(), VmRuntimeStatsKeys, null, true));
         return resultMap;
     }
 
     private final List VmDeviceStatsKeys = Arrays.asList(
             "network disks disksUsage balloonInfo memoryStats".split(" "));
 
-    public Map getAllVmDeviceStats() {
+    public Map getAllVmDeviceStats(RequestContext context) {
         Map resultMap = getDoneStatus();
-        resultMap.put("deviceStats", getExtractedStats(VmDeviceStatsKeys, null));
+        resultMap.put("deviceStats", getExtractedStats(context.getHost(), VmDeviceStatsKeys, null));
         return resultMap;
     }
 
     private final List VmStatusKeys = Arrays.asList(
             "timeOffset monitorResponse clientIp lastLogin username session guestIps".split(" "));
 
-    public Map getVmStatus(List vmIds) {
+    public Map getVmStatus(RequestContext context, List vmIds) {
         Map resultMap = getDoneStatus();
-        resultMap.put("vmStatus", getExtractedStats(VmStatusKeys, vmIds));
+        resultMap.put("vmStatus", getExtractedStats(context.getHost(), VmStatusKeys, vmIds));
         return resultMap;
     }
 
@@ -384,23 +394,33 @@ public class VMService extends AbstractService {
             "acpiEnable vmType guestName guestOS kvmEnable pauseCode displayIp displayPort displaySecurePort pid"
                     .split(" "));
 
-    public Map getVmConfInfo(List vmIds) {
+    public Map getVmConfInfo(RequestContext context, List vmIds) {
         Map resultMap = getDoneStatus();
-        resultMap.put("vmConfInfo", getExtractedStats(VmConfInfoKeys, vmIds));
+        resultMap.put("vmConfInfo", getExtractedStats(context.getHost(), VmConfInfoKeys, vmIds));
         return resultMap;
     }
 
     private final List VmGuestDetailsKeys = Arrays.asList("appsList netIfaces".split(" "));
 
-    public Map getVmGuestDetails(List vmIds) {
+    public Map getVmGuestDetails(RequestContext context, List vmIds) {
         Map resultMap = getDoneStatus();
-        resultMap.put("guestDetails", getExtractedStats(VmGuestDetailsKeys, vmIds));
+        resultMap.put("guestDetails", getExtractedStats(context.getHost(), VmGuestDetailsKeys, vmIds));
         return resultMap;
     }
 
     private Map fillVmStatsMap(VM vm) {
-        Map vmStatMap = VMInfoService.getInstance().getFromKeys(vm, VmStatsKeys);
-        vmStatMap.put("status", vm.getStatus().toString());
+        Map vmStatMap = map();
+        writeVmStats(vm, vmStatMap::put);
+        return vmStatMap;
+    }
+
+    /**
+     * Hands the stats fields of the VM to the consumer, which either collects them into a map or writes them straight
+     * to the response.
+     */
+    private void writeVmStats(VM vm, BiConsumer<String, Object> vmStats) {
+        ((Map<String, Object>) VMInfoService.getInstance().getFromKeys(vm, VmStatsKeys)).forEach(vmStats);
+        vmStats.accept("status", vm.getStatus().toString());
 
         // ip validation if no exist set ip, for vms which already registered in the setup
         if (vm.getIp() == null || vm.getIp().equals("0.0.0.0") || vm.getIp().isEmpty() || vm.getIp().equals("?")) {
@@ -415,12 +435,12 @@ public class VMService extends AbstractService {
         dis.put("type", "spice");
         dis.put("port", "-1");
         display.add(dis);
-        vmStatMap.put("displayInfo", display);
+        vmStats.accept("displayInfo", display);
 
-        vmStatMap.put("pid", "1111");
-        vmStatMap.put("session", "Unknown");
-        vmStatMap.put("timeOffset", "0");
-        vmStatMap.put("pauseCode", "NOERR");
+        vmStats.accept("pid", "1111");
+        vmStats.accept("session", "Unknown");
+        vmStats.accept("timeOffset", "0");
+        vmStats.accept("pauseCode", "NOERR");
 
         Map ballon = map();
         //TODO: compute 10% from the actual mem for ballooning.
@@ -429,88 +449,84 @@ public class VMService extends AbstractService {
         ballon.put("balloon_target", "2048");
         ballon.put("balloon_cur", "512");
 
-        vmStatMap.put("balloonInfo", ballon);
+        vmStats.accept("balloonInfo", ballon);
 
-        vmStatMap.put("guestIPs", vm.getIp());
-        vmStatMap.put("guestName", "localhost.localdomain");
-        vmStatMap.put("guestFQDN", "localhost.localdomain");
-        vmStatMap.put("guestOs", "2.6.32-642.el6.x86_64");
-        vmStatMap.put("guestOsInfo", getGuestOsInto());
-        vmStatMap.put("guestCPUCount", "1");
-        vmStatMap.put("guestTimezone", getGuestTimeZone());
+        vmStats.accept("guestIPs", vm.getIp());
+        vmStats.accept("guestName", "localhost.localdomain");
+        vmStats.accept("guestFQDN", "localhost.localdomain");
+        vmStats.accept("guestOs", "2.6.32-642.el6.x86_64");
+        vmStats.accept("guestOsInfo", getGuestOsInto());
+        vmStats.accept("guestCPUCount", "1");
+        vmStats.accept("guestTimezone", getGuestTimeZone());
 
         //cpu
-        vmStatMap.put("cpuSys", Utils.rangeParser(appConfig.getCpuLoad()));
-        vmStatMap.put("cpuLoad", Utils.rangeParser(appConfig.getCpuLoad()));
-        vmStatMap.put("cpuUser", Utils.rangeParser(appConfig.getCpuLoad()));
+        final VmMetricStore metrics = VmMetricStore.getInstance();
+        vmStats.accept("cpuSys", Integer.toString(metrics.get(vm, Metric.CPU_SYS, appConfig.getCpuLoadRange())));
+        vmStats.accept("cpuLoad", Integer.toString(metrics.get(vm, Metric.CPU_LOAD, appConfig.getCpuLoadRange())));
+        vmStats.accept("cpuUser", Integer.toString(metrics.get(vm, Metric.CPU_USER, appConfig.getCpuLoadRange())));
 
         //memory
-        vmStatMap.put("memUsage", Utils.rangeParser(appConfig.getMemLoad()));
+        final int memUsage = metrics.get(vm, Metric.MEM_USAGE, appConfig.getMemLoadRange());
+        vmStats.accept("memUsage", Integer.toString(memUsage));
 
         //network
-        vmStatMap.put("netIfaces", getNetworkInterfaces(vm));
+        vmStats.accept("netIfaces", getNetworkInterfaces(vm));
         Map network = getNetworkStatsMap(vm);
         if (!network.isEmpty()) {
-            vmStatMap.put("network", network);
+            vmStats.accept("network", network);
         }
 
         Map disks = getVMDisksMap(vm);
         if (!disks.isEmpty()) {
-            vmStatMap.put("disks", disks);
+            vmStats.accept("disks", disks);
         }
-        vmStatMap.put("elapsedTime", vm.getElapsedTimeInSeconds());
-
-        vmStatMap.put("vcpuCount", "1");
-        vmStatMap.put("clientIp", "");
-        vmStatMap.put("hash", Integer.toString(vm.hashCode()));
-        vmStatMap.put("vmType", "kvm");
-        vmStatMap.put("vmId", vm.getId());
-        vmStatMap.put("displayIp", vm.getIp());
-        vmStatMap.put("vcpuPeriod", 100000);
-        vmStatMap.put("displayPort", "-1");
-        vmStatMap.put("vcpuQuota", "-1");
-        vmStatMap.put("kvmEnable", "true");
-        vmStatMap.put("monitorResponse", "0");
-        vmStatMap.put("statsAge", "2.46");
-        vmStatMap.put("username", "None");
-        vmStatMap.put("lastLogin", 1426169218.410367);
+        vmStats.accept("elapsedTime", vm.getElapsedTimeInSeconds());
+
+        vmStats.accept("vcpuCount", "1");
+        vmStats.accept("clientIp", "");
+        vmStats.accept("hash", Integer.toString(vm.hashCode()));
+        vmStats.accept("vmType", "kvm");
+        vmStats.accept("vmId", vm.getId());
+        vmStats.accept("displayIp", vm.getIp());
+        vmStats.accept("vcpuPeriod", 100000);
+        vmStats.accept("displayPort", "-1");
+        vmStats.accept("vcpuQuota", "-1");
+        vmStats.accept("kvmEnable", "true");
+        vmStats.accept("monitorResponse", "0");
+        vmStats.accept("statsAge", "2.46");
+        vmStats.accept("username", "None");
+        vmStats.accept("lastLogin", 1426169218.410367);
         ArrayList emptylist = new ArrayList();
-        vmStatMap.put("ioTune", emptylist);
-        vmStatMap.put("displaySecurePort", "5900");
-        vmStatMap.put("vmJobs", map());
+        vmStats.accept("ioTune", emptylist);
+        vmStats.accept("displaySecurePort", "5900");
+        vmStats.accept("vmJobs", map());
 
         Map memstats = map();
-        if (!vmStatMap.get("memUsage").toString().isEmpty()) {
-            memstats.put("swap_out", "0");
-            memstats.put("majflt", "0");
-            memstats.put("swap_usage", "0");
-            memstats.put("swap_total", "0");
-            memstats.put("swap_in", "0");
-            memstats.put(
-                    "mem_free",
-                    Integer.toString(vm.getMemSize() - Integer.parseInt(vmStatMap.get("memUsage").toString()))
-            );
-            memstats.put("pageflt", "131");
-            memstats.put("mem_total", Integer.toString(vm.getMemSize()));
-            memstats.put("mem_unused", memstats.get("mem_free"));
-
-            vmStatMap.put("memoryStats", memstats);
-        }
+        memstats.put("swap_out", "0");
+        memstats.put("majflt", "0");
+        memstats.put("swap_usage", "0");
+        memstats.put("swap_total", "0");
+        memstats.put("swap_in", "0");
+        memstats.put("mem_free", Integer.toString(vm.getMemSize() - memUsage));
+        memstats.put("pageflt", "131");
+        memstats.put("mem_total", Integer.toString(vm.getMemSize()));
+        memstats.put("mem_unused", memstats.get("mem_free"));
+        vmStats.accept("memoryStats", memstats);
 
         //adding app list
         ArrayList applist = new ArrayList();
         applist.add("kernel-2.6.32-431.el6");
         applist.add("rhevm-guest-agent-common-1.0.9-1.el6ev");
-        vmStatMap.put("appsList", applist);
+        vmStats.accept("appsList", applist);
 
-        vmStatMap.put("displayType", "qxl");
-
-        return vmStatMap;
+        vmStats.accept("displayType", "qxl");
     }
 
-    public Map getAllVmStats() {
-        final Host host = getActiveHost();
+    public Map getAllVmStats(RequestContext context) {
+        return getAllVmStats(context.getHost());
+    }
 
+    public Map getAllVmStats(Host host) {
         Map resultMap = getDoneStatus();
 
         // iterate vms
@@ -524,18 +540,104 @@ public class VMService extends AbstractService {
         return resultMap;
     }
 
+    /**
+     * Writes the statsList of getAllVmStats from the stats snapshots of the VMs.
+     */
+    public void writeAllVmStats(RequestContext context, OutputStream out) throws IOException {
+        writeAllVmStats(context.getHost(), out);
+    }
+
+    public void writeAllVmStats(Host host, OutputStream out) throws IOException {
+        out.write('[');
+        boolean first = true;
+        for (VM vm : host.getRunningVMs().values()) {
+            if (!first) {
+                out.write(',');
+            }
+            getVmStatsSnapshot(vm).writeTo(out, vm);
+            first = false;
+        }
+        out.write(']');
+    }
+
+    /**
+     * @return the latest stats snapshot of the VM, taken again when it is older than the stats max age or was taken
+     * in another status of the VM. Only the VMs that are polled are refreshed.
+     */
+    public VmStatsSnapshot getVmStatsSnapshot(VM vm) throws IOException {
+        VmStatsSnapshot snapshot = vm.getStatsSnapshot();
+        if (snapshot == null || snapshot.getStatus() != vm.getStatus()
+                || System.currentTimeMillis() - snapshot.getTakenAt() >= getStatsMaxAge()) {
+            snapshot = refreshVmStats(vm);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return vmStatsRefreshInterval, or the shortest of the VMInfoService update intervals when it is not set, the
+     * values are drawn again each by its own interval, see {@link VmMetricStore}. The shortest interval is below the
+     * engine poll interval, the snapshots are only shared by polls when vmStatsRefreshInterval is set above it.
+     */
+    private long getStatsMaxAge() {
+        long maxAge = statsMaxAge;
+        if (maxAge < 0) {
+            maxAge = appConfig.getVmStatsRefreshInterval() > 0
+                    ? appConfig.getVmStatsRefreshInterval()
+                    : VMInfoService.getInstance().getShortestUpdateInterval();
+            statsMaxAge = maxAge;
+        }
+        return maxAge;
+    }
+
+    public VmStatsSnapshot refreshVmStats(VM vm) throws IOException {
+        final VM.VMStatus status = vm.getStatus();
+        final byte[] encoded = ResponseWriter.encode(generator -> {
+            generator.writeStartObject();
+            writeVmStats(vm, (name, value) -> {
+                // written by the snapshot on every read
+                if ("elapsedTime".equals(name)) {
+                    return;
+                }
+                try {
+                    if (value instanceof String) {
+                        generator.writeStringField(name, (String) value);
+                    } else {
+                        generator.writeObjectField(name, value);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndObject();
+        });
+        final VmStatsSnapshot snapshot = new VmStatsSnapshot(status, System.currentTimeMillis(), encoded);
+        vm.setStatsSnapshot(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Changes the status of the VM on behalf of a verb, the verb fails when the lifecycle refuses the change.
+     */
+    private void setStatus(VM vm, VM.VMStatus status) {
+        final VM.VMStatus current = vm.getStatus();
+        if (!vm.setStatus(status)) {
+            log.info("VM {} can not change from {} to {}", new Object[] { vm.getId(), current, status });
+            throw new RuntimeException("Unexpected VM status " + current + " for " + status + ": " + vm.getId());
+        }
+    }
+
     public Map setVmTicket(String uuid, String password, String ttl, String existingConnAction, Map params) {
         return getDoneStatus();
     }
 
-    public Map destroy(String vmId) {
-        final VM vm = getActiveHost().getRunningVMs().get(vmId);
+    public Map destroy(RequestContext context, String vmId) {
+        final VM vm = context.getHost().getRunningVMs().get(vmId);
         if (vm == null) {
             log.info("VM not found: " + vmId);
             throw new RuntimeException("VM not found: " + vmId);
         }
 
-        vm.setStatus(VM.VMStatus.PoweringDown);
+        setStatus(vm, VM.VMStatus.PoweringDown);
 
         Map resultMap = map();
 
@@ -551,12 +653,12 @@ public class VMService extends AbstractService {
         return resultMap;
     }
 
-    public Map shutdown(String vmId, String timeout, String message) {
+    public Map shutdown(RequestContext context, String vmId, String timeout, String message) {
         final Map resultMap = getStatusMap("Machine shut down", 0);
 
-        final VM vm = getActiveHost().getRunningVMs().get(vmId);
+        final VM vm = context.getHost().getRunningVMs().get(vmId);
         if (vm != null) {
-            vm.setStatus(VM.VMStatus.PoweringDown);
+            setStatus(vm, VM.VMStatus.PoweringDown);
         }
 
         addTask(TaskType.SHUTDOWN_VM, 5000L, vm);
@@ -564,48 +666,38 @@ public class VMService extends AbstractService {
         return resultMap;
     }
 
-    public Map create(Map vmParams) {
+    public Map create(RequestContext context, Map vmParams) {
+        return create(context, VmCreateParams.of(vmParams));
+    }
+
+    public Map create(RequestContext context, VmCreateParams vmParams) {
         try {
-            final Host host = getActiveHost();
+            final Host host = context.getHost();
 
-            final String vmId = (String) vmParams.get("vmId");
+            final String vmId = vmParams.getVmId();
 
             final VM vm = new VM();
             vm.setTimeCreated(System.currentTimeMillis());
             vm.setId(vmId);
-            vm.setName((String) vmParams.get("vmName"));
-            vm.setCpuType((String) vmParams.get("cpuType"));
+            vm.setName(vmParams.getVmName());
+            vm.setCpuType(vmParams.getCpuType());
             vm.setHost(host);
             vm.setIp(Utils.ipGenerator());
+            vm.setMemSize(vmParams.getMemSize());
+            vm.setCustomMap(vmParams.getCustom());
 
-            Integer memSize = 0;
-            Object boxedMemSize = vmParams.get("memSize");
-            if (boxedMemSize instanceof String) {
-                memSize = Integer.parseInt((String) boxedMemSize);
-            } else {
-                memSize = (Integer) boxedMemSize;
-            }
-            vm.setMemSize(memSize);
-
-            final Object[] devices = (Object[]) vmParams.get("devices");
-            vm.setDeviceList(devices == null ? new ArrayList() : Arrays.asList(devices));
-            Map custom = (Map) vmParams.get("custom");
-            vm.setCustomMap(custom != null ? custom : map());
+            // Device objects were bound together with the params
+            vm.getDevices().addAll(vmParams.getDevices());
 
             // append address tag when missing by the device
             vm.generateDevicesAddressIfMissing();
 
-            // convert Maps to important Device objects
-            vm.parseDevices();
-
-            host.getRunningVMs().put(vm.getId(), vm);
             // persist
-            updateHost(host);
+            addVm(host, vm);
 
             final Map resultMap = getDoneStatus();
 
-            vmParams.put("status", vm.getStatus().toString()); // WaitForLaunch
-            resultMap.put("vmList", vmParams);
+            resultMap.put("vmList", vmParams.echo(vm.getStatus().toString())); // WaitForLaunch
 
             log.debug("VM {} created on host {}", vmId, host.getName());
 
@@ -0,0 +1,168 @@
+package org.ovirt.vdsmfake.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.ovirt.vdsm.jsonrpc.client.reactors.ReactorClient;
+import org.ovirt.vdsmfake.AppConfig;
+import org.ovirt.vdsmfake.domain.Host;
+import org.ovirt.vdsmfake.domain.VM;
+import org.ovirt.vdsmfake.domain.VdsmManager;
+import org.ovirt.vdsmfake.domain.VmStatsSnapshot;
+import org.ovirt.vdsmfake.rpc.json.ConnectionRegistry;
+import org.ovirt.vdsmfake.rpc.json.JsonRpcNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pushes the stats of the running VMs to the engine as VM_status events every vmEventsPushInterval, on the
+ * connection each host is served on. Only the VMs whose reported values changed since the previous push are
+ * sent, compared with the stats snapshot pushed last, so an idle host costs nothing.
+ */
+@Singleton
+public class VmEventPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(VmEventPublisher.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @Inject
+    private AppConfig appConfig;
+
+    @Inject
+    private VdsmManager vdsmManager;
+
+    @Inject
+    private VMService vmService;
+
+    @Inject
+    private ConnectionRegistry connectionRegistry;
+
+    private ScheduledExecutorService scheduler;
+    private int maxBatchSize;
+
+    // touched by the publisher thread only
+    // the snapshots pushed last, by host and VM
+    private final Map<String, Map<String, VmStatsSnapshot>> pushed = new HashMap<>();
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 * 1024);
+
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong vmsPushed = new AtomicLong();
+    private final AtomicLong vmsUnchanged = new AtomicLong();
+
+    public synchronized void start() {
+        long interval = appConfig.getVmEventsPushInterval();
+        if (interval <= 0 || scheduler != null) {
+            return;
+        }
+        maxBatchSize = Math.max(1, appConfig.getEventsMaxBatchSize());
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder()
+                        .namingPattern("vm-events-%d")
+                        .daemon(true)
+                        .build());
+        scheduler.scheduleWithFixedDelay(this::push, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("Pushing VM stats events every {} ms", interval);
+    }
+
+    private void push() {
+        final Set<String> served = new HashSet<>();
+        connectionRegistry.forEachHost((hostName, client) -> {
+            served.add(hostName);
+            try {
+                push(vdsmManager.getHostByName(hostName), client);
+            } catch (Exception e) {
+                log.error("Failed to push VM events of host " + hostName, e);
+            }
+        });
+        pushed.keySet().retainAll(served);
+    }
+
+    private void push(Host host, ReactorClient client) throws IOException {
+        Map<String, VmStatsSnapshot> previous = pushed.getOrDefault(host.getName(), new HashMap<>());
+        Map<String, VmStatsSnapshot> current = new HashMap<>();
+        int batch = 0;
+        for (VM vm : host.getRunningVMs().values()) {
+            VmStatsSnapshot snapshot = vmService.getVmStatsSnapshot(vm);
+            current.put(vm.getId(), snapshot);
+            if (snapshot.hasSameContent(previous.get(vm.getId()))) {
+                vmsUnchanged.incrementAndGet();
+                continue;
+            }
+            if (batch == 0) {
+                startFrame(vm.getId());
+            } else {
+                buffer.write(',');
+            }
+            writeJsonString(vm.getId());
+            buffer.write(':');
+            snapshot.writeTo(buffer, vm);
+            if (++batch == maxBatchSize) {
+                send(client, batch);
+                batch = 0;
+            }
+        }
+        if (batch > 0) {
+            send(client, batch);
+        }
+        pushed.put(host.getName(), current);
+    }
+
+    /**
+     * The method carries the id of the first VM, as the status events of {@link JsonRpcNotification} do.
+     */
+    private void startFrame(String firstVmId) throws IOException {
+        buffer.reset();
+        writeString("{\"jsonrpc\":\"2.0\",\"method\":");
+        writeJsonString("|virt|VM_status|" + firstVmId);
+        writeString(",\"params\":{");
+    }
+
+    private void send(ReactorClient client, int batch) throws IOException {
+        writeString(",\"notify_time\":" + System.nanoTime() + "}}");
+        JsonRpcNotification.sendEvent(client, buffer.toByteArray());
+        frames.incrementAndGet();
+        vmsPushed.addAndGet(batch);
+    }
+
+    private void writeString(String value) throws IOException {
+        buffer.write(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeJsonString(String value) throws IOException {
+        try (JsonGenerator generator = mapper.getJsonFactory().createJsonGenerator(buffer, JsonEncoding.UTF8)) {
+            generator.writeString(value);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", scheduler != null);
+        stats.put("frames", frames.get());
+        stats.put("vmsPushed", vmsPushed.get());
+        stats.put("vmsUnchanged", vmsUnchanged.get());
+        return stats;
+    }
+
+    public synchronized void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.ovirt.vdsmfake.service;
+
+import java.util.Arrays;
+
+import org.ovirt.vdsmfake.LoadRange;
+import org.ovirt.vdsmfake.domain.VM;
+
+/**
+ * Simulated load of the VMs kept in primitive columns, one per metric, indexed by a slot assigned to each VM.
+ * A value is drawn again once it is older than the update interval of its metric from VMInfoService.yaml, metrics
+ * without an interval get a new value on every read. Values are kept as numbers and formatted by the caller.
+ * <p>
+ * Only VMs on a host get a slot, a slot is returned once its VM is removed and may be given to another VM then.
+ */
+public class VmMetricStore {
+
+    public enum Metric {
+        CPU_SYS("cpuSys"),
+        CPU_USER("cpuUser"),
+        CPU_LOAD("cpuLoad"),
+        MEM_USAGE("memUsage"),
+        TX_RATE("txRate"),
+        RX_RATE("rxRate");
+
+        private final String name;
+
+        Metric(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final VmMetricStore instance = new VmMetricStore();
+
+    private final long[] intervals = new long[Metric.values().length];
+    private volatile Columns columns = new Columns(INITIAL_CAPACITY);
+    // slot 0 is never assigned, it stands for no slot in VM.metricSlot
+    private int nextSlot = 1;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+
+    private static class Columns {
+        final int[][] values;
+        final long[][] updatedAt;
+
+        Columns(int capacity) {
+            values = new int[Metric.values().length][capacity];
+            updatedAt = new long[Metric.values().length][capacity];
+        }
+
+        Columns(Columns columns, int capacity) {
+            values = new int[columns.values.length][];
+            updatedAt = new long[columns.updatedAt.length][];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Arrays.copyOf(columns.values[i], capacity);
+                updatedAt[i] = Arrays.copyOf(columns.updatedAt[i], capacity);
+            }
+        }
+
+        int capacity() {
+            return values[0].length;
+        }
+    }
+
+    private VmMetricStore() {
+        for (Metric metric : Metric.values()) {
+            intervals[metric.ordinal()] = VMInfoService.getInstance().getUpdateInterval(metric.getName());
+        }
+    }
+
+    public static VmMetricStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return the current value of the metric of the VM, drawn from the range when missing or outdated
+     */
+    public int get(VM vm, Metric metric, LoadRange range) {
+        final int slot = slotOf(vm);
+        if (slot == 0) {
+            // no longer on a host, there is nothing to keep the value for
+            return range.next();
+        }
+        final int m = metric.ordinal();
+        final Columns columns = this.columns;
+        final long now = System.currentTimeMillis();
+        final long updatedAt = columns.updatedAt[m][slot];
+        if (updatedAt == 0 || now - updatedAt >= intervals[m]) {
+            return update(vm, slot, m, range.next(), now);
+        }
+        final int value = columns.values[m][slot];
+        // the slot may have been released and given to another VM since it was read
+        return vm.getMetricSlot() == slot ? value : range.next();
+    }
+
+    private int slotOf(VM vm) {
+        int slot = vm.getMetricSlot();
+        return slot != 0 ? slot : assignSlot(vm);
+    }
+
+    /**
+     * @return the slot of the VM, 0 when it is not on a host: a slot given to a removed VM would never be released
+     */
+    private synchronized int assignSlot(VM vm) {
+        if (vm.getMetricSlot() != 0 || !vm.isAttached()) {
+            return vm.getMetricSlot();
+        }
+        final int slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+        if (slot >= columns.capacity()) {
+            columns = new Columns(columns, columns.capacity() * 2);
+        }
+        vm.setMetricSlot(slot);
+        return slot;
+    }
+
+    /**
+     * Stores a new value unless the slot was released since the reader got it, the slot may belong to another VM by
+     * now. Under the same lock as the release, so a slot is never written once it is given away.
+     */
+    private synchronized int update(VM vm, int slot, int m, int value, long now) {
+        if (vm.getMetricSlot() == slot) {
+            columns.values[m][slot] = value;
+            columns.updatedAt[m][slot] = now;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the slot of a VM removed from its host for reuse.
+     */
+    public synchronized void release(VM vm) {
+        final int slot = vm.getMetricSlot();
+        if (slot == 0) {
+            return;
+        }
+        vm.setMetricSlot(0);
+        for (long[] updatedAt : columns.updatedAt) {
+            updatedAt[slot] = 0;
+        }
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    public synchronized int getSlotCount() {
+        return nextSlot - 1 - freeCount;
+    }
+}
@@ -15,30 +15,50 @@
 */
 package org.ovirt.vdsmfake.task;
 
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Singleton;
 
+import org.ovirt.vdsmfake.rpc.json.DispatchLanes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Runs the asynchronous task requests once their delay elapsed. Requests are handed over through a lock free queue
+ * to a single ticker thread which keeps them in a {@link TimingWheel} and sleeps until the next one is due, due
+ * requests are processed on lanes keyed by their target so tasks of different VMs run in parallel while the tasks of
+ * one VM keep their order.
+ */
 @Singleton
-public class TaskProcessor extends TimerTask {
+public class TaskProcessor {
 
     private static final Logger log = LoggerFactory.getLogger(TaskProcessor.class);
     private static final TaskProcessor instance = new TaskProcessor();
+
     private final ConcurrentMap<String, String> tasksmap = new ConcurrentHashMap<>();
-    private final List<TaskRequest> queue = new LinkedList<>();
-    private Timer timer;
+    private final Queue<TaskRequest> submitted = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong scheduled = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong totalLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    private volatile Thread ticker;
+    // set while the ticker waits for the next due tick, a submitted request wakes it up
+    private volatile boolean parked;
+    private DispatchLanes lanes;
 
     private TaskProcessor() {
     }
@@ -55,8 +75,15 @@ public class TaskProcessor extends TimerTask {
         tasksmap.clear();
     }
 
-    public synchronized void addTask(TaskRequest taskRequest) {
-        queue.add(taskRequest);
+    public void addTask(TaskRequest taskRequest) {
+        scheduled.incrementAndGet();
+        submitted.add(taskRequest);
+        if (parked) {
+            Thread ticker = this.ticker;
+            if (ticker != null) {
+                LockSupport.unpark(ticker);
+            }
+        }
     }
 
     public static TaskProcessor getInstance() {
@@ -64,44 +91,86 @@ public class TaskProcessor extends TimerTask {
     }
 
     @PostConstruct
-    public void init() {
-        timer = new Timer();
-        timer.scheduleAtFixedRate(this, 0, 2000); // every 2 seconds
+    public synchronized void init() {
+        if (ticker != null) {
+            return;
+        }
+        lanes = new DispatchLanes(0, "task-lane-");
+        ticker = new Thread(this::tick, "task-wheel");
+        ticker.setDaemon(true);
+        ticker.start();
     }
 
     @PreDestroy
-    public void destroy() {
-        if (timer != null) {
-            timer.cancel();
+    public synchronized void destroy() {
+        if (ticker != null) {
+            ticker.interrupt();
+            lanes.shutdown();
+            ticker = null;
         }
     }
 
-    @Override
-    public void run() {
-        if (queue.isEmpty()) {
-            return;
+    private void tick() {
+        final TimingWheel wheel = new TimingWheel(System.currentTimeMillis());
+        final List<TaskRequest> expired = new ArrayList<>();
+        final DispatchLanes lanes = this.lanes;
+        while (!Thread.currentThread().isInterrupted()) {
+            TaskRequest r;
+            while ((r = submitted.poll()) != null) {
+                wheel.add(r, expired);
+            }
+            wheel.advanceTo(System.currentTimeMillis(), expired);
+            for (TaskRequest due : expired) {
+                lanes.execute(due.target != null ? due.target : due, () -> process(due));
+            }
+            expired.clear();
+            park(wheel.nextTick());
         }
-
-        processAll();
     }
 
-    private synchronized void processAll() {
-        if (queue.isEmpty()) {
-            return;
+    /**
+     * Waits until the given tick or until a request is submitted, the submitted queue is checked again once the flag
+     * is up so a request added meanwhile is not missed.
+     */
+    private void park(long nextTick) {
+        parked = true;
+        try {
+            if (!submitted.isEmpty()) {
+                return;
+            }
+            if (nextTick == Long.MAX_VALUE) {
+                LockSupport.park(this);
+            } else {
+                long wait = nextTick - System.currentTimeMillis();
+                if (wait > 0) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(wait));
+                }
+            }
+        } finally {
+            parked = false;
         }
+    }
 
-        log.info("Checking {} asynchronous requests...");
-
-        final Iterator<TaskRequest> iter = queue.iterator();
-        while (iter.hasNext()) {
-            final TaskRequest r = iter.next();
-            if (r.isReady()) {
-                log.info("Processing task {}...", r.taskType);
-                // remove from the queue
-                iter.remove();
-                // run
-                r.process();
-            }
+    private void process(TaskRequest r) {
+        long lag = Math.max(0, System.currentTimeMillis() - r.getTargetTime());
+        totalLagMillis.addAndGet(lag);
+        maxLagMillis.accumulateAndGet(lag, Math::max);
+        log.info("Processing task {}...", r.taskType);
+        try {
+            r.process();
+        } finally {
+            completed.incrementAndGet();
         }
     }
+
+    public Map<String, Object> getStats() {
+        long done = completed.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("scheduled", scheduled.get());
+        stats.put("completed", done);
+        stats.put("pending", scheduled.get() - done);
+        stats.put("avgLagMillis", done == 0 ? 0 : totalLagMillis.get() / done);
+        stats.put("maxLagMillis", maxLagMillis.get());
+        return stats;
+    }
 }
@@ -23,6 +23,7 @@ import org.ovirt.vdsmfake.domain.Task;
 import org.ovirt.vdsmfake.domain.VM;
 import org.ovirt.vdsmfake.domain.VM.VMStatus;
 import org.ovirt.vdsmfake.domain.VdsmManager;
+import org.ovirt.vdsmfake.service.VmMetricStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,20 +34,18 @@ public class TaskRequest {
     final long tm = System.currentTimeMillis();
     final long targetTm;
     final Object target;
+    // generation of the target VM when the task was planned, the task is dropped once a verb changed the VM since
+    final long generation;
 
     public TaskRequest(TaskType taskType, long delay, Object target) {
         this.taskType = taskType;
         this.target = target;
         targetTm = tm + delay;
+        generation = target instanceof VM ? ((VM) target).getGeneration() : -1;
     }
 
-    public boolean isReady() {
-        final long currentTime = System.currentTimeMillis();
-        if (currentTime <= targetTm) {
-            return false;
-        }
-
-        return true;
+    public long getTargetTime() {
+        return targetTm;
     }
 
     public void process() {
@@ -57,55 +56,69 @@ public class TaskRequest {
             switch (taskType) {
             case START_VM:
                 vm = (VM) target;
-                vm.setStatus(VMStatus.WaitForLaunch);
+                if (!transition(vm, VMStatus.WaitForLaunch)) {
+                    break;
+                }
                 log.info("VM {} set to Wait For Launch state.", vm.getId());
                 break;
 
             case START_VM_POWERING_UP:
                 vm = (VM) target;
-                vm.setStatus(VMStatus.PoweringUp);
+                if (!transition(vm, VMStatus.PoweringUp)) {
+                    break;
+                }
                 log.info("VM {} set to Powering Up state.", vm.getId());
                 break;
 
             case START_VM_AS_UP:
                 vm = (VM) target;
-                vm.setStatus(VMStatus.Up);
+                if (!transition(vm, VMStatus.Up)) {
+                    break;
+                }
                 // store
-                updateHost(vm.getHost());
+                vdsmManager().updateVm(vm);
                 log.info("VM {} set to Up state.", vm.getId());
                 break;
 
             case FINISH_MIGRATED_FROM_VM:
                 vm = (VM) target;
-                vm.setStatus(VM.VMStatus.Down);
+                if (!transition(vm, VMStatus.Down)) {
+                    break;
+                }
                 vm.setForDelete(true);
                 // store
-                updateHost(vm.getHost());
+                vdsmManager().updateVm(vm);
                 log.info("Migrating VM {} finished on source host {}", vm.getId(), vm.getHost().getName());
                 break;
 
             case FINISH_MIGRATED_FROM_VM_REMOVE_FROM_HOST:
                 vm = (VM) target;
-                vm.getHost().getRunningVMs().remove(vm.getId());
-                // store
-                updateHost(vm.getHost());
+                if (vm.getGeneration() != generation) {
+                    log.info("VM {} changed since the migration, not removed", vm.getId());
+                    break;
+                }
+                vdsmManager().removeVm(vm);
+                VmMetricStore.getInstance().release(vm);
                 log.info("Migrating VM {} removed from source host {}", vm.getId(), vm.getHost().getName());
                 break;
 
             case FINISH_MIGRATED_TO_VM:
                 vm = (VM) target;
-                vm.setStatus(VM.VMStatus.Up);
+                if (!transition(vm, VMStatus.Up)) {
+                    break;
+                }
                 // store
-                updateHost(vm.getHost());
+                vdsmManager().updateVm(vm);
                 log.info("Migrating VM {} set to Up state on destination host {}", vm.getId(), vm.getHost().getName());
                 break;
 
             case SHUTDOWN_VM:
                 vm = (VM) target;
-                vm.setStatus(VMStatus.PoweringDown);
-                vm.getHost().getRunningVMs().remove(vm.getId());
-                // store
-                updateHost(vm.getHost());
+                if (!transition(vm, VMStatus.PoweringDown)) {
+                    break;
+                }
+                vdsmManager().removeVm(vm);
+                VmMetricStore.getInstance().release(vm);
                 log.info("VM {} set to Down state.", vm.getId());
                 break;
 
@@ -117,18 +130,22 @@ public class TaskRequest {
                 host.setSpmStatus(Host.SpmStatus.ACQUIRED); // SPM
                 log.info("SPM started.");
                 task.setFinished(true);
+                vdsmManager().updateHost(host);
+                vdsmManager().updateTask(task);
                 break;
 
             case FINISH_CREATE_VOLUME:
                 task = (Task) target;
                 log.info("Volume created, task: {}", task.getId());
                 task.setFinished(true);
+                vdsmManager().updateTask(task);
                 break;
 
             case FINISH_REMOVE_VOLUME:
                 task = (Task) target;
                 log.info("Volume removed, task: {}", task.getId());
                 task.setFinished(true);
+                vdsmManager().updateTask(task);
                 break;
 
             default:
@@ -140,10 +157,17 @@ public class TaskRequest {
         }
     }
 
-    private void updateHost(Host host) {
-        CDI.current()
+    private boolean transition(VM vm, VMStatus status) {
+        if (vm.transition(generation, status)) {
+            return true;
+        }
+        log.info("VM {} not set to {}, it changed since the task was planned", vm.getId(), status);
+        return false;
+    }
+
+    private static VdsmManager vdsmManager() {
+        return CDI.current()
                 .select(VdsmManager.class, AppLifecycleListener.DefaultLiteral.INSTANCE)
-                .get()
-                .updateHost(host);
+                .get();
     }
 }
@@ -0,0 +1,128 @@
+package org.ovirt.vdsmfake.task;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Hashed hierarchical timing wheel with a tick of one millisecond. Every level has 64 slots and a slot of a level
+ * spans a whole turn of the level below, so adding a task and expiring a slot cost O(1) whatever the number of
+ * pending tasks. Tasks of a higher level are cascaded down when the wheel below wraps around.
+ * <p>
+ * Not thread safe, the wheel is owned by the single ticker thread of the {@link TaskProcessor}.
+ */
+class TimingWheel {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 6;
+    private static final long SPAN = 1L << (BITS * LEVELS);
+
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<TaskRequest>[][] wheels = new ArrayDeque[LEVELS][SLOTS];
+
+    // last expired tick, tasks due at or before it were already handed out
+    private long now;
+    private int size;
+    // tasks of the lowest level, due within a turn of it
+    private int lowSize;
+
+    TimingWheel(long start) {
+        now = start;
+    }
+
+    /**
+     * Places the task in the wheel or adds it to expired when it is already due.
+     */
+    void add(TaskRequest task, List<TaskRequest> expired) {
+        long deadline = task.getTargetTime();
+        long delta = deadline - now;
+        if (delta <= 0) {
+            expired.add(task);
+            return;
+        }
+        if (delta >= SPAN) {
+            // beyond the top level, parked in its last slot and placed again when cascaded
+            deadline = now + SPAN - 1;
+            delta = SPAN - 1;
+        }
+        int level = 0;
+        while (delta >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) ((deadline >>> (BITS * level)) & MASK);
+        ArrayDeque<TaskRequest> bucket = wheels[level][slot];
+        if (bucket == null) {
+            bucket = wheels[level][slot] = new ArrayDeque<>();
+        }
+        bucket.add(task);
+        size++;
+        if (level == 0) {
+            lowSize++;
+        }
+    }
+
+    /**
+     * Advances the wheel up to the given time and adds the tasks which became due to expired.
+     */
+    void advanceTo(long time, List<TaskRequest> expired) {
+        while (now < time) {
+            if (size == 0) {
+                now = time;
+                return;
+            }
+            now++;
+            for (int level = 1; level < LEVELS && (now & ((1L << (BITS * level)) - 1)) == 0; level++) {
+                cascade(level, (int) ((now >>> (BITS * level)) & MASK), expired);
+            }
+            drain(wheels[0][(int) (now & MASK)], expired);
+        }
+    }
+
+    private void cascade(int level, int slot, List<TaskRequest> expired) {
+        ArrayDeque<TaskRequest> bucket = wheels[level][slot];
+        if (bucket == null || bucket.isEmpty()) {
+            return;
+        }
+        wheels[level][slot] = null;
+        size -= bucket.size();
+        for (TaskRequest task : bucket) {
+            add(task, expired);
+        }
+    }
+
+    private void drain(ArrayDeque<TaskRequest> bucket, List<TaskRequest> expired) {
+        if (bucket == null) {
+            return;
+        }
+        TaskRequest task;
+        while ((task = bucket.poll()) != null) {
+            expired.add(task);
+            size--;
+            lowSize--;
+        }
+    }
+
+    /**
+     * @return the next tick at which tasks may become due, the next one to cascade tasks of the higher levels when it
+     *         comes before any of the lowest level, or Long.MAX_VALUE when the wheel is empty
+     */
+    long nextTick() {
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+        for (long tick = now + 1;; tick++) {
+            if ((tick & MASK) == 0 && size > lowSize) {
+                return tick;
+            }
+            ArrayDeque<TaskRequest> bucket = wheels[0][(int) (tick & MASK)];
+            if (bucket != null && !bucket.isEmpty()) {
+                return tick;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+}
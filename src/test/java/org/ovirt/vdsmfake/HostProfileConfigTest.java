@@ -0,0 +1,80 @@
+package org.ovirt.vdsmfake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class HostProfileConfigTest {
+
+    private AppConfig appConfig;
+
+    @Before
+    public void setUp() {
+        appConfig = new AppConfig();
+        appConfig.setArchitectureType("X86_64");
+        appConfig.setHostMemSize(7976);
+        appConfig.setHostOnlineCpus(16);
+        appConfig.setHostNumaNodes(2);
+        appConfig.setHostNics(Arrays.asList("em1", "em2"));
+        appConfig.setHostProfiles(Arrays.asList(
+                "name=large hosts=big-.* hostMemSize=65536 hostOnlineCpus=64 hostNics=em1,em2,em3",
+                "name=power  hosts=(big-)?ppc-.*   architectureType=PPC64"));
+    }
+
+    @Test
+    public void unmatchedHostsTakeTheDefaultProfile() {
+        HostProfileConfig profile = appConfig.getHostProfile("10.0.0.1");
+
+        assertEquals(HostProfileConfig.DEFAULT, profile.getName());
+        assertEquals("X86_64", profile.getArchitectureType());
+        assertEquals(7976, profile.getMemSize());
+        assertEquals(16, profile.getOnlineCpus());
+        assertEquals(2, profile.getNumaNodes());
+        assertEquals(Arrays.asList("em1", "em2"), profile.getNics());
+    }
+
+    @Test
+    public void settingsLeftOutAreTheDefaultOnes() {
+        HostProfileConfig profile = appConfig.getHostProfile("big-1");
+
+        assertEquals("large", profile.getName());
+        assertEquals(65536, profile.getMemSize());
+        assertEquals(64, profile.getOnlineCpus());
+        assertEquals(2, profile.getNumaNodes());
+        assertEquals("X86_64", profile.getArchitectureType());
+        assertEquals(Arrays.asList("em1", "em2", "em3"), profile.getNics());
+    }
+
+    @Test
+    public void firstMatchingProfileWins() {
+        assertEquals("large", appConfig.getHostProfile("big-ppc-1").getName());
+        assertEquals("power", appConfig.getHostProfile("ppc-1").getName());
+        assertSame(appConfig.getHostProfile("ppc-1"), appConfig.getHostProfile("ppc-2"));
+    }
+
+    @Test
+    public void noProfiles() {
+        appConfig.setHostProfiles(Collections.emptyList());
+
+        assertEquals(HostProfileConfig.DEFAULT, appConfig.getHostProfile("big-1").getName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownSetting() {
+        appConfig.setHostProfiles(Collections.singletonList("name=large hosts=.* hostMemory=1024"));
+
+        appConfig.getHostProfile("big-1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void profileWithoutHosts() {
+        appConfig.setHostProfiles(Collections.singletonList("name=large hostMemSize=1024"));
+
+        appConfig.getHostProfile("big-1");
+    }
+}
@@ -0,0 +1,263 @@
+package org.ovirt.vdsmfake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ovirt.vdsmfake.domain.BaseObject;
+import org.ovirt.vdsmfake.domain.Task;
+
+public class JournalEntityStoreTest {
+
+    private static final long SEGMENT_SIZE = 4096;
+
+    private Path dir;
+    private JournalEntityStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("journal");
+        store = open();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            List<Path> paths = files.sorted(Collections.reverseOrder()).collect(Collectors.toList());
+            for (Path path : paths) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    public void putAndRemoveSurviveReopen() {
+        store.put("a", task("a", "first"));
+        store.put("b", task("b", "second"));
+        store.put("c", task("c", "third"));
+        store.remove("b");
+        store.put("a", task("a", "updated"));
+
+        reopen();
+
+        assertEquals(new HashSet<>(Arrays.asList("a", "c")), new HashSet<>(store.keys()));
+        assertEquals("updated", store.get("a").getName());
+        assertEquals("third", store.get("c").getName());
+        assertNull(store.get("b"));
+    }
+
+    @Test
+    public void reopenAfterReopenKeepsTheSnapshot() {
+        store.put("a", task("a", "first"));
+        reopen();
+        store.put("b", task("b", "second"));
+        reopen();
+
+        assertEquals("first", store.get("a").getName());
+        assertEquals("second", store.get("b").getName());
+        assertEquals(1, journals().size());
+    }
+
+    @Test
+    public void tornRecordEndsTheReplay() throws IOException {
+        store.put("a", task("a", "first"));
+        store.put("b", task("b", "second"));
+        store.close();
+        store = null;
+
+        Path journal = journal(0);
+        long last = lastRecord(journal);
+        try (RandomAccessFile file = new RandomAccessFile(journal.toFile(), "rw")) {
+            // flip a byte of the body, the crc does not match any more
+            file.seek(last + 12);
+            int b = file.read();
+            file.seek(last + 12);
+            file.write(b ^ 0xff);
+        }
+
+        store = open();
+
+        assertEquals("first", store.get("a").getName());
+        assertNull(store.get("b"));
+    }
+
+    @Test
+    public void truncatedRecordEndsTheReplay() throws IOException {
+        store.put("a", task("a", "first"));
+        store.put("b", task("b", "second"));
+        store.close();
+        store = null;
+
+        Path journal = journal(0);
+        long last = lastRecord(journal);
+        try (RandomAccessFile file = new RandomAccessFile(journal.toFile(), "rw")) {
+            file.setLength(last + 20);
+        }
+
+        store = open();
+
+        assertEquals("first", store.get("a").getName());
+        assertNull(store.get("b"));
+    }
+
+    @Test
+    public void zeroFilledTailIsIgnored() throws IOException {
+        store.put("a", task("a", "first"));
+        store.close();
+        store = null;
+
+        Path journal = journal(0);
+        try (RandomAccessFile file = new RandomAccessFile(journal.toFile(), "rw")) {
+            file.setLength(file.length() + 3 * SEGMENT_SIZE);
+        }
+
+        store = open();
+        store.put("b", task("b", "second"));
+        reopen();
+
+        assertEquals("first", store.get("a").getName());
+        assertEquals("second", store.get("b").getName());
+    }
+
+    @Test
+    public void journalsInTheSnapshotAreNotReplayed() throws IOException {
+        store.put("a", task("a", "first"));
+        store.put("b", task("b", "second"));
+        store.close();
+        store = null;
+        Path stale = dir.resolve("journal-0.copy");
+        Files.copy(journal(0), stale);
+
+        // replays journal 0 into the snapshot, then carries on in journal 1
+        store = open();
+        assertFalse(Files.exists(journal(0)));
+        store.remove("b");
+        store.compact();
+        store.close();
+        store = null;
+
+        // a stop between the move of the snapshot and the delete of the journals before it
+        Files.move(stale, journal(0), StandardCopyOption.REPLACE_EXISTING);
+
+        store = open();
+
+        assertEquals("first", store.get("a").getName());
+        assertNull(store.get("b"));
+        assertFalse(Files.exists(journal(0)));
+    }
+
+    @Test
+    public void recordsSpanSegmentRemaps() throws IOException {
+        char[] filler = new char[500];
+        Arrays.fill(filler, 'x');
+        for (int i = 0; i < 40; i++) {
+            store.put("task-" + i, task("task-" + i, i + new String(filler)));
+        }
+        // larger than a segment, gets a mapping of its own
+        char[] large = new char[3 * (int) SEGMENT_SIZE];
+        Arrays.fill(large, 'y');
+        store.put("large", task("large", new String(large)));
+        store.put("last", task("last", "last"));
+        store.close();
+        store = null;
+        assertTrue(Files.size(journal(0)) > 4 * SEGMENT_SIZE);
+
+        store = open();
+
+        assertEquals(42, store.keys().size());
+        for (int i = 0; i < 40; i++) {
+            BaseObject task = store.get("task-" + i);
+            assertNotNull(task);
+            assertEquals(i + new String(filler), task.getName());
+        }
+        assertEquals(new String(large), store.get("large").getName());
+        assertEquals("last", store.get("last").getName());
+    }
+
+    @Test
+    public void entitiesAreReadFromTheSnapshotAfterCompaction() throws IOException {
+        store.put("a", task("a", "first"));
+        store.put("b", task("b", "second"));
+
+        store.compact();
+        store.put("b", task("b", "updated"));
+
+        assertFalse(Files.exists(journal(0)));
+        assertEquals("first", store.get("a").getName());
+        assertEquals("updated", store.get("b").getName());
+
+        // the snapshot and the journal after it read the same after a restart
+        reopen();
+        assertEquals("first", store.get("a").getName());
+        assertEquals("updated", store.get("b").getName());
+    }
+
+    private JournalEntityStore open() {
+        return new JournalEntityStore(dir, SEGMENT_SIZE, 0);
+    }
+
+    private void reopen() {
+        store.close();
+        store = open();
+    }
+
+    private Path journal(long seq) {
+        return dir.resolve("journal-" + seq + ".log");
+    }
+
+    private List<Path> journals() {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("journal-"))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the offset of the last record, found by the lengths of the records before it
+     */
+    private static long lastRecord(Path journal) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(journal.toFile(), "r")) {
+            long position = 16;
+            long last = -1;
+            while (position + 8 <= file.length()) {
+                file.seek(position);
+                int length = file.readInt();
+                if (length <= 0) {
+                    break;
+                }
+                last = position;
+                position += 8 + length;
+            }
+            assertTrue(last > 0);
+            return last;
+        }
+    }
+
+    private static Task task(String id, String name) {
+        Task task = new Task(id);
+        task.setName(name);
+        return task;
+    }
+}
@@ -17,24 +17,23 @@ import org.infinispan.lifecycle.ComponentStatus;
 import org.infinispan.manager.EmbeddedCacheManager;
 import org.infinispan.notifications.cachelistener.filter.CacheEventConverter;
 import org.infinispan.notifications.cachelistener.filter.CacheEventFilter;
-import org.ovirt.vdsmfake.domain.BaseObject;
 
 @Singleton
-public class DummyCache implements Cache<String, BaseObject> {
+public class DummyCache implements Cache<String, Object> {
 
     public DummyCache() {
     }
 
-    @Override public void putForExternalRead(String s, BaseObject baseObject) {
+    @Override public void putForExternalRead(String s, Object baseObject) {
 
     }
 
-    @Override public void putForExternalRead(String s, BaseObject baseObject, long l, TimeUnit timeUnit) {
+    @Override public void putForExternalRead(String s, Object baseObject, long l, TimeUnit timeUnit) {
 
     }
 
     @Override public void putForExternalRead(String s,
-            BaseObject baseObject,
+            Object baseObject,
             long l,
             TimeUnit timeUnit,
             long l1,
@@ -54,7 +53,7 @@ public class DummyCache implements Cache<String, BaseObject> {
         return null;
     }
 
-    @Override public AdvancedCache<String, BaseObject> getAdvancedCache() {
+    @Override public AdvancedCache<String, Object> getAdvancedCache() {
         return null;
     }
 
@@ -78,7 +77,7 @@ public class DummyCache implements Cache<String, BaseObject> {
         return false;
     }
 
-    @Override public BaseObject get(Object key) {
+    @Override public Object get(Object key) {
         return null;
     }
 
@@ -86,11 +85,11 @@ public class DummyCache implements Cache<String, BaseObject> {
         return null;
     }
 
-    @Override public CacheCollection<BaseObject> values() {
+    @Override public CacheCollection<Object> values() {
         return null;
     }
 
-    @Override public CacheSet<Entry<String, BaseObject>> entrySet() {
+    @Override public CacheSet<Entry<String, Object>> entrySet() {
         return null;
     }
 
@@ -106,37 +105,37 @@ public class DummyCache implements Cache<String, BaseObject> {
         return null;
     }
 
-    @Override public BaseObject put(String s, BaseObject baseObject) {
+    @Override public Object put(String s, Object baseObject) {
         return null;
     }
 
-    @Override public BaseObject put(String s, BaseObject baseObject, long l, TimeUnit timeUnit) {
+    @Override public Object put(String s, Object baseObject, long l, TimeUnit timeUnit) {
         return null;
     }
 
-    @Override public BaseObject putIfAbsent(String s, BaseObject baseObject, long l, TimeUnit timeUnit) {
+    @Override public Object putIfAbsent(String s, Object baseObject, long l, TimeUnit timeUnit) {
         return null;
     }
 
-    @Override public void putAll(Map<? extends String, ? extends BaseObject> map, long l, TimeUnit timeUnit) {
+    @Override public void putAll(Map<? extends String, ? extends Object> map, long l, TimeUnit timeUnit) {
 
     }
 
-    @Override public BaseObject replace(String s, BaseObject baseObject, long l, TimeUnit timeUnit) {
+    @Override public Object replace(String s, Object baseObject, long l, TimeUnit timeUnit) {
         return null;
     }
 
-    @Override public boolean replace(String s, BaseObject baseObject, BaseObject v1, long l, TimeUnit timeUnit) {
+    @Override public boolean replace(String s, Object baseObject, Object v1, long l, TimeUnit timeUnit) {
         return false;
     }
 
     @Override
-    public BaseObject put(String s, BaseObject baseObject, long l, TimeUnit timeUnit, long l1, TimeUnit timeUnit1) {
+    public Object put(String s, Object baseObject, long l, TimeUnit timeUnit, long l1, TimeUnit timeUnit1) {
         return null;
     }
 
-    @Override public BaseObject putIfAbsent(String s,
-            BaseObject baseObject,
+    @Override public Object putIfAbsent(String s,
+            Object baseObject,
             long l,
             TimeUnit timeUnit,
             long l1,
@@ -144,7 +143,7 @@ public class DummyCache implements Cache<String, BaseObject> {
         return null;
     }
 
-    @Override public void putAll(Map<? extends String, ? extends BaseObject> map,
+    @Override public void putAll(Map<? extends String, ? extends Object> map,
             long l,
             TimeUnit timeUnit,
             long l1,
@@ -153,13 +152,13 @@ public class DummyCache implements Cache<String, BaseObject> {
     }
 
     @Override
-    public BaseObject replace(String s, BaseObject baseObject, long l, TimeUnit timeUnit, long l1, TimeUnit timeUnit1) {
+    public Object replace(String s, Object baseObject, long l, TimeUnit timeUnit, long l1, TimeUnit timeUnit1) {
         return null;
     }
 
     @Override public boolean replace(String s,
-            BaseObject baseObject,
-            BaseObject v1,
+            Object baseObject,
+            Object v1,
             long l,
             TimeUnit timeUnit,
             long l1,
@@ -167,15 +166,15 @@ public class DummyCache implements Cache<String, BaseObject> {
         return false;
     }
 
-    @Override public BaseObject remove(Object o) {
+    @Override public Object remove(Object o) {
         return null;
     }
 
-    @Override public void putAll(Map<? extends String, ? extends BaseObject> m) {
+    @Override public void putAll(Map<? extends String, ? extends Object> m) {
 
     }
 
-    @Override public BaseObject putIfAbsent(String key, BaseObject value) {
+    @Override public Object putIfAbsent(String key, Object value) {
         return null;
     }
 
@@ -183,24 +182,24 @@ public class DummyCache implements Cache<String, BaseObject> {
         return false;
     }
 
-    @Override public boolean replace(String key, BaseObject oldValue, BaseObject newValue) {
+    @Override public boolean replace(String key, Object oldValue, Object newValue) {
         return false;
     }
 
-    @Override public BaseObject replace(String key, BaseObject value) {
+    @Override public Object replace(String key, Object value) {
         return null;
     }
 
-    @Override public NotifyingFuture<BaseObject> putAsync(String s, BaseObject baseObject) {
+    @Override public NotifyingFuture<Object> putAsync(String s, Object baseObject) {
         return null;
     }
 
-    @Override public NotifyingFuture<BaseObject> putAsync(String s, BaseObject baseObject, long l, TimeUnit timeUnit) {
+    @Override public NotifyingFuture<Object> putAsync(String s, Object baseObject, long l, TimeUnit timeUnit) {
         return null;
     }
 
-    @Override public NotifyingFuture<BaseObject> putAsync(String s,
-            BaseObject baseObject,
+    @Override public NotifyingFuture<Object> putAsync(String s,
+            Object baseObject,
             long l,
             TimeUnit timeUnit,
             long l1,
@@ -208,17 +207,17 @@ public class DummyCache implements Cache<String, BaseObject> {
         return null;
     }
 
-    @Override public NotifyingFuture<Void> putAllAsync(Map<? extends String, ? extends BaseObject> map) {
+    @Override public NotifyingFuture<Void> putAllAsync(Map<? extends String, ? extends Object> map) {
         return null;
     }
 
-    @Override public NotifyingFuture<Void> putAllAsync(Map<? extends String, ? extends BaseObject> map,
+    @Override public NotifyingFuture<Void> putAllAsync(Map<? extends String, ? extends Object> map,
             long l,
             TimeUnit timeUnit) {
         return null;
     }
 
-    @Override public NotifyingFuture<Void> putAllAsync(Map<? extends String, ? extends BaseObject> map,
+    @Override public NotifyingFuture<Void> putAllAsync(Map<? extends String, ? extends Object> map,
             long l,
             TimeUnit timeUnit,
             long l1,
@@ -230,17 +229,17 @@ public class DummyCache implements Cache<String, BaseObject> {
         return null;
     }
 
-    @Override public NotifyingFuture<BaseObject> putIfAbsentAsync(String s, BaseObject baseObject) {
+    @Override public NotifyingFuture<Object> putIfAbsentAsync(String s, Object baseObject) {
         return null;
     }
 
     @Override
-    public NotifyingFuture<BaseObject> putIfAbsentAsync(String s, BaseObject baseObject, long l, TimeUnit timeUnit) {
+    public NotifyingFuture<Object> putIfAbsentAsync(String s, Object baseObject, long l, TimeUnit timeUnit) {
         return null;
     }
 
-    @Override public NotifyingFuture<BaseObject> putIfAbsentAsync(String s,
-            BaseObject baseObject,
+    @Override public NotifyingFuture<Object> putIfAbsentAsync(String s,
+            Object baseObject,
             long l,
             TimeUnit timeUnit,
             long l1,
@@ -248,7 +247,7 @@ public class DummyCache implements Cache<String, BaseObject> {
         return null;
     }
 
-    @Override public NotifyingFuture<BaseObject> removeAsync(Object o) {
+    @Override public NotifyingFuture<Object> removeAsync(Object o) {
         return null;
     }
 
@@ -256,17 +255,17 @@ public class DummyCache implements Cache<String, BaseObject> {
         return null;
     }
 
-    @Override public NotifyingFuture<BaseObject> replaceAsync(String s, BaseObject baseObject) {
+    @Override public NotifyingFuture<Object> replaceAsync(String s, Object baseObject) {
         return null;
     }
 
     @Override
-    public NotifyingFuture<BaseObject> replaceAsync(String s, BaseObject baseObject, long l, TimeUnit timeUnit) {
+    public NotifyingFuture<Object> replaceAsync(String s, Object baseObject, long l, TimeUnit timeUnit) {
         return null;
     }
 
-    @Override public NotifyingFuture<BaseObject> replaceAsync(String s,
-            BaseObject baseObject,
+    @Override public NotifyingFuture<Object> replaceAsync(String s,
+            Object baseObject,
             long l,
             TimeUnit timeUnit,
             long l1,
@@ -274,21 +273,21 @@ public class DummyCache implements Cache<String, BaseObject> {
         return null;
     }
 
-    @Override public NotifyingFuture<Boolean> replaceAsync(String s, BaseObject baseObject, BaseObject v1) {
+    @Override public NotifyingFuture<Boolean> replaceAsync(String s, Object baseObject, Object v1) {
         return null;
     }
 
     @Override public NotifyingFuture<Boolean> replaceAsync(String s,
-            BaseObject baseObject,
-            BaseObject v1,
+            Object baseObject,
+            Object v1,
             long l,
             TimeUnit timeUnit) {
         return null;
     }
 
     @Override public NotifyingFuture<Boolean> replaceAsync(String s,
-            BaseObject baseObject,
-            BaseObject v1,
+            Object baseObject,
+            Object v1,
             long l,
             TimeUnit timeUnit,
             long l1,
@@ -296,7 +295,7 @@ public class DummyCache implements Cache<String, BaseObject> {
         return null;
     }
 
-    @Override public NotifyingFuture<BaseObject> getAsync(String s) {
+    @Override public NotifyingFuture<Object> getAsync(String s) {
         return null;
     }
 
@@ -321,8 +320,8 @@ public class DummyCache implements Cache<String, BaseObject> {
     }
 
     @Override public <C> void addListener(Object o,
-            CacheEventFilter<? super String, ? super BaseObject> cacheEventFilter,
-            CacheEventConverter<? super String, ? super BaseObject, C> cacheEventConverter) {
+            CacheEventFilter<? super String, ? super Object> cacheEventFilter,
+            CacheEventConverter<? super String, ? super Object, C> cacheEventConverter) {
 
     }
 
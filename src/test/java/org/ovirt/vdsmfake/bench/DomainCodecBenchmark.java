@@ -0,0 +1,146 @@
+package org.ovirt.vdsmfake.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.ovirt.vdsmfake.domain.BaseObject;
+import org.ovirt.vdsmfake.domain.DomainCodec;
+import org.ovirt.vdsmfake.domain.Host;
+import org.ovirt.vdsmfake.domain.VM;
+
+/**
+ * Compares the size and the encode/decode time of a host and its VMs stored with the default serialization and
+ * with the {@link DomainCodec} compact form. Every entity is serialized on its own, as it is stored. Not a test, run
+ * the main method on the test classpath, optionally passing the number of VMs and of rounds:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.ovirt.vdsmfake.bench.DomainCodecBenchmark -Dexec.args="1000 50"
+ * </pre>
+ */
+public class DomainCodecBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int vms = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        final List<BaseObject> entities = new ArrayList<>();
+        final Host host = new Host();
+        host.setId("benchmark");
+        host.setName("benchmark");
+        host.initializeHost();
+        entities.add(host);
+        for (int i = 0; i < vms; i++) {
+            VM vm = new VM();
+            vm.setId(UUID.randomUUID().toString());
+            vm.setName("vm" + i);
+            vm.setHost(host);
+            vm.setMemSize(1024);
+            vm.setCpuType("Conroe");
+            vm.setTimeCreated(System.currentTimeMillis());
+            vm.setStatus(VM.VMStatus.Up);
+            vm.setDeviceList(deviceList());
+            vm.setCustomMap(Collections.singletonMap("device_" + UUID.randomUUID(), "VmDevice {deviceType=disk}"));
+            host.getRunningVMs().put(vm.getId(), vm);
+            entities.add(vm);
+        }
+
+        System.out.printf("Host with %d VMs, %d rounds%n", vms, rounds);
+        DomainCodec.setEnabled(false);
+        measure("default serialization", entities, rounds);
+        DomainCodec.setEnabled(true);
+        measure("compact", entities, rounds);
+    }
+
+    private static List<Map<String, Object>> deviceList() {
+        List<Map<String, Object>> devices = new ArrayList<>();
+        devices.add(device("disk", "disk", "virtio", map("bus", "0", "controller", "0", "type", "drive")));
+        devices.add(device("disk", "cdrom", "ide", map("bus", "1", "controller", "0", "type", "drive")));
+        Map<String, Object> nic = device("interface", "bridge", "virtio",
+                map("bus", "0x00", "domain", "0x0000", "function", "0x0", "slot", "0x03", "type", "pci"));
+        nic.put("macAddr", "00:1a:4a:16:01:51");
+        nic.put("network", "ovirtmgmt");
+        nic.put("nicModel", "pv");
+        devices.add(nic);
+        devices.add(device("video", "qxl", null, map("type", "pci", "slot", "0x02")));
+        devices.add(device("controller", "virtio-serial", null, map("type", "pci", "slot", "0x05")));
+        devices.add(device("balloon", "memballoon", null, map("type", "pci", "slot", "0x06")));
+        return devices;
+    }
+
+    private static Map<String, Object> device(String type, String device, String iface, Map<String, Object> address) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("type", type);
+        params.put("device", device);
+        params.put("deviceId", UUID.randomUUID().toString());
+        if (iface != null) {
+            params.put("iface", iface);
+        }
+        params.put("address", address);
+        params.put("specParams", new HashMap<>());
+        params.put("readonly", "false");
+        return params;
+    }
+
+    private static Map<String, Object> map(String... keyValues) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            map.put(keyValues[i], keyValues[i + 1]);
+        }
+        return map;
+    }
+
+    private static void measure(String name, List<BaseObject> entities, int rounds) throws Exception {
+        List<byte[]> encoded = encode(entities);
+        for (int i = 0; i < rounds / 4; i++) {
+            decode(encode(entities));
+        }
+
+        long encoding = 0;
+        long decoding = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            encoded = encode(entities);
+            long encodedAt = System.nanoTime();
+            decode(encoded);
+            encoding += encodedAt - start;
+            decoding += System.nanoTime() - encodedAt;
+        }
+
+        long size = 0;
+        for (byte[] entity : encoded) {
+            size += entity.length;
+        }
+        System.out.printf("%-24s %10d bytes %8d us encode %8d us decode%n",
+                name, size, encoding / rounds / 1000, decoding / rounds / 1000);
+    }
+
+    private static List<byte[]> encode(List<BaseObject> entities) throws Exception {
+        List<byte[]> encoded = new ArrayList<>(entities.size());
+        for (BaseObject entity : entities) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(entity);
+            }
+            encoded.add(bytes.toByteArray());
+        }
+        return encoded;
+    }
+
+    private static void decode(List<byte[]> encoded) throws Exception {
+        for (byte[] entity : encoded) {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(entity))) {
+                in.readObject();
+            }
+        }
+    }
+}
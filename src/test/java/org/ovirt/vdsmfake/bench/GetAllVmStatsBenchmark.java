@@ -0,0 +1,87 @@
+package org.ovirt.vdsmfake.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.ovirt.vdsm.jsonrpc.client.ResponseBuilder;
+import org.ovirt.vdsmfake.AppConfig;
+import org.ovirt.vdsmfake.domain.Host;
+import org.ovirt.vdsmfake.domain.VM;
+import org.ovirt.vdsmfake.rpc.json.ResponseWriter;
+import org.ovirt.vdsmfake.service.VMService;
+
+import com.typesafe.config.ConfigBeanFactory;
+import com.typesafe.config.ConfigFactory;
+
+/**
+ * Compares the bytes allocated to encode a Host.getAllVmStats response built as maps and passed through the
+ * {@link ResponseBuilder} with the same response written by {@link ResponseWriter} from the VM stats snapshots, which
+ * are taken again by the polls once older than the stats max age. Not a test, run the main method
+ * on the test classpath, optionally passing the number of VMs and of rounds:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.ovirt.vdsmfake.bench.GetAllVmStatsBenchmark -Dexec.args="200 2000"
+ * </pre>
+ */
+public class GetAllVmStatsBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int vms = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        final VMService vmService = new VMService();
+        Field appConfig = VMService.class.getDeclaredField("appConfig");
+        appConfig.setAccessible(true);
+        appConfig.set(vmService, ConfigBeanFactory.create(ConfigFactory.load(), AppConfig.class));
+
+        final Host host = new Host();
+        host.setName("benchmark");
+        for (int i = 0; i < vms; i++) {
+            VM vm = new VM();
+            vm.setId(UUID.randomUUID().toString());
+            vm.setName("vm" + i);
+            vm.setHost(host);
+            vm.setMemSize(1024);
+            vm.setTimeCreated(System.currentTimeMillis());
+            vm.setStatus(VM.VMStatus.Up);
+            host.getRunningVMs().put(vm.getId(), vm);
+        }
+
+        final JsonNode id = new ObjectMapper().readTree("1".getBytes());
+
+        System.out.printf("Host.getAllVmStats with %d VMs, %d rounds%n", vms, rounds);
+        measure("maps + ResponseBuilder", rounds,
+                () -> new ResponseBuilder(id)
+                        .withResult((List) vmService.getAllVmStats(host).get("statsList"))
+                        .build()
+                        .toByteArray());
+        measure("stats snapshots", rounds,
+                () -> ResponseWriter.raw(id, out -> vmService.writeAllVmStats(host, out)).getBytes());
+    }
+
+    private static void measure(String name, int rounds, Callable<byte[]> encoder) throws Exception {
+        for (int i = 0; i < rounds / 4; i++) {
+            encoder.call();
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long size = 0;
+        for (int i = 0; i < rounds; i++) {
+            size = encoder.call().length;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+
+        System.out.printf("%-24s %10d bytes allocated/response %8d us/response %10d bytes response%n",
+                name, allocated / rounds, elapsed / rounds / 1000, size);
+    }
+}
@@ -0,0 +1,241 @@
+package org.ovirt.vdsmfake.bench;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.ovirt.vdsmfake.domain.Host;
+import org.ovirt.vdsmfake.domain.VM;
+import org.ovirt.vdsmfake.rpc.params.VmCreateParams;
+
+/**
+ * Measures the heap retained per VM created from VM.create parameters shaped like the engine's, built the way
+ * VMService.create builds them, next to the previous model of a VM, see {@link LegacyVm}. Map keys are interned like
+ * the json parser does, values are new strings for every VM. Not a test, run the main method on the test classpath
+ * with a large enough heap, optionally passing the number of VMs:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.ovirt.vdsmfake.bench.VmHeapBenchmark -Dexec.args="100000"
+ * </pre>
+ */
+public class VmHeapBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int vms = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        final Host host = new Host();
+        host.setId("benchmark");
+
+        System.out.printf("%d VMs%n", vms);
+
+        long before = usedHeap();
+        List<LegacyVm> legacy = new ArrayList<>(vms);
+        for (int i = 0; i < vms; i++) {
+            legacy.add(new LegacyVm(host, vmParams(i)));
+        }
+        long retained = usedHeap() - before;
+        // still referenced after the measurement, or the compiler may let them go before it
+        System.out.printf("%-24s %8d bytes per VM, %d devices each%n", "previous VM", retained / vms,
+                legacy.get(vms - 1).devices.size());
+        legacy = null;
+
+        before = usedHeap();
+        List<VM> created = new ArrayList<>(vms);
+        for (int i = 0; i < vms; i++) {
+            created.add(create(host, VmCreateParams.of(vmParams(i))));
+        }
+        retained = usedHeap() - before;
+        System.out.printf("%-24s %8d bytes per VM, %d devices each%n", "VM", retained / vms,
+                created.get(vms - 1).getDevices().size());
+    }
+
+    private static VM create(Host host, VmCreateParams vmParams) {
+        final VM vm = new VM();
+        vm.setTimeCreated(System.currentTimeMillis());
+        vm.setId(vmParams.getVmId());
+        vm.setName(vmParams.getVmName());
+        vm.setCpuType(vmParams.getCpuType());
+        vm.setHost(host);
+        vm.setMemSize(vmParams.getMemSize());
+        vm.setCustomMap(vmParams.getCustom());
+        vm.getDevices().addAll(vmParams.getDevices());
+        vm.generateDevicesAddressIfMissing();
+        return vm;
+    }
+
+    /**
+     * The fields a VM had before its devices were kept compact: the raw device maps and custom properties as sent,
+     * the Device entities parsed from them and the maps of random numbers.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked", "unused" })
+    private static final class LegacyVm {
+        String id;
+        String name;
+        long lastUpdate;
+        Map<String, String> randomNumberStore = new HashMap<>();
+        Map<String, Long> lastRandomNumberUpdate = new HashMap<>();
+        String ip = VM.NONE_STRING;
+        long timeCreated;
+        Host host;
+        int memSize;
+        String cpuType;
+        VM.VMStatus status = VM.VMStatus.WaitForLaunch;
+        List deviceList;
+        Map customMap;
+        final List<LegacyDevice> devices = new ArrayList<>();
+        boolean forDelete;
+
+        LegacyVm(Host host, Map<String, Object> vmParams) {
+            timeCreated = System.currentTimeMillis();
+            id = (String) vmParams.get("vmId");
+            name = (String) vmParams.get("vmName");
+            cpuType = (String) vmParams.get("cpuType");
+            this.host = host;
+            memSize = (Integer) vmParams.get("memSize");
+            deviceList = (List) vmParams.get("devices");
+            customMap = (Map) vmParams.get("custom");
+            for (Object o : deviceList) {
+                devices.add(new LegacyDevice((Map) o));
+            }
+        }
+    }
+
+    @SuppressWarnings({ "rawtypes", "unused" })
+    private static final class LegacyDevice {
+        String id;
+        String name;
+        long lastUpdate;
+        String deviceType;
+        String macAddr;
+        String iface;
+        String path;
+        String volumeID;
+        String imageID;
+        String domainID;
+        String poolID;
+        String format;
+        String readonly;
+        String nicModel;
+        String filter;
+        String network;
+
+        LegacyDevice(Map deviceMap) {
+            id = (String) deviceMap.get("deviceId");
+            name = (String) deviceMap.get("device");
+            deviceType = (String) deviceMap.get("type");
+            macAddr = (String) deviceMap.get("macAddr");
+            iface = (String) deviceMap.get("iface");
+            path = (String) deviceMap.get("path");
+            volumeID = (String) deviceMap.get("volumeID");
+            imageID = (String) deviceMap.get("imageID");
+            domainID = (String) deviceMap.get("domainID");
+            poolID = (String) deviceMap.get("poolID");
+            format = (String) deviceMap.get("format");
+            readonly = (String) deviceMap.get("readonly");
+            nicModel = (String) deviceMap.get("nicModel");
+            filter = (String) deviceMap.get("filter");
+            network = (String) deviceMap.get("network");
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static Map<String, Object> vmParams(int i) {
+        final String pool = "00000002-0002-0002-0002-00000000021c";
+        final String domain = "f71ab74c-c7ae-4cdd-931b-14fb3d062076";
+        final String image = uuid();
+        final String volume = uuid();
+
+        List<Object> devices = new ArrayList<>();
+        Map<String, Object> disk = device("disk", "disk", address("pci", "0x00", "0x0000", "0x0", "0x06"));
+        disk.put("iface", value("virtio"));
+        disk.put("format", value("raw"));
+        disk.put("poolID", value(pool));
+        disk.put("domainID", value(domain));
+        disk.put("imageID", image);
+        disk.put("volumeID", volume);
+        disk.put("path", "/rhev/data-center/" + pool + "/" + domain + "/images/" + image + "/" + volume);
+        disk.put("propagateErrors", value("off"));
+        disk.put("optional", value("false"));
+        disk.put("bootOrder", value("1"));
+        disk.put("shared", value("false"));
+        devices.add(disk);
+        Map<String, Object> cdrom = device("disk", "cdrom", address("drive", "1", null, null, null));
+        cdrom.put("iface", value("ide"));
+        cdrom.put("path", value(""));
+        devices.add(cdrom);
+        Map<String, Object> nic = device("interface", "bridge", address("pci", "0x00", "0x0000", "0x0", "0x03"));
+        nic.put("macAddr", String.format("00:1a:4a:%02x:%02x:%02x", i >> 16 & 0xff, i >> 8 & 0xff, i & 0xff));
+        nic.put("network", value("ovirtmgmt"));
+        nic.put("nicModel", value("pv"));
+        nic.put("filter", value("vdsm-no-mac-spoofing"));
+        nic.put("linkActive", value("true"));
+        devices.add(nic);
+        devices.add(device("video", "qxl", address("pci", "0x00", "0x0000", "0x0", "0x02")));
+        devices.add(device("controller", "virtio-serial", address("pci", "0x00", "0x0000", "0x0", "0x05")));
+        devices.add(device("balloon", "memballoon", address("pci", "0x00", "0x0000", "0x0", "0x07")));
+        devices.add(device("channel", "unix", null));
+
+        Map<String, Object> custom = new HashMap<>();
+        for (Object device : devices) {
+            custom.put("device_" + ((Map) device).get("deviceId"),
+                    "VmDevice {vmId=" + uuid() + ", deviceId=" + ((Map) device).get("deviceId") + "}");
+        }
+
+        Map<String, Object> vm = new HashMap<>();
+        vm.put("vmId", uuid());
+        vm.put("vmName", "vm" + i);
+        vm.put("cpuType", value("Conroe"));
+        vm.put("memSize", 1024);
+        vm.put("custom", custom);
+        vm.put("devices", devices);
+        return vm;
+    }
+
+    private static Map<String, Object> device(String type, String device, Map<String, Object> address) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("type", value(type));
+        params.put("device", value(device));
+        params.put("deviceId", uuid());
+        params.put("readonly", value("false"));
+        params.put("specParams", new HashMap<>());
+        if (address != null) {
+            params.put("address", address);
+        }
+        return params;
+    }
+
+    private static Map<String, Object> address(String type, String bus, String domain, String function, String slot) {
+        Map<String, Object> address = new HashMap<>();
+        address.put("type", value(type));
+        address.put("bus", value(bus));
+        if (slot != null) {
+            address.put("domain", value(domain));
+            address.put("function", value(function));
+            address.put("slot", value(slot));
+        } else {
+            address.put("controller", value("0"));
+            address.put("target", value("0"));
+            address.put("unit", value("0"));
+        }
+        return address;
+    }
+
+    private static String value(String value) {
+        // a parsed value is a new string every time
+        return new String(value);
+    }
+
+    private static String uuid() {
+        return UUID.randomUUID().toString();
+    }
+}
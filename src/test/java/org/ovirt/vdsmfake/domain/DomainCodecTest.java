@@ -0,0 +1,316 @@
+package org.ovirt.vdsmfake.domain;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class DomainCodecTest {
+
+    @After
+    public void tearDown() {
+        DomainCodec.setEnabled(false);
+    }
+
+    @Test
+    public void host() throws Exception {
+        Host host = new Host();
+        host.setId("host-1");
+        host.setName("host-1.example.com");
+        host.timeCreated = 1234567890123L;
+        host.setSpUUID("pool-1");
+        host.getStorageConnections().put("conn-1", "nfs:/export");
+        host.setSpmId(2);
+        host.setSpmStatus(Host.SpmStatus.ACQUIRED);
+        host.setSpmLver(7);
+        host.getPropsMap().put("uuid", "uuid-1");
+        host.getRunningVMs().put("vm-1", new VM());
+        host.getRunningTasks().put("task-1", new Task("task-1"));
+
+        Host decoded = (Host) roundTrip(host);
+
+        assertEquals("host-1", decoded.getId());
+        assertEquals("host-1.example.com", decoded.getName());
+        assertEquals(1234567890123L, decoded.timeCreated);
+        assertEquals("pool-1", decoded.getSpUUID());
+        assertEquals(host.getStorageConnections(), decoded.getStorageConnections());
+        assertEquals(2, decoded.getSpmId());
+        assertEquals(Host.SpmStatus.ACQUIRED, decoded.getSpmStatus());
+        assertEquals(7, decoded.getSpmLver());
+        assertEquals(host.getPropsMap(), decoded.getPropsMap());
+        assertEquals(Collections.singletonList("vm-1"), decoded.storedVmIds);
+        assertEquals(Collections.singletonList("task-1"), decoded.storedTaskIds);
+    }
+
+    @Test
+    public void unsetSpmFields() throws Exception {
+        Host decoded = (Host) roundTrip(new Host());
+
+        assertEquals(-1, decoded.getSpmId());
+        assertEquals(-1, decoded.getSpmLver());
+        assertEquals(Host.SpmStatus.FREE, decoded.getSpmStatus());
+    }
+
+    @Test
+    public void vm() throws Exception {
+        VM vm = new VM();
+        vm.setId("vm-1");
+        vm.setName("vm one");
+        vm.setIp("10.0.0.7");
+        vm.setTimeCreated(1000);
+        vm.setMemSize(4096);
+        vm.setCpuType("Conroe");
+        vm.restore(VM.VMStatus.Paused, true);
+        vm.setDeviceList(Arrays.asList(disk("dev-1"), nic("dev-2")));
+        Map<String, Object> custom = new HashMap<>();
+        custom.put("k", "v");
+        custom.put("n", 3);
+        vm.setCustomMap(custom);
+
+        VM decoded = (VM) roundTrip(vm);
+
+        assertEquals("vm-1", decoded.getId());
+        assertEquals("vm one", decoded.getName());
+        assertEquals("10.0.0.7", decoded.getIp());
+        assertEquals(1000, decoded.getTimeCreated());
+        assertEquals(4096, decoded.getMemSize());
+        assertEquals("Conroe", decoded.getCpuType());
+        assertEquals(VM.VMStatus.Paused, decoded.getStatus());
+        assertTrue(decoded.isForDelete());
+        assertEquals(vm.getDeviceList(), decoded.getDeviceList());
+        assertEquals(Device.DeviceType.DISK, decoded.getDevices().get(0).getDeviceType());
+        assertEquals(Device.DeviceType.NIC, decoded.getDevices().get(1).getDeviceType());
+        assertEquals(custom, decoded.getCustomMap());
+    }
+
+    @Test
+    public void task() throws Exception {
+        Task task = new Task("task-1");
+        task.setName("copy");
+        task.setFinished(true);
+
+        Task decoded = (Task) roundTrip(task);
+
+        assertEquals("task-1", decoded.getId());
+        assertEquals("copy", decoded.getName());
+        assertTrue(decoded.isFinished());
+    }
+
+    @Test
+    public void dataCenter() throws Exception {
+        DataCenter pool = new DataCenter("pool-1");
+        pool.setName("pool one");
+        pool.setMasterStorageDomainId("sd-1");
+        pool.setMasterVersion(3);
+        pool.setPoolStatus("connected");
+        pool.setStorageType(StorageDomain.StorageType.ISCSI);
+        pool.getStorageDomains().put("sd-1", new StorageDomain());
+        pool.getStorageDomains().put("sd-2", new StorageDomain());
+
+        DataCenter decoded = (DataCenter) roundTrip(pool);
+
+        assertEquals("pool-1", decoded.getId());
+        assertEquals("pool one", decoded.getName());
+        assertEquals("sd-1", decoded.getMasterStorageDomainId());
+        assertEquals(Integer.valueOf(3), decoded.getMasterVersion());
+        assertEquals("connected", decoded.getPoolStatus());
+        assertEquals(StorageDomain.StorageType.ISCSI, decoded.getStorageType());
+        assertEquals(pool.getStorageDomains().keySet(), new HashSet<>(decoded.storedDomainIds));
+        assertTrue(decoded.getStorageDomains().isEmpty());
+    }
+
+    @Test
+    public void storageDomain() throws Exception {
+        StorageDomain storageDomain = new StorageDomain();
+        storageDomain.setId("sd-1");
+        storageDomain.setName("data");
+        storageDomain.setConnection("nfs:/export");
+        storageDomain.setDomainClass(StorageDomain.DomainClass.DATA);
+        storageDomain.setDomainVersion("4");
+        storageDomain.setDomainStatus(StorageDomain.DomainStatus.ACTIVE);
+        storageDomain.setStorageType(StorageDomain.StorageType.NFS);
+        storageDomain.setDomainRole(StorageDomain.DomainRole.MASTER);
+        storageDomain.setDataCenter(new DataCenter("pool-1"));
+        storageDomain.getVolumes().put("vol-1", new Volume());
+
+        StorageDomain decoded = (StorageDomain) roundTrip(storageDomain);
+
+        assertEquals("sd-1", decoded.getId());
+        assertEquals("data", decoded.getName());
+        assertEquals("nfs:/export", decoded.getConnection());
+        assertEquals(StorageDomain.DomainClass.DATA, decoded.getDomainClass());
+        assertEquals("4", decoded.getDomainVersion());
+        assertEquals(StorageDomain.DomainStatus.ACTIVE, decoded.getDomainStatus());
+        assertEquals(StorageDomain.StorageType.NFS, decoded.getStorageType());
+        assertEquals(StorageDomain.DomainRole.MASTER, decoded.getDomainRole());
+        assertTrue(decoded.storedAttached);
+        assertNull(decoded.getDataCenter());
+        assertEquals(Collections.singletonList("vol-1"), decoded.storedVolumeIds);
+    }
+
+    @Test
+    public void volume() throws Exception {
+        Volume volume = new Volume();
+        volume.setId("vol-1");
+        volume.setImgUUID("img-1");
+        volume.setSize("1073741824");
+        volume.setVolFormat(4);
+        volume.setPreallocate(2);
+        volume.setDiskType(null);
+        volume.setDesc("boot disk");
+        volume.setSrcImgUUID("img-0");
+        volume.setSrcVolUUID("vol-0");
+
+        Volume decoded = (Volume) roundTrip(volume);
+
+        assertEquals("vol-1", decoded.getId());
+        assertNull(decoded.name);
+        assertEquals("img-1", decoded.getImgUUID());
+        assertEquals("1073741824", decoded.getSize());
+        assertEquals(Integer.valueOf(4), decoded.getVolFormat());
+        assertEquals(Integer.valueOf(2), decoded.getPreallocate());
+        assertNull(decoded.getDiskType());
+        assertEquals("boot disk", decoded.getDesc());
+        assertEquals("img-0", decoded.getSrcImgUUID());
+        assertEquals("vol-0", decoded.getSrcVolUUID());
+    }
+
+    @Test
+    public void compactFormIsResolvedToTheEntity() throws Exception {
+        Task task = new Task("task-1");
+        task.setFinished(true);
+        DomainCodec.setEnabled(true);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(task);
+        }
+        Object read;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = in.readObject();
+        }
+
+        assertEquals(Task.class, read.getClass());
+        assertEquals("task-1", ((Task) read).getId());
+        assertTrue(((Task) read).isFinished());
+    }
+
+    /**
+     * A hand-written VM record, the layout of the fields must not change without a new version.
+     */
+    @Test
+    public void vmRecordLayout() throws Exception {
+        Record record = new Record()
+                .bytes(0x02, 0x04) // version 1, VM
+                .string("vm-1")
+                .string("legacy")
+                .string("10.0.0.7")
+                .bytes(0xd0, 0x0f) // created at 1000
+                .bytes(0x80, 0x10) // 1024 MB
+                .string("Conroe")
+                .bytes(0x06) // Up
+                .bytes(0x08, 0x02, 0x07, 0x06) // a list of one map of three entries
+                .bytes(0x01).string("type").bytes(0x01).string("disk")
+                .bytes(0x01).string("device").bytes(0x01, 0x16) // "disk" again
+                .bytes(0x01).string("deviceId").bytes(0x01).string("dev-1")
+                .bytes(0x07, 0x02) // custom map of one entry
+                .bytes(0x01).string("k").bytes(0x01).string("v")
+                .bytes(0x00); // not for delete
+
+        VM vm = (VM) DomainCodec.decode(record.toByteArray());
+
+        assertEquals("vm-1", vm.getId());
+        assertEquals("legacy", vm.getName());
+        assertEquals("10.0.0.7", vm.getIp());
+        assertEquals(1000, vm.getTimeCreated());
+        assertEquals(1024, vm.getMemSize());
+        assertEquals("Conroe", vm.getCpuType());
+        assertEquals(VM.VMStatus.Up, vm.getStatus());
+        assertFalse(vm.isForDelete());
+        assertEquals(1, vm.getDevices().size());
+        Device device = vm.getDevices().get(0);
+        assertEquals("dev-1", device.getId());
+        assertEquals("disk", device.getName());
+        assertEquals(Device.DeviceType.DISK, device.getDeviceType());
+        assertEquals(Collections.singletonMap("k", "v"), vm.getCustomMap());
+
+        assertArrayEquals(record.toByteArray(), DomainCodec.encode(vm));
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownVersion() throws Exception {
+        DomainCodec.decode(new Record().bytes((DomainCodec.VERSION + 1) * 2, 0x04).toByteArray());
+    }
+
+    private static BaseObject roundTrip(BaseObject entity) throws IOException {
+        byte[] record = DomainCodec.encode(entity);
+        BaseObject decoded = DomainCodec.decode(record);
+        assertEquals(entity.getClass(), decoded.getClass());
+        return decoded;
+    }
+
+    private static Map<String, Object> disk(String id) {
+        Map<String, Object> device = new LinkedHashMap<>();
+        device.put("type", "disk");
+        device.put("device", "disk");
+        device.put("deviceId", id);
+        device.put("address", Collections.singletonMap("bus", "0x00"));
+        device.put("index", 0);
+        return device;
+    }
+
+    private static Map<String, Object> nic(String id) {
+        Map<String, Object> device = new LinkedHashMap<>();
+        device.put("type", "interface");
+        device.put("device", "bridge");
+        device.put("deviceId", id);
+        device.put("macAddr", "00:1a:4a:16:01:51");
+        device.put("linkActive", true);
+        List<Object> filters = Arrays.asList("clean-traffic", 1L, 2.5);
+        device.put("filters", filters);
+        return device;
+    }
+
+    /**
+     * Hand-written record bytes, strings are the short ASCII ones seen for the first time.
+     */
+    private static final class Record {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        Record bytes(int... values) {
+            for (int value : values) {
+                bytes.write(value);
+            }
+            return this;
+        }
+
+        Record string(String value) {
+            byte[] ascii = value.getBytes(StandardCharsets.US_ASCII);
+            bytes.write((ascii.length + 1) << 2);
+            bytes.write(ascii, 0, ascii.length);
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package org.ovirt.vdsmfake.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ovirt.vdsmfake.domain.VM.VMStatus;
+
+public class VmLifecycleTest {
+
+    private VmCounters global;
+    private VmCounters hostCounters;
+
+    @Before
+    public void setUp() {
+        global = new VmCounters(null);
+        hostCounters = new VmCounters(global);
+    }
+
+    @Test
+    public void allowedTransitions() {
+        VM vm = new VM();
+
+        assertTrue(vm.setStatus(VMStatus.PoweringUp));
+        assertTrue(vm.setStatus(VMStatus.Up));
+        assertTrue(vm.setStatus(VMStatus.Paused));
+        assertTrue(vm.setStatus(VMStatus.Up));
+        assertTrue(vm.setStatus(VMStatus.MigratingFrom));
+        assertTrue(vm.setStatus(VMStatus.Up));
+        assertTrue(vm.setStatus(VMStatus.PoweringDown));
+        assertTrue(vm.setStatus(VMStatus.Down));
+        assertEquals(VMStatus.Down, vm.getStatus());
+    }
+
+    @Test
+    public void rejectedTransitionKeepsTheStatus() {
+        VM vm = new VM();
+        vm.setStatus(VMStatus.Up);
+        vm.setStatus(VMStatus.Paused);
+        long rejected = rejected();
+
+        assertFalse(vm.setStatus(VMStatus.MigratingFrom));
+        assertFalse(vm.setStatus(VMStatus.WaitForLaunch));
+
+        assertEquals(VMStatus.Paused, vm.getStatus());
+        assertEquals(rejected + 2, rejected());
+    }
+
+    @Test
+    public void sameStatusIsAlwaysAllowed() {
+        VM vm = new VM();
+        vm.setStatus(VMStatus.PoweringDown);
+
+        assertTrue(vm.setStatus(VMStatus.PoweringDown));
+        assertEquals(VMStatus.PoweringDown, vm.getStatus());
+    }
+
+    @Test
+    public void downIsFinal() {
+        VM vm = new VM();
+        vm.setStatus(VMStatus.Up);
+        vm.setStatus(VMStatus.Down);
+
+        for (VMStatus status : VMStatus.values()) {
+            if (status != VMStatus.Down) {
+                assertFalse(status.name(), vm.setStatus(status));
+                assertFalse(status.name(), vm.transition(vm.getGeneration(), status));
+            }
+        }
+        assertEquals(VMStatus.Down, vm.getStatus());
+    }
+
+    @Test
+    public void poweringDownOnlyGoesDown() {
+        VM vm = new VM();
+        vm.setStatus(VMStatus.Up);
+        vm.setStatus(VMStatus.PoweringDown);
+
+        assertFalse(vm.setStatus(VMStatus.Up));
+        assertTrue(vm.setStatus(VMStatus.Down));
+    }
+
+    @Test
+    public void plannedTransitionIsTakenAtItsGeneration() {
+        VM vm = new VM();
+        long generation = vm.getGeneration();
+
+        assertTrue(vm.transition(generation, VMStatus.PoweringUp));
+        assertTrue(vm.transition(generation, VMStatus.Up));
+
+        assertEquals(VMStatus.Up, vm.getStatus());
+        assertEquals(generation, vm.getGeneration());
+    }
+
+    @Test
+    public void plannedTransitionIsDroppedAfterSetStatus() {
+        VM vm = new VM();
+        long generation = vm.getGeneration();
+        vm.setStatus(VMStatus.Up);
+        long stale = stale();
+
+        assertFalse(vm.transition(generation, VMStatus.PoweringDown));
+
+        assertEquals(VMStatus.Up, vm.getStatus());
+        assertEquals(generation + 1, vm.getGeneration());
+        assertEquals(stale + 1, stale());
+    }
+
+    @Test
+    public void refusedSetStatusKeepsTheGeneration() {
+        VM vm = new VM();
+        vm.setStatus(VMStatus.Up);
+        vm.setStatus(VMStatus.Down);
+        long generation = vm.getGeneration();
+
+        assertFalse(vm.setStatus(VMStatus.Up));
+
+        assertEquals(generation, vm.getGeneration());
+    }
+
+    @Test
+    public void attachAndDetachCountTheVm() {
+        VM vm = new VM();
+        vm.setStatus(VMStatus.Up);
+
+        vm.attach(hostCounters);
+        assertCounts(hostCounters, VMStatus.Up, 1, 1, 0);
+        assertCounts(global, VMStatus.Up, 1, 1, 0);
+
+        vm.attach(hostCounters);
+        assertCounts(hostCounters, VMStatus.Up, 1, 1, 0);
+
+        vm.detach();
+        assertCounts(hostCounters, VMStatus.Up, 0, 0, 0);
+        assertCounts(global, VMStatus.Up, 0, 0, 0);
+
+        vm.detach();
+        assertCounts(global, VMStatus.Up, 0, 0, 0);
+    }
+
+    @Test
+    public void attachToAnotherHostMovesTheVm() {
+        VmCounters otherHost = new VmCounters(global);
+        VM vm = new VM();
+        vm.attach(hostCounters);
+
+        vm.attach(otherHost);
+
+        assertEquals(0, hostCounters.total());
+        assertEquals(1, otherHost.total());
+        assertEquals(1, global.total());
+    }
+
+    @Test
+    public void statusChangesMoveTheCounts() {
+        VM vm = new VM();
+        vm.attach(hostCounters);
+
+        vm.setStatus(VMStatus.PoweringUp);
+        vm.transition(vm.getGeneration(), VMStatus.Up);
+
+        assertCounts(hostCounters, VMStatus.Up, 1, 1, 0);
+        assertEquals(0, hostCounters.count(VMStatus.WaitForLaunch));
+        assertEquals(0, hostCounters.count(VMStatus.PoweringUp));
+        assertEquals(0, global.count(VMStatus.PoweringUp));
+
+        // a refused change moves nothing
+        vm.setStatus(VMStatus.WaitForLaunch);
+        assertCounts(global, VMStatus.Up, 1, 1, 0);
+    }
+
+    @Test
+    public void forDeleteIsCountedWhileAttached() {
+        VM vm = new VM();
+        vm.setForDelete(true);
+        vm.attach(hostCounters);
+        assertCounts(global, VMStatus.WaitForLaunch, 1, 1, 1);
+
+        vm.setForDelete(true);
+        assertEquals(1, global.forDelete());
+
+        vm.setForDelete(false);
+        assertCounts(hostCounters, VMStatus.WaitForLaunch, 1, 1, 0);
+        assertCounts(global, VMStatus.WaitForLaunch, 1, 1, 0);
+
+        vm.setForDelete(true);
+        vm.detach();
+        assertCounts(hostCounters, VMStatus.WaitForLaunch, 0, 0, 0);
+        assertCounts(global, VMStatus.WaitForLaunch, 0, 0, 0);
+
+        // not on a host, nothing to count
+        vm.setForDelete(false);
+        assertEquals(0, global.forDelete());
+    }
+
+    /**
+     * Threads move the same VMs between statuses, flag them and attach and detach them at once, the counters of the
+     * host and the global ones must match the VMs when they are done.
+     */
+    @Test
+    public void countersStayExactUnderConcurrentUpdates() throws Exception {
+        final int threads = 8;
+        final int rounds = 20000;
+        final VMStatus[] cycle = { VMStatus.PoweringUp, VMStatus.Up, VMStatus.Paused, VMStatus.Up,
+                VMStatus.MigratingFrom, VMStatus.Up, VMStatus.NotResponding, VMStatus.Up };
+        final List<VM> vms = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            VM vm = new VM();
+            vm.attach(hostCounters);
+            vms.add(vm);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final Random random = new Random(t);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < rounds; i++) {
+                        VM vm = vms.get(random.nextInt(vms.size()));
+                        switch (random.nextInt(5)) {
+                        case 0:
+                            vm.setForDelete(random.nextBoolean());
+                            break;
+                        case 1:
+                            vm.attach(hostCounters);
+                            break;
+                        case 2:
+                            vm.detach();
+                            break;
+                        default:
+                            vm.transition(vm.getGeneration(), cycle[random.nextInt(cycle.length)]);
+                            break;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        int attached = 0;
+        int forDelete = 0;
+        int[] byStatus = new int[VMStatus.values().length];
+        for (VM vm : vms) {
+            if (vm.isAttached()) {
+                attached++;
+                byStatus[vm.getStatus().ordinal()]++;
+                if (vm.isForDelete()) {
+                    forDelete++;
+                }
+            }
+        }
+        assertEquals(attached, global.total());
+        assertEquals(attached, hostCounters.total());
+        assertEquals(forDelete, global.forDelete());
+        assertEquals(forDelete, hostCounters.forDelete());
+        for (VMStatus status : VMStatus.values()) {
+            assertEquals(status.name(), byStatus[status.ordinal()], global.count(status));
+            assertEquals(status.name(), byStatus[status.ordinal()], hostCounters.count(status));
+        }
+    }
+
+    private static void assertCounts(VmCounters counters, VMStatus status, int count, int total, int forDelete) {
+        assertEquals(count, counters.count(status));
+        assertEquals(total, counters.total());
+        assertEquals(forDelete, counters.forDelete());
+    }
+
+    private static long rejected() {
+        return (Long) VmLifecycle.getInstance().getStats().get("rejected");
+    }
+
+    private static long stale() {
+        return (Long) VmLifecycle.getInstance().getStats().get("stale");
+    }
+}
@@ -12,7 +12,8 @@ import org.jboss.shrinkwrap.api.spec.JavaArchive;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.ovirt.vdsmfake.ContextHolder;
+import org.ovirt.vdsmfake.RequestContext;
+import org.ovirt.vdsmfake.domain.VdsmManager;
 import org.ovirt.vdsmfake.service.HostService;
 
 @RunWith(Arquillian.class)
@@ -21,6 +22,11 @@ public class HostServiceTest {
     @Inject
     private HostService hostService;
 
+    @Inject
+    private VdsmManager vdsmManager;
+
+    private RequestContext context;
+
     @Deployment(name = "HostServiceTest")
     public static JavaArchive deploy() {
         return deployAll();
@@ -28,8 +34,7 @@ public class HostServiceTest {
 
     @Before
     public void before() {
-        ContextHolder.init();
-        ContextHolder.setServerName("localhost-arquillian");
+        context = new RequestContext("localhost-arquillian", vdsmManager.getHostByName("localhost-arquillian"), null);
     }
 
     @Test
@@ -39,11 +44,11 @@ public class HostServiceTest {
 
     @Test
     public void getCaps() {
-        assertTrue(hostService.getVdsCapabilities().values().size() > 0);
+        assertTrue(hostService.getVdsCapabilities(context).values().size() > 0);
     }
 
     @Test
     public void getStats() {
-        assertTrue(hostService.getVdsStats().values().size() > 0);
+        assertTrue(hostService.getVdsStats(context).values().size() > 0);
     }
 }
@@ -16,7 +16,8 @@ import org.jboss.shrinkwrap.api.spec.JavaArchive;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.ovirt.vdsmfake.ContextHolder;
+import org.ovirt.vdsmfake.RequestContext;
+import org.ovirt.vdsmfake.domain.VdsmManager;
 import org.ovirt.vdsmfake.service.VMService;
 
 @RunWith(Arquillian.class)
@@ -25,6 +26,11 @@ public class VmServiceTest {
     @Inject
     private VMService vmService;
 
+    @Inject
+    private VdsmManager vdsmManager;
+
+    private RequestContext context;
+
     @Deployment(name = "VMServiceTest")
     public static JavaArchive deploy() {
         return deployAll();
@@ -32,8 +38,7 @@ public class VmServiceTest {
 
     @Before
     public void before() {
-        ContextHolder.init();
-        ContextHolder.setServerName("localhost-arquillian");
+        context = new RequestContext("localhost-arquillian", vdsmManager.getHostByName("localhost-arquillian"), null);
     }
 
     @Test
@@ -49,7 +54,7 @@ public class VmServiceTest {
         vmParams.put("cpuName", "kabyLake");
         vmParams.put("memSize", "1024");
 
-        Map createResult = vmService.create(vmParams);
+        Map createResult = vmService.create(context, vmParams);
 
         Object resultStatus = createResult.get("status");
         Map<String, String> vmList = (Map<String, String>) createResult.get("vmList");
@@ -0,0 +1,75 @@
+package org.ovirt.vdsmfake.rpc.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class EventOutboxTest {
+
+    private final EventOutbox outbox = new EventOutbox(null);
+
+    @Test
+    public void everyStatusChangeIsSent() {
+        assertTrue(outbox.add("vm-1", "PoweringUp"));
+        assertTrue(outbox.add("vm-1", "Up"));
+
+        assertEquals(Collections.singletonMap("vm-1", "PoweringUp"), outbox.drain(10));
+        assertEquals(Collections.singletonMap("vm-1", "Up"), outbox.drain(10));
+        assertTrue(outbox.drain(10).isEmpty());
+    }
+
+    @Test
+    public void repeatedStatusIsDropped() {
+        outbox.add("vm-1", "Up");
+
+        assertFalse(outbox.add("vm-1", "Up"));
+        assertEquals(1, outbox.size());
+
+        // only the latest pending event counts, Up after Paused is a change
+        outbox.add("vm-1", "Paused");
+        assertTrue(outbox.add("vm-1", "Up"));
+        assertEquals(3, outbox.size());
+    }
+
+    @Test
+    public void sentStatusIsNotPendingAnyMore() {
+        outbox.add("vm-1", "Up");
+        outbox.drain(10);
+
+        assertTrue(outbox.add("vm-1", "Up"));
+    }
+
+    @Test
+    public void batchHoldsEachVmOnce() {
+        outbox.add("vm-1", "PoweringUp");
+        outbox.add("vm-2", "PoweringUp");
+        outbox.add("vm-1", "Up");
+        outbox.add("vm-3", "Down");
+
+        Map<String, String> first = new LinkedHashMap<>();
+        first.put("vm-1", "PoweringUp");
+        first.put("vm-2", "PoweringUp");
+        assertEquals(first, outbox.drain(10));
+
+        Map<String, String> second = new LinkedHashMap<>();
+        second.put("vm-1", "Up");
+        second.put("vm-3", "Down");
+        assertEquals(second, outbox.drain(10));
+    }
+
+    @Test
+    public void batchIsLimitedToMax() {
+        outbox.add("vm-1", "Up");
+        outbox.add("vm-2", "Up");
+        outbox.add("vm-3", "Up");
+
+        assertEquals(2, outbox.drain(2).size());
+        assertEquals(Collections.singletonMap("vm-3", "Up"), outbox.drain(2));
+    }
+}
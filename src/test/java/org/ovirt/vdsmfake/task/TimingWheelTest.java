@@ -0,0 +1,157 @@
+package org.ovirt.vdsmfake.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimingWheelTest {
+
+    private long start;
+    private TimingWheel wheel;
+    private List<TaskRequest> expired;
+
+    @Before
+    public void setUp() {
+        start = System.currentTimeMillis();
+        wheel = new TimingWheel(start);
+        expired = new ArrayList<>();
+    }
+
+    @Test
+    public void dueTaskExpiresRightAway() {
+        TaskRequest task = at(start);
+
+        wheel.add(task, expired);
+
+        assertEquals(Collections.singletonList(task), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * Delays at and around the turns of the first four levels, every task expires at its own tick, not before.
+     */
+    @Test
+    public void tasksCascadeDownToTheirTick() {
+        List<TaskRequest> tasks = new ArrayList<>();
+        for (long delay : Arrays.asList(1L, 63L, 64L, 65L, 127L, 128L, 4095L, 4096L, 4097L, 5000L, 262143L,
+                262144L, 262145L, 300000L)) {
+            tasks.add(at(start + delay));
+        }
+        for (TaskRequest task : tasks) {
+            wheel.add(task, expired);
+        }
+        assertTrue(expired.isEmpty());
+
+        long end = start + 300100;
+        for (long time = start + 1; time <= end; time++) {
+            wheel.advanceTo(time, expired);
+            for (TaskRequest task : expired) {
+                assertEquals(task.getTargetTime(), time);
+                assertTrue(tasks.remove(task));
+            }
+            expired.clear();
+        }
+        assertTrue(tasks.isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void tasksExpireInDeadlineOrder() {
+        Random random = new Random(42);
+        List<TaskRequest> tasks = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            tasks.add(at(start + 1 + random.nextInt(20000)));
+        }
+        for (TaskRequest task : tasks) {
+            wheel.add(task, expired);
+        }
+
+        // in one step over many ticks and turns of the levels
+        wheel.advanceTo(start + 30000, expired);
+
+        assertEquals(tasks.size(), expired.size());
+        for (int i = 1; i < expired.size(); i++) {
+            assertTrue(expired.get(i - 1).getTargetTime() <= expired.get(i).getTargetTime());
+        }
+    }
+
+    @Test
+    public void tasksOfOneTickKeepTheirOrder() {
+        List<TaskRequest> tasks = Arrays.asList(at(start + 70), at(start + 70), at(start + 70));
+        for (TaskRequest task : tasks) {
+            wheel.add(task, expired);
+        }
+
+        wheel.advanceTo(start + 70, expired);
+
+        assertEquals(tasks.size(), expired.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            assertSame(tasks.get(i), expired.get(i));
+        }
+    }
+
+    @Test
+    public void tasksAddedWhileAdvancing() {
+        wheel.advanceTo(start + 100, expired);
+        TaskRequest task = at(start + 200);
+        wheel.add(task, expired);
+
+        wheel.advanceTo(start + 199, expired);
+        assertTrue(expired.isEmpty());
+        wheel.advanceTo(start + 200, expired);
+        assertEquals(Collections.singletonList(task), expired);
+    }
+
+    @Test
+    public void nextTickOfAnEmptyWheel() {
+        assertEquals(Long.MAX_VALUE, wheel.nextTick());
+    }
+
+    @Test
+    public void nextTickOfTheLowestLevel() {
+        TaskRequest task = at(start + 10);
+        wheel.add(task, expired);
+
+        assertEquals(start + 10, wheel.nextTick());
+    }
+
+    /**
+     * A task of a higher level wakes the ticker when it is cascaded, never after its deadline.
+     */
+    @Test
+    public void nextTickNeverPassesTheDeadline() {
+        TaskRequest task = at(start + 5000);
+        wheel.add(task, expired);
+
+        long time = start;
+        while (expired.isEmpty()) {
+            long next = wheel.nextTick();
+            assertTrue(next > time);
+            assertTrue(next <= task.getTargetTime());
+            time = next;
+            wheel.advanceTo(time, expired);
+        }
+        assertEquals(task.getTargetTime(), time);
+    }
+
+    /**
+     * @return a task due at the given time rather than after a delay from now, so the ticks do not depend on the clock
+     */
+    private static TaskRequest at(long deadline) {
+        return new TaskRequest(TaskType.FINISH_CREATE_VOLUME, 0, null) {
+            @Override
+            public long getTargetTime() {
+                return deadline;
+            }
+        };
+    }
+}